@@ -25,20 +25,24 @@ import com.strobel.core.StringUtilities;
 import com.strobel.core.VerifyArgument;
 import com.strobel.io.PathHelper;
 
+import java.io.Closeable;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.util.LinkedHashMap;
-import java.util.LinkedHashSet;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-public class InputTypeLoader implements ITypeLoader {
+public class InputTypeLoader implements ITypeLoader, Closeable {
     private final static Logger LOG = Logger.getLogger(InputTypeLoader.class.getSimpleName());
+    private final static long MAPPING_THRESHOLD = 64 * 1024;
 
     private final ITypeLoader _defaultTypeLoader;
-    private final Map<String, LinkedHashSet<File>> _packageLocations;
+    private final Map<String, Set<File>> _packageLocations;
     private final Map<String, File> _knownFiles;
 
     public InputTypeLoader() {
@@ -47,8 +51,18 @@ public class InputTypeLoader implements ITypeLoader {
 
     public InputTypeLoader(final ITypeLoader defaultTypeLoader) {
         _defaultTypeLoader = VerifyArgument.notNull(defaultTypeLoader, "defaultTypeLoader");
-        _packageLocations = new LinkedHashMap<>();
-        _knownFiles = new LinkedHashMap<>();
+        _packageLocations = new ConcurrentHashMap<>();
+        _knownFiles = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Closes the default type loader if it holds resources of its own.
+     */
+    @Override
+    public void close() throws IOException {
+        if (_defaultTypeLoader instanceof Closeable) {
+            ((Closeable) _defaultTypeLoader).close();
+        }
     }
 
     @Override
@@ -157,7 +171,7 @@ public class InputTypeLoader implements ITypeLoader {
         }
 
         while (true) {
-            final LinkedHashSet<File> directories = _packageLocations.get(head);
+            final Set<File> directories = _packageLocations.get(head);
 
             if (directories != null) {
                 for (final File directory : directories) {
@@ -189,24 +203,21 @@ public class InputTypeLoader implements ITypeLoader {
             return false;
         }
 
-        try (final FileInputStream in = new FileInputStream(file)) {
-            int remainingBytes = in.available();
-
-            buffer.position(0);
-            buffer.reset(remainingBytes);
-
-            while (remainingBytes > 0) {
-                final int bytesRead = in.read(buffer.array(), buffer.position(), remainingBytes);
+        try (final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final long size = channel.size();
 
-                if (bytesRead < 0) {
-                    break;
-                }
+            //
+            // Mapping only pays for itself on large files; a mapping remains valid after its
+            // channel is closed, so the buffer can parse the class in place.
+            //
 
-                remainingBytes -= bytesRead;
-                buffer.advance(bytesRead);
+            if (size >= MAPPING_THRESHOLD) {
+                buffer.wrap(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+            }
+            else {
+                buffer.readFrom(channel);
             }
 
-            buffer.position(0);
             return true;
         }
         catch (IOException e) {
@@ -268,11 +279,7 @@ public class InputTypeLoader implements ITypeLoader {
             return;
         }
 
-        LinkedHashSet<File> directories = _packageLocations.get(packageName);
-
-        if (directories == null) {
-            _packageLocations.put(packageName, directories = new LinkedHashSet<>());
-        }
+        Set<File> directories = getPackageLocations(packageName);
 
         if (!directories.add(directory) || !recursive) {
             return;
@@ -301,11 +308,7 @@ public class InputTypeLoader implements ITypeLoader {
                 currentPackage = currentPackage.substring(0, delimiterIndex);
                 currentDirectory = currentDirectory.getParentFile();
 
-                directories = _packageLocations.get(currentPackage);
-
-                if (directories == null) {
-                    _packageLocations.put(currentPackage, directories = new LinkedHashSet<>());
-                }
+                directories = getPackageLocations(currentPackage);
 
                 if (!directories.add(currentDirectory)) {
                     break;
@@ -316,6 +319,24 @@ public class InputTypeLoader implements ITypeLoader {
         }
     }
 
+    private Set<File> getPackageLocations(final String packageName) {
+        final Set<File> directories = _packageLocations.get(packageName);
+
+        if (directories != null) {
+            return directories;
+        }
+
+        //
+        // Copy-on-write sets preserve insertion order and can be probed while another thread
+        // registers new locations; writes are rare once the common packages have been seen.
+        //
+
+        final Set<File> newDirectories = new CopyOnWriteArraySet<>();
+        final Set<File> existingDirectories = _packageLocations.putIfAbsent(packageName, newDirectories);
+
+        return existingDirectories != null ? existingDirectories : newDirectories;
+    }
+
     private static String getInternalNameFromClassFile(final Buffer b) {
         final long magic = b.readInt() & 0xFFFFFFFFL;
 
@@ -21,13 +21,14 @@ import com.strobel.core.BooleanBox;
 import com.strobel.core.ExceptionUtilities;
 import com.strobel.core.VerifyArgument;
 import com.strobel.decompiler.PlainTextOutput;
-import com.strobel.functions.Block;
-import com.strobel.functions.Function;
 
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
@@ -35,8 +36,13 @@ import java.util.concurrent.CancellationException;
 import java.util.regex.Pattern;
 
 public final class ControlFlowGraph {
+    private final static int ON_STACK = -2;
+
     private final List<ControlFlowNode> _nodes;
 
+    private ControlFlowNode[] _reversePostOrder;
+    private int[] _immediateDominators;
+
     public final ControlFlowNode getEntryPoint() {
         return _nodes.get(0);
     }
@@ -73,64 +79,62 @@ public final class ControlFlowGraph {
     }
 
     public final void computeDominance(final BooleanBox cancelled) {
+        //
+        // Cooper, Harvey, and Kennedy's iterative algorithm ("A Simple, Fast Dominance Algorithm"),
+        // run over int arrays indexed by reverse postorder.  A dominator always precedes the nodes
+        // it dominates in that order, so finding a common dominator is a walk toward index zero.
+        //
+
         final ControlFlowNode entryPoint = getEntryPoint();
+        final ControlFlowNode[] order = computeReversePostOrder();
+        final int count = order.length;
+        final int[][] predecessors = new int[count][];
 
-        entryPoint.setImmediateDominator(entryPoint);
+        for (int i = 0; i < count; i++) {
+            predecessors[i] = getPredecessorIndices(order[i]);
+        }
 
-        final BooleanBox changed = new BooleanBox(true);
+        final int[] immediateDominators = new int[count];
 
-        while (changed.get()) {
-            changed.set(false);
-            resetVisited();
+        Arrays.fill(immediateDominators, -1);
+        immediateDominators[0] = 0;
+
+        boolean changed = true;
+
+        while (changed) {
+            changed = false;
 
             if (cancelled.get()) {
                 throw new CancellationException();
             }
 
-            entryPoint.traversePreOrder(
-                new Function<ControlFlowNode, Iterable<ControlFlowNode>>() {
-                    @Override
-                    public final Iterable<ControlFlowNode> apply(final ControlFlowNode input) {
-                        return input.getSuccessors();
-                    }
-                },
-                new Block<ControlFlowNode>() {
-                    @Override
-                    public final void accept(final ControlFlowNode b) {
-                        if (b == entryPoint) {
-                            return;
-                        }
-
-                        ControlFlowNode newImmediateDominator = null;
-
-                        for (final ControlFlowNode p : b.getPredecessors()) {
-                            if (p.isVisited() && p != b) {
-                                newImmediateDominator = p;
-                                break;
-                            }
-                        }
-
-                        if (newImmediateDominator == null) {
-                            throw new IllegalStateException("Could not compute new immediate dominator!");
-                        }
-
-                        for (final ControlFlowNode p : b.getPredecessors()) {
-                            if (p != b && p.getImmediateDominator() != null) {
-                                newImmediateDominator = findCommonDominator(p, newImmediateDominator);
-                            }
-                        }
-
-                        if (b.getImmediateDominator() != newImmediateDominator) {
-                            b.setImmediateDominator(newImmediateDominator);
-                            changed.set(true);
-                        }
+            for (int b = 1; b < count; b++) {
+                int newImmediateDominator = -1;
+
+                for (final int p : predecessors[b]) {
+                    if (immediateDominators[p] >= 0) {
+                        newImmediateDominator = newImmediateDominator < 0 ? p
+                                                                          : intersect(immediateDominators, p, newImmediateDominator);
                     }
                 }
-            );
+
+                if (newImmediateDominator < 0) {
+                    throw new IllegalStateException("Could not compute new immediate dominator!");
+                }
+
+                if (immediateDominators[b] != newImmediateDominator) {
+                    immediateDominators[b] = newImmediateDominator;
+                    changed = true;
+                }
+            }
         }
 
         entryPoint.setImmediateDominator(null);
 
+        for (int b = 1; b < count; b++) {
+            order[b].setImmediateDominator(order[immediateDominators[b]]);
+        }
+
         for (final ControlFlowNode node : _nodes) {
             final ControlFlowNode immediateDominator = node.getImmediateDominator();
 
@@ -138,63 +142,247 @@ public final class ControlFlowGraph {
                 immediateDominator.getDominatorTreeChildren().add(node);
             }
         }
+
+        _reversePostOrder = order;
+        _immediateDominators = immediateDominators;
     }
 
     public final void computeDominanceFrontier() {
-        resetVisited();
+        final ControlFlowNode[] order = _reversePostOrder;
+        final int[] immediateDominators = _immediateDominators;
+
+        if (order == null) {
+            throw new IllegalStateException("Dominance must be computed before the dominance frontier.");
+        }
+
+        final int count = order.length;
+
+        //
+        // Frontiers are gathered bottom-up through the dominator tree, which only links the nodes
+        // in this graph's node list; a node hanging from any other node (e.g., an 'end finally'
+        // node) keeps an empty frontier, and contributes nothing to its dominators' frontiers.
+        //
+
+        final boolean[] inTree = new boolean[count];
+
+        for (final ControlFlowNode node : _nodes) {
+            final int index = node.getDominanceIndex();
+
+            node.setDominanceFrontier(Collections.<ControlFlowNode>emptySet());
+
+            if (index >= 0) {
+                inTree[index] = true;
+            }
+        }
 
-        getEntryPoint().traversePostOrder(
-            new Function<ControlFlowNode, Iterable<ControlFlowNode>>() {
-                @Override
-                public final Iterable<ControlFlowNode> apply(final ControlFlowNode input) {
-                    return input.getDominatorTreeChildren();
+        for (int n = 1; n < count; n++) {
+            inTree[n] &= inTree[immediateDominators[n]];
+        }
+
+        final BitSet[] frontiers = new BitSet[count];
+
+        //
+        // A node's dominator tree children follow it in reverse postorder, so walking the order
+        // backward finishes every child before its parent.
+        //
+
+        for (int n = count - 1; n >= 0; n--) {
+            if (!inTree[n]) {
+                continue;
+            }
+
+            BitSet frontier = frontiers[n];
+
+            if (frontier == null) {
+                frontiers[n] = frontier = new BitSet();
+            }
+
+            for (final ControlFlowEdge edge : order[n].getOutgoing()) {
+                final int s = edge.getTarget().getDominanceIndex();
+
+                if (s == 0 || immediateDominators[s] != n) {
+                    frontier.set(s);
                 }
-            },
-            new Block<ControlFlowNode>() {
-                @Override
-                public void accept(final ControlFlowNode n) {
-                    final Set<ControlFlowNode> dominanceFrontier = n.getDominanceFrontier();
-
-                    dominanceFrontier.clear();
-
-                    for (final ControlFlowNode s : n.getSuccessors()) {
-                        if (s.getImmediateDominator() != n) {
-                            dominanceFrontier.add(s);
-                        }
-                    }
+            }
+
+            if (n != 0) {
+                final int parent = immediateDominators[n];
+
+                BitSet parentFrontier = frontiers[parent];
 
-                    for (final ControlFlowNode child : n.getDominatorTreeChildren()) {
-                        for (final ControlFlowNode p : child.getDominanceFrontier()) {
-                            if (p.getImmediateDominator() != n) {
-                                dominanceFrontier.add(p);
-                            }
-                        }
+                if (parentFrontier == null) {
+                    frontiers[parent] = parentFrontier = new BitSet();
+                }
+
+                for (int p = frontier.nextSetBit(0); p >= 0; p = frontier.nextSetBit(p + 1)) {
+                    if (p == 0 || immediateDominators[p] != parent) {
+                        parentFrontier.set(p);
                     }
                 }
             }
-        );
+
+            order[n].setDominanceFrontier(new DominanceFrontier(order, frontier));
+        }
     }
 
     public static ControlFlowNode findCommonDominator(final ControlFlowNode a, final ControlFlowNode b) {
-        final Set<ControlFlowNode> path1 = new LinkedHashSet<>();
-
         ControlFlowNode node1 = a;
         ControlFlowNode node2 = b;
 
-        while (node1 != null && path1.add(node1)) {
-            node1 = node1.getImmediateDominator();
+        int depth1 = dominatorDepth(node1);
+        int depth2 = dominatorDepth(node2);
+
+        for (; depth1 > depth2; depth1--) {
+            node1 = parentDominator(node1);
         }
 
-        while (node2 != null) {
-            if (path1.contains(node2)) {
-                return node2;
+        for (; depth2 > depth1; depth2--) {
+            node2 = parentDominator(node2);
+        }
+
+        while (node1 != node2) {
+            node1 = parentDominator(node1);
+            node2 = parentDominator(node2);
+        }
+
+        if (node1 == null) {
+            throw new IllegalStateException("No common dominator found!");
+        }
+
+        return node1;
+    }
+
+    // <editor-fold defaultstate="collapsed" desc="Dominance Helpers">
+
+    private ControlFlowNode[] computeReversePostOrder() {
+        //
+        // Clear the numbering of every node we know of, including the 'end finally' nodes, which
+        // are reachable but not in the node list, so that unreachable nodes read as unnumbered.
+        //
+
+        int capacity = 0;
+
+        for (final ControlFlowNode node : _nodes) {
+            final ControlFlowNode endFinallyNode = node.getEndFinallyNode();
+
+            node.setDominanceIndex(-1);
+            ++capacity;
+
+            if (endFinallyNode != null) {
+                endFinallyNode.setDominanceIndex(-1);
+                ++capacity;
+            }
+        }
+
+        ControlFlowNode[] postOrder = new ControlFlowNode[capacity];
+        ControlFlowNode[] stack = new ControlFlowNode[capacity];
+        int[] positions = new int[capacity];
+
+        int count = 0;
+        int depth = 0;
+
+        final ControlFlowNode entryPoint = getEntryPoint();
+
+        entryPoint.setDominanceIndex(ON_STACK);
+        stack[depth++] = entryPoint;
+
+        while (depth > 0) {
+            final ControlFlowNode node = stack[depth - 1];
+            final List<ControlFlowEdge> outgoing = node.getOutgoing();
+
+            if (positions[depth - 1] < outgoing.size()) {
+                final ControlFlowNode successor = outgoing.get(positions[depth - 1]++).getTarget();
+
+                if (successor.getDominanceIndex() == -1) {
+                    if (depth == stack.length) {
+                        stack = Arrays.copyOf(stack, depth * 2);
+                        positions = Arrays.copyOf(positions, depth * 2);
+                    }
+
+                    successor.setDominanceIndex(ON_STACK);
+                    positions[depth] = 0;
+                    stack[depth++] = successor;
+                }
+
+                continue;
+            }
+
+            if (count == postOrder.length) {
+                postOrder = Arrays.copyOf(postOrder, count * 2);
+            }
+
+            postOrder[count++] = node;
+            --depth;
+        }
+
+        final ControlFlowNode[] order = new ControlFlowNode[count];
+
+        for (int i = 0; i < count; i++) {
+            final ControlFlowNode node = postOrder[count - 1 - i];
+
+            node.setDominanceIndex(i);
+            order[i] = node;
+        }
+
+        return order;
+    }
+
+    private static int[] getPredecessorIndices(final ControlFlowNode node) {
+        final List<ControlFlowEdge> incoming = node.getIncoming();
+        final int index = node.getDominanceIndex();
+        final int[] predecessors = new int[incoming.size()];
+
+        int count = 0;
+
+        for (final ControlFlowEdge edge : incoming) {
+            final int p = edge.getSource().getDominanceIndex();
+
+            //
+            // Unreachable predecessors and self-loops have no bearing on dominance.
+            //
+
+            if (p >= 0 && p != index) {
+                predecessors[count++] = p;
             }
-            node2 = node2.getImmediateDominator();
         }
 
-        throw new IllegalStateException("No common dominator found!");
+        return count == predecessors.length ? predecessors
+                                            : Arrays.copyOf(predecessors, count);
     }
 
+    private static int intersect(final int[] immediateDominators, final int a, final int b) {
+        int finger1 = a;
+        int finger2 = b;
+
+        while (finger1 != finger2) {
+            while (finger1 > finger2) {
+                finger1 = immediateDominators[finger1];
+            }
+            while (finger2 > finger1) {
+                finger2 = immediateDominators[finger2];
+            }
+        }
+
+        return finger1;
+    }
+
+    private static ControlFlowNode parentDominator(final ControlFlowNode node) {
+        final ControlFlowNode immediateDominator = node.getImmediateDominator();
+        return immediateDominator != node ? immediateDominator : null;
+    }
+
+    private static int dominatorDepth(final ControlFlowNode node) {
+        int depth = 0;
+
+        for (ControlFlowNode current = node; current != null; current = parentDominator(current)) {
+            ++depth;
+        }
+
+        return depth;
+    }
+
+    // </editor-fold>
+
     public final void export(final File path) {
         final PlainTextOutput output = new PlainTextOutput();
 
@@ -31,8 +31,8 @@ import com.strobel.functions.Function;
 import com.strobel.util.ContractUtils;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
-import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Set;
@@ -43,10 +43,11 @@ public final class ControlFlowNode implements Comparable<ControlFlowNode> {
     private final ControlFlowNodeType _nodeType;
     private final ControlFlowNode _endFinallyNode;
     private final List<ControlFlowNode> _dominatorTreeChildren = new Collection<>();
-    private final Set<ControlFlowNode> _dominanceFrontier = new LinkedHashSet<>();
     private final List<ControlFlowEdge> _incoming = new Collection<>();
     private final List<ControlFlowEdge> _outgoing = new Collection<>();
 
+    private Set<ControlFlowNode> _dominanceFrontier = Collections.emptySet();
+    private int _dominanceIndex = -1;
     private boolean _visited;
     private ControlFlowNode _copyFrom;
     private ControlFlowNode _immediateDominator;
@@ -112,6 +113,18 @@ public final class ControlFlowNode implements Comparable<ControlFlowNode> {
         return _dominanceFrontier;
     }
 
+    final void setDominanceFrontier(final Set<ControlFlowNode> dominanceFrontier) {
+        _dominanceFrontier = dominanceFrontier;
+    }
+
+    final int getDominanceIndex() {
+        return _dominanceIndex;
+    }
+
+    final void setDominanceIndex(final int dominanceIndex) {
+        _dominanceIndex = dominanceIndex;
+    }
+
     public final List<ControlFlowEdge> getIncoming() {
         return _incoming;
     }
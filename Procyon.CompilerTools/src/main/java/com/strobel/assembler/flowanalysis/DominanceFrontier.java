@@ -0,0 +1,88 @@
+/*
+ * DominanceFrontier.java
+ *
+ * Copyright (c) 2013 Mike Strobel
+ *
+ * This source code is subject to terms and conditions of the Apache License, Version 2.0.
+ * A copy of the license can be found in the License.html file at the root of this distribution.
+ * By using this source code in any fashion, you are agreeing to be bound by the terms of the
+ * Apache License, Version 2.0.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.strobel.assembler.flowanalysis;
+
+import com.strobel.annotations.NotNull;
+import com.strobel.util.ContractUtils;
+
+import java.util.AbstractSet;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A read-only view of a dominance frontier, stored as a bit set over the reverse postorder
+ * numbering assigned by {@link ControlFlowGraph#computeDominance()}.
+ */
+final class DominanceFrontier extends AbstractSet<ControlFlowNode> {
+    private final ControlFlowNode[] _nodes;
+    private final BitSet _members;
+    private final int _size;
+
+    DominanceFrontier(final ControlFlowNode[] nodes, final BitSet members) {
+        _nodes = nodes;
+        _members = members;
+        _size = members.cardinality();
+    }
+
+    @Override
+    public final boolean contains(final Object o) {
+        if (!(o instanceof ControlFlowNode)) {
+            return false;
+        }
+
+        final int index = ((ControlFlowNode) o).getDominanceIndex();
+
+        return index >= 0 &&
+               index < _nodes.length &&
+               _nodes[index] == o &&
+               _members.get(index);
+    }
+
+    @Override
+    public final int size() {
+        return _size;
+    }
+
+    @NotNull
+    @Override
+    public final Iterator<ControlFlowNode> iterator() {
+        return new Iterator<ControlFlowNode>() {
+            private int _position = _members.nextSetBit(0);
+
+            @Override
+            public final boolean hasNext() {
+                return _position >= 0;
+            }
+
+            @Override
+            public final ControlFlowNode next() {
+                if (_position < 0) {
+                    throw new NoSuchElementException();
+                }
+
+                final ControlFlowNode next = _nodes[_position];
+
+                _position = _members.nextSetBit(_position + 1);
+
+                return next;
+            }
+
+            @Override
+            public final void remove() {
+                throw ContractUtils.unsupported();
+            }
+        };
+    }
+}
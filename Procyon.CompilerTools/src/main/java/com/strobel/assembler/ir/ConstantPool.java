@@ -19,6 +19,7 @@ package com.strobel.assembler.ir;
 import com.strobel.assembler.metadata.Buffer;
 import com.strobel.assembler.metadata.FieldReference;
 import com.strobel.assembler.metadata.MethodReference;
+import com.strobel.assembler.metadata.SymbolTable;
 import com.strobel.assembler.metadata.TypeReference;
 import com.strobel.core.Freezable;
 import com.strobel.core.HashUtilities;
@@ -31,6 +32,7 @@ import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 @SuppressWarnings({ "PublicField", "ProtectedField" })
 public final class ConstantPool extends Freezable implements Iterable<ConstantPool.Entry> {
@@ -41,14 +43,28 @@ public final class ConstantPool extends Freezable implements Iterable<ConstantPo
 
     private int _size;
 
+    //
+    // Undecoded entries of a pool read from a class file: the tag and data offset of each slot.
+    //
+    private volatile byte[] _tags;
+    private int[] _offsets;
+    private Buffer _data;
+    private SymbolTable _symbols;
+    private int _unreadCount;
+    private int _readIndex;
+    private AtomicReferenceArray<Entry> _entries;
+
     @Override
     public Iterator<Entry> iterator() {
+        readAllEntries();
         return _pool.iterator();
     }
 
     public void accept(final Visitor visitor) {
         VerifyArgument.notNull(visitor, "visitor");
 
+        readAllEntries();
+
         for (final Entry entry : _pool) {
             if (entry != null) {
                 visitor.visit(entry);
@@ -63,21 +79,30 @@ public final class ConstantPool extends Freezable implements Iterable<ConstantPo
 
     @SuppressWarnings("unchecked")
     public <T extends Entry> T getEntry(final int index) {
-        VerifyArgument.inRange(0, _size + 1, index, "index");
-
-        final Entry info = _pool.get(index - 1);
-
-        if (info == null) {
-            throw new IndexOutOfBoundsException();
-        }
-
-        return (T) info;
+        return (T) get(index);
     }
 
     public Entry get(final int index) {
         VerifyArgument.inRange(0, _size + 1, index, "index");
 
-        final Entry info = _pool.get(index - 1);
+        final AtomicReferenceArray<Entry> entries = _entries;
+
+        Entry info;
+
+        if (entries != null && index < entries.length()) {
+            //
+            // A slot of a pool read from a class file may be decoded by another thread at any
+            // time; only trust what has been published through '_entries'.
+            //
+            info = entries.get(index);
+
+            if (info == null) {
+                info = readEntry(index);
+            }
+        }
+        else {
+            info = _pool.get(index - 1);
+        }
 
         if (info == null) {
             throw new IndexOutOfBoundsException();
@@ -143,7 +168,7 @@ public final class ConstantPool extends Freezable implements Iterable<ConstantPo
 
     public Utf8StringConstantEntry getUtf8StringConstant(final String value) {
         _lookupKey.set(value);
-        Entry entry = _entryMap.get(_lookupKey);
+        Entry entry = findEntry(_lookupKey);
         if (entry == null) {
             if (isFrozen()) {
                 return null;
@@ -157,7 +182,7 @@ public final class ConstantPool extends Freezable implements Iterable<ConstantPo
     public StringConstantEntry getStringConstant(final String value) {
         final Utf8StringConstantEntry utf8Constant = getUtf8StringConstant(value);
         _lookupKey.set(Tag.StringConstant, utf8Constant.index);
-        Entry entry = _entryMap.get(_lookupKey);
+        Entry entry = findEntry(_lookupKey);
         if (entry == null) {
             if (isFrozen()) {
                 return null;
@@ -170,7 +195,7 @@ public final class ConstantPool extends Freezable implements Iterable<ConstantPo
 
     public IntegerConstantEntry getIntegerConstant(final int value) {
         _lookupKey.set(value);
-        Entry entry = _entryMap.get(_lookupKey);
+        Entry entry = findEntry(_lookupKey);
         if (entry == null) {
             if (isFrozen()) {
                 return null;
@@ -183,7 +208,7 @@ public final class ConstantPool extends Freezable implements Iterable<ConstantPo
 
     public FloatConstantEntry getFloatConstant(final float value) {
         _lookupKey.set(value);
-        Entry entry = _entryMap.get(_lookupKey);
+        Entry entry = findEntry(_lookupKey);
         if (entry == null) {
             if (isFrozen()) {
                 return null;
@@ -196,7 +221,7 @@ public final class ConstantPool extends Freezable implements Iterable<ConstantPo
 
     public LongConstantEntry getLongConstant(final long value) {
         _lookupKey.set(value);
-        Entry entry = _entryMap.get(_lookupKey);
+        Entry entry = findEntry(_lookupKey);
         if (entry == null) {
             if (isFrozen()) {
                 return null;
@@ -209,7 +234,7 @@ public final class ConstantPool extends Freezable implements Iterable<ConstantPo
 
     public DoubleConstantEntry getDoubleConstant(final double value) {
         _lookupKey.set(value);
-        Entry entry = _entryMap.get(_lookupKey);
+        Entry entry = findEntry(_lookupKey);
         if (entry == null) {
             if (isFrozen()) {
                 return null;
@@ -223,7 +248,7 @@ public final class ConstantPool extends Freezable implements Iterable<ConstantPo
     public TypeInfoEntry getTypeInfo(final TypeReference type) {
         final Utf8StringConstantEntry name = getUtf8StringConstant(type.getInternalName());
         _lookupKey.set(Tag.TypeInfo, name.index);
-        Entry entry = _entryMap.get(_lookupKey);
+        Entry entry = findEntry(_lookupKey);
         if (entry == null) {
             if (isFrozen()) {
                 return null;
@@ -241,7 +266,7 @@ public final class ConstantPool extends Freezable implements Iterable<ConstantPo
             field.getErasedSignature()
         );
         _lookupKey.set(Tag.FieldReference, typeInfo.index, nameAndDescriptor.index);
-        Entry entry = _entryMap.get(_lookupKey);
+        Entry entry = findEntry(_lookupKey);
         if (entry == null) {
             if (isFrozen()) {
                 return null;
@@ -259,7 +284,7 @@ public final class ConstantPool extends Freezable implements Iterable<ConstantPo
             method.getErasedSignature()
         );
         _lookupKey.set(Tag.MethodReference, typeInfo.index, nameAndDescriptor.index);
-        Entry entry = _entryMap.get(_lookupKey);
+        Entry entry = findEntry(_lookupKey);
         if (entry == null) {
             if (isFrozen()) {
                 return null;
@@ -277,7 +302,7 @@ public final class ConstantPool extends Freezable implements Iterable<ConstantPo
             method.getErasedSignature()
         );
         _lookupKey.set(Tag.InterfaceMethodReference, typeInfo.index, nameAndDescriptor.index);
-        Entry entry = _entryMap.get(_lookupKey);
+        Entry entry = findEntry(_lookupKey);
         if (entry == null) {
             if (isFrozen()) {
                 return null;
@@ -292,7 +317,7 @@ public final class ConstantPool extends Freezable implements Iterable<ConstantPo
         final Utf8StringConstantEntry utf8Name = getUtf8StringConstant(name);
         final Utf8StringConstantEntry utf8Descriptor = getUtf8StringConstant(typeDescriptor);
         _lookupKey.set(Tag.NameAndTypeDescriptor, utf8Name.index, utf8Descriptor.index);
-        Entry entry = _entryMap.get(_lookupKey);
+        Entry entry = findEntry(_lookupKey);
         if (entry == null) {
             if (isFrozen()) {
                 return null;
@@ -305,7 +330,7 @@ public final class ConstantPool extends Freezable implements Iterable<ConstantPo
 
     MethodHandleEntry getMethodHandle(final ReferenceKind referenceKind, final int referenceIndex) {
         _lookupKey.set(Tag.MethodHandle, referenceIndex, referenceKind);
-        Entry entry = _entryMap.get(_lookupKey);
+        Entry entry = findEntry(_lookupKey);
         if (entry == null) {
             if (isFrozen()) {
                 return null;
@@ -318,7 +343,7 @@ public final class ConstantPool extends Freezable implements Iterable<ConstantPo
 
     MethodTypeEntry getMethodType(final int descriptorIndex) {
         _lookupKey.set(Tag.MethodType, descriptorIndex);
-        Entry entry = _entryMap.get(_lookupKey);
+        Entry entry = findEntry(_lookupKey);
         if (entry == null) {
             if (isFrozen()) {
                 return null;
@@ -333,7 +358,7 @@ public final class ConstantPool extends Freezable implements Iterable<ConstantPo
         final int bootstrapMethodAttributeIndex,
         final int nameAndTypeDescriptorIndex) {
         _lookupKey.set(Tag.InvokeDynamicInfo, bootstrapMethodAttributeIndex, nameAndTypeDescriptorIndex);
-        Entry entry = _entryMap.get(_lookupKey);
+        Entry entry = findEntry(_lookupKey);
         if (entry == null) {
             if (isFrozen()) {
                 return null;
@@ -344,72 +369,199 @@ public final class ConstantPool extends Freezable implements Iterable<ConstantPo
         return (InvokeDynamicInfoEntry) entry;
     }
 
+    /**
+     * Reads a constant pool from a class file.  The entries are not decoded here; a single pass
+     * records the tag and offset of each slot, and an entry is only decoded the first time it
+     * is requested.  Callers which only need a few entries, e.g., to resolve the header of a
+     * class, never pay for decoding the rest of the pool.
+     */
     public static ConstantPool read(final Buffer b) {
-        boolean skipOne = false;
+        return read(b, null);
+    }
 
+    /**
+     * Reads a constant pool from a class file, taking its UTF-8 constants from a symbol table.
+     * Strings the table already holds are shared rather than decoded again.
+     */
+    public static ConstantPool read(final Buffer b, final SymbolTable symbols) {
         final ConstantPool pool = new ConstantPool();
         final int size = b.readUnsignedShort();
-        final Key key = new Key();
+        final int start = b.position();
+        final byte[] tags = new byte[size];
+        final int[] offsets = new int[size];
+
+        int entryCount = 0;
 
         for (int i = 1; i < size; i++) {
-            if (skipOne) {
-                skipOne = false;
-                continue;
-            }
+            final Tag tag = Tag.fromValue(b.readUnsignedByte());
 
-            key.clear();
+            ++entryCount;
 
-            final Tag tag = Tag.fromValue(b.readUnsignedByte());
+            tags[i] = (byte) tag.value;
+            offsets[i] = b.position() - start;
 
             switch (tag) {
                 case Utf8StringConstant:
-                    new Utf8StringConstantEntry(pool, b.readUtf8());
+                    b.advance(b.readUnsignedShort());
                     break;
                 case IntegerConstant:
-                    new IntegerConstantEntry(pool, b.readInt());
+                case FloatConstant:
+                case FieldReference:
+                case MethodReference:
+                case InterfaceMethodReference:
+                case NameAndTypeDescriptor:
+                case InvokeDynamicInfo:
+                    b.advance(4);
+                    break;
+                case LongConstant:
+                case DoubleConstant:
+                    b.advance(8);
+                    ++i;
+                    break;
+                case TypeInfo:
+                case StringConstant:
+                case MethodType:
+                    b.advance(2);
+                    break;
+                case MethodHandle:
+                    b.advance(3);
+                    break;
+            }
+        }
+
+        //
+        // Keep a private copy of the pool's bytes; the class file buffer may be reused or
+        // repositioned long before the last entry is decoded.
+        //
+
+        final byte[] data = new byte[b.position() - start];
+
+        b.copyTo(start, data, 0, data.length);
+
+        for (int i = 1; i < size; i++) {
+            pool._pool.add(null);
+        }
+
+        pool._size = Math.max(0, size - 1);
+        pool._tags = tags;
+        pool._offsets = offsets;
+        pool._data = new Buffer(data);
+        pool._symbols = symbols;
+        pool._unreadCount = entryCount;
+        pool._entries = new AtomicReferenceArray<>(size);
+
+        return pool;
+    }
+
+    private synchronized Entry readEntry(final int index) {
+        final Entry existing = _pool.get(index - 1);
+
+        if (existing != null || _tags == null || _tags[index] == 0) {
+            return existing;
+        }
+
+        final Buffer b = _data;
+
+        b.position(_offsets[index]);
+
+        //
+        // The entry constructors append to the pool; tell this one which reserved slot it takes.
+        //
+
+        _readIndex = index;
+
+        final Entry entry;
+
+        try {
+            switch (Tag.fromValue(_tags[index])) {
+                case Utf8StringConstant:
+                    entry = new Utf8StringConstantEntry(this, _symbols != null ? readSymbol(b) : b.readUtf8());
+                    break;
+                case IntegerConstant:
+                    entry = new IntegerConstantEntry(this, b.readInt());
                     break;
                 case FloatConstant:
-                    new FloatConstantEntry(pool, b.readFloat());
+                    entry = new FloatConstantEntry(this, b.readFloat());
                     break;
                 case LongConstant:
-                    new LongConstantEntry(pool, b.readLong());
-                    skipOne = true;
+                    entry = new LongConstantEntry(this, b.readLong());
                     break;
                 case DoubleConstant:
-                    new DoubleConstantEntry(pool, b.readDouble());
-                    skipOne = true;
+                    entry = new DoubleConstantEntry(this, b.readDouble());
                     break;
                 case TypeInfo:
-                    new TypeInfoEntry(pool, b.readUnsignedShort());
+                    entry = new TypeInfoEntry(this, b.readUnsignedShort());
                     break;
                 case StringConstant:
-                    new StringConstantEntry(pool, b.readUnsignedShort());
+                    entry = new StringConstantEntry(this, b.readUnsignedShort());
                     break;
                 case FieldReference:
-                    new FieldReferenceEntry(pool, b.readUnsignedShort(), b.readUnsignedShort());
+                    entry = new FieldReferenceEntry(this, b.readUnsignedShort(), b.readUnsignedShort());
                     break;
                 case MethodReference:
-                    new MethodReferenceEntry(pool, b.readUnsignedShort(), b.readUnsignedShort());
+                    entry = new MethodReferenceEntry(this, b.readUnsignedShort(), b.readUnsignedShort());
                     break;
                 case InterfaceMethodReference:
-                    new InterfaceMethodReferenceEntry(pool, b.readUnsignedShort(), b.readUnsignedShort());
+                    entry = new InterfaceMethodReferenceEntry(this, b.readUnsignedShort(), b.readUnsignedShort());
                     break;
                 case NameAndTypeDescriptor:
-                    new NameAndTypeDescriptorEntry(pool, b.readUnsignedShort(), b.readUnsignedShort());
+                    entry = new NameAndTypeDescriptorEntry(this, b.readUnsignedShort(), b.readUnsignedShort());
                     break;
                 case MethodHandle:
-                    new MethodHandleEntry(pool, ReferenceKind.fromTag(b.readUnsignedByte()), b.readUnsignedShort());
+                    entry = new MethodHandleEntry(this, ReferenceKind.fromTag(b.readUnsignedByte()), b.readUnsignedShort());
                     break;
                 case MethodType:
-                    new MethodTypeEntry(pool, b.readUnsignedShort());
+                    entry = new MethodTypeEntry(this, b.readUnsignedShort());
                     break;
                 case InvokeDynamicInfo:
-                    new InvokeDynamicInfoEntry(pool, b.readUnsignedShort(), b.readUnsignedShort());
+                    entry = new InvokeDynamicInfoEntry(this, b.readUnsignedShort(), b.readUnsignedShort());
                     break;
+                default:
+                    throw new IllegalStateException("Unexpected constant pool tag: " + _tags[index]);
             }
         }
+        finally {
+            _readIndex = 0;
+        }
 
-        return pool;
+        //
+        // Only publish the entry once its constructor has completed.  The volatile store into
+        // '_entries' lets 'get' return it without taking the lock.
+        //
+
+        _pool.set(index - 1, entry);
+        _entries.set(index, entry);
+
+        if (--_unreadCount == 0) {
+            _tags = null;
+            _offsets = null;
+            _data = null;
+            _symbols = null;
+        }
+
+        return entry;
+    }
+
+    private String readSymbol(final Buffer b) {
+        final int length = b.readUnsignedShort();
+        return _symbols.lookup(b.array(), b.position(), length);
+    }
+
+    private void readAllEntries() {
+        if (_tags == null) {
+            return;
+        }
+
+        synchronized (this) {
+            for (int i = 1; _tags != null && i <= _size; i++) {
+                readEntry(i);
+            }
+        }
+    }
+
+    private Entry findEntry(final Key key) {
+        readAllEntries();
+        return _entryMap.get(key);
     }
 
     // <editor-fold defaultstate="collapsed" desc="Entry Base Class">
@@ -421,6 +573,16 @@ public final class ConstantPool extends Freezable implements Iterable<ConstantPo
 
         Entry(final ConstantPool owner) {
             this.owner = owner;
+
+            if (owner._readIndex != 0) {
+                //
+                // A lazily decoded entry takes the slot it was read into; 'readEntry' stores it
+                // there once it is fully constructed.
+                //
+                this.index = owner._readIndex;
+                return;
+            }
+
             this.index = owner._size + 1;
             owner._pool.add(this);
             owner._size += size();
@@ -0,0 +1,554 @@
+/*
+ * PackedInstructions.java
+ *
+ * Copyright (c) 2013 Mike Strobel
+ *
+ * This source code is subject to terms and conditions of the Apache License, Version 2.0.
+ * A copy of the license can be found in the License.html file at the root of this distribution.
+ * By using this source code in any fashion, you are agreeing to be bound by the terms of the
+ * Apache License, Version 2.0.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.strobel.assembler.ir;
+
+import com.strobel.assembler.metadata.Buffer;
+import com.strobel.assembler.metadata.BuiltinTypes;
+import com.strobel.assembler.metadata.DynamicCallSite;
+import com.strobel.assembler.metadata.FieldReference;
+import com.strobel.assembler.metadata.IMetadataScope;
+import com.strobel.assembler.metadata.MethodReference;
+import com.strobel.assembler.metadata.TypeReference;
+import com.strobel.core.VerifyArgument;
+
+import java.util.Arrays;
+
+/**
+ * A read-only, compact representation of a method's bytecode, for analyses which never modify
+ * the instruction stream.  Rather than one {@link Instruction} object per instruction, the offset,
+ * opcode, and operands of each instruction are stored in parallel {@code int} arrays:
+ * <ul>
+ * <li>Constant pool operands (types, fields, methods, call sites, and constants) are stored as
+ * constant pool tokens, and are only resolved when requested.</li>
+ * <li>Branch targets are stored as instruction indexes.</li>
+ * <li>Local variable operands are stored as slots; the immediate operand of {@code iinc} and the
+ * dimension count of {@code multianewarray} are stored as a second operand.</li>
+ * <li>Switch operands index a table holding the default target, the keys, and the targets.</li>
+ * </ul>
+ * Instructions are accessed by index, or through a reusable {@link View}.
+ */
+public final class PackedInstructions {
+    private final IMetadataScope _scope;
+    private final int _count;
+    private final int[] _offsets;
+    private final int[] _opCodes;
+    private final int[] _operands;
+    private final int[] _extraOperands;
+    private final int[][] _switches;
+
+    private PackedInstructions(
+        final IMetadataScope scope,
+        final int count,
+        final int[] offsets,
+        final int[] opCodes,
+        final int[] operands,
+        final int[] extraOperands,
+        final int[][] switches) {
+
+        _scope = scope;
+        _count = count;
+        _offsets = offsets;
+        _opCodes = opCodes;
+        _operands = operands;
+        _extraOperands = extraOperands;
+        _switches = switches;
+    }
+
+    /**
+     * Decodes the bytecode in {@code code}, from position 0 to the end of the buffer.
+     *
+     * @param code the bytecode of a method
+     * @param scope the scope against which constant pool tokens are resolved
+     */
+    public static PackedInstructions read(final Buffer code, final IMetadataScope scope) {
+        VerifyArgument.notNull(code, "code");
+        VerifyArgument.notNull(scope, "scope");
+
+        final int codeSize = code.size();
+
+        //
+        // No instruction is smaller than one byte, so the code size bounds the instruction count.
+        //
+
+        int[] offsets = new int[codeSize + 1];
+        int[] opCodes = new int[codeSize];
+        int[] operands = new int[codeSize];
+        int[] extraOperands = new int[codeSize];
+        int[][] switches = null;
+        int switchCount = 0;
+        int count = 0;
+
+        code.position(0);
+
+        while (code.position() < codeSize) {
+            final int offset = code.position();
+
+            int opCode = code.readUnsignedByte();
+
+            if (opCode == OpCode.WIDE) {
+                opCode = opCode << 8 | code.readUnsignedByte();
+            }
+
+            final OpCode op = OpCode.get(opCode);
+
+            int operand = 0;
+            int extraOperand = 0;
+
+            switch (op.getOperandType()) {
+                case None:
+                    break;
+
+                case PrimitiveTypeCode:
+                case Constant:
+                    operand = code.readUnsignedByte();
+                    break;
+
+                case TypeReference:
+                case MethodReference:
+                case FieldReference:
+                case WideConstant:
+                    operand = code.readUnsignedShort();
+
+                    if (op == OpCode.INVOKEINTERFACE) {
+                        code.advance(2);
+                    }
+
+                    break;
+
+                case TypeReferenceU1:
+                    operand = code.readUnsignedShort();
+                    extraOperand = code.readUnsignedByte();
+                    break;
+
+                case DynamicCallSite:
+                    operand = code.readUnsignedShort();
+                    code.advance(2);
+                    break;
+
+                case BranchTarget:
+                case BranchTargetWide:
+                    //
+                    // Branch targets hold offsets until all instruction indexes are known.
+                    //
+                    if (op.isWide()) {
+                        operand = offset + scope.<Integer>lookupConstant(code.readUnsignedShort());
+                    }
+                    else if (op.getOperandType() == OperandType.BranchTargetWide) {
+                        operand = offset + code.readInt();
+                    }
+                    else {
+                        operand = offset + (int) code.readShort();
+                    }
+                    break;
+
+                case I1:
+                    operand = code.readByte();
+                    break;
+
+                case I2:
+                    operand = code.readShort();
+                    break;
+
+                case I8: {
+                    final long value = code.readLong();
+                    operand = (int) value;
+                    extraOperand = (int) (value >>> 32);
+                    break;
+                }
+
+                case Switch: {
+                    while (code.position() % 4 != 0) {
+                        code.readByte();
+                    }
+
+                    final int[] table;
+                    final int defaultOffset = offset + code.readInt();
+
+                    if (op == OpCode.TABLESWITCH) {
+                        final int low = code.readInt();
+                        final int high = code.readInt();
+
+                        table = new int[3 + (high - low + 1)];
+                        table[1] = low;
+                        table[2] = high;
+
+                        for (int i = 3; i < table.length; i++) {
+                            table[i] = offset + code.readInt();
+                        }
+                    }
+                    else {
+                        final int pairCount = code.readInt();
+
+                        table = new int[2 + pairCount * 2];
+                        table[1] = pairCount;
+
+                        for (int i = 0; i < pairCount; i++) {
+                            table[2 + i * 2] = code.readInt();
+                            table[3 + i * 2] = offset + code.readInt();
+                        }
+                    }
+
+                    table[0] = defaultOffset;
+
+                    if (switches == null) {
+                        switches = new int[4][];
+                    }
+                    else if (switchCount == switches.length) {
+                        switches = Arrays.copyOf(switches, switchCount * 2);
+                    }
+
+                    operand = switchCount;
+                    switches[switchCount++] = table;
+                    break;
+                }
+
+                case Local:
+                    operand = op.isWide() ? code.readUnsignedShort() : code.readUnsignedByte();
+                    break;
+
+                case LocalI1:
+                    operand = op.isWide() ? code.readUnsignedShort() : code.readUnsignedByte();
+                    extraOperand = code.readByte();
+                    break;
+
+                case LocalI2:
+                    operand = op.isWide() ? code.readUnsignedShort() : code.readUnsignedByte();
+                    extraOperand = code.readShort();
+                    break;
+
+                default:
+                    throw new IllegalStateException("Unrecognized opcode: " + opCode);
+            }
+
+            offsets[count] = offset;
+            opCodes[count] = opCode;
+            operands[count] = operand;
+            extraOperands[count] = extraOperand;
+            ++count;
+        }
+
+        offsets[count] = codeSize;
+
+        if (count < codeSize) {
+            offsets = Arrays.copyOf(offsets, count + 1);
+            opCodes = Arrays.copyOf(opCodes, count);
+            operands = Arrays.copyOf(operands, count);
+            extraOperands = Arrays.copyOf(extraOperands, count);
+        }
+
+        if (switches != null && switchCount < switches.length) {
+            switches = Arrays.copyOf(switches, switchCount);
+        }
+
+        final PackedInstructions instructions = new PackedInstructions(
+            scope,
+            count,
+            offsets,
+            opCodes,
+            operands,
+            extraOperands,
+            switches
+        );
+
+        instructions.resolveBranchTargets();
+
+        return instructions;
+    }
+
+    private void resolveBranchTargets() {
+        for (int i = 0; i < _count; i++) {
+            final OperandType operandType = OpCode.get(_opCodes[i]).getOperandType();
+
+            if (operandType == OperandType.BranchTarget || operandType == OperandType.BranchTargetWide) {
+                _operands[i] = indexOfTarget(_operands[i]);
+            }
+            else if (operandType == OperandType.Switch) {
+                final int[] table = _switches[_operands[i]];
+                final boolean isTableSwitch = _opCodes[i] == OpCode.TABLESWITCH.getCode();
+
+                table[0] = indexOfTarget(table[0]);
+
+                for (int j = 3; j < table.length; j += isTableSwitch ? 1 : 2) {
+                    table[j] = indexOfTarget(table[j]);
+                }
+            }
+        }
+    }
+
+    private int indexOfTarget(final int offset) {
+        final int index = indexOfOffset(offset);
+
+        //
+        // A branch past the last instruction targets the end of the method.
+        //
+
+        return index >= 0 ? index : _count;
+    }
+
+    // <editor-fold defaultstate="collapsed" desc="Instruction Access">
+
+    /**
+     * Gets the number of instructions.  An instruction index equal to the number of instructions
+     * denotes the end of the method; it may appear as a branch target, but has no opcode.
+     */
+    public int size() {
+        return _count;
+    }
+
+    public int getCodeSize() {
+        return _offsets[_count];
+    }
+
+    /**
+     * Gets the index of the instruction starting at {@code offset}, or {@code -1} if no
+     * instruction starts there.
+     */
+    public int indexOfOffset(final int offset) {
+        final int index = Arrays.binarySearch(_offsets, 0, _count, offset);
+        return index >= 0 ? index : -1;
+    }
+
+    public int getOffset(final int index) {
+        return _offsets[index];
+    }
+
+    public int getEndOffset(final int index) {
+        return _offsets[index + 1];
+    }
+
+    public OpCode getOpCode(final int index) {
+        return OpCode.get(_opCodes[index]);
+    }
+
+    /**
+     * Gets the raw operand of an instruction:  a constant pool token, an instruction index,
+     * a local variable slot, an immediate value, or a switch table index, depending on the
+     * operand type of the opcode.
+     */
+    public int getOperand(final int index) {
+        return _operands[index];
+    }
+
+    /**
+     * Gets the second operand of an {@code iinc} or {@code multianewarray} instruction, or
+     * the high word of an eight-byte immediate operand.
+     */
+    public int getExtraOperand(final int index) {
+        return _extraOperands[index];
+    }
+
+    public TypeReference getTypeOperand(final int index) {
+        final OpCode op = getOpCode(index);
+
+        if (op.getOperandType() == OperandType.PrimitiveTypeCode) {
+            return BuiltinTypes.fromPrimitiveTypeCode(_operands[index]);
+        }
+
+        return _scope.lookupType(_operands[index]);
+    }
+
+    public MethodReference getMethodOperand(final int index) {
+        return _scope.lookupMethod(_operands[index]);
+    }
+
+    public FieldReference getFieldOperand(final int index) {
+        return _scope.lookupField(_operands[index]);
+    }
+
+    public DynamicCallSite getDynamicCallSiteOperand(final int index) {
+        return _scope.lookupDynamicCallSite(_operands[index]);
+    }
+
+    public Object getConstantOperand(final int index) {
+        return _scope.lookupConstant(_operands[index]);
+    }
+
+    /**
+     * Gets the local variable slot accessed by a load, store, or {@code iinc} instruction,
+     * including the short forms (e.g., {@code aload_0}) which have no explicit operand.
+     */
+    public int getVariableSlot(final int index) {
+        final OpCode op = getOpCode(index);
+
+        if (op.getOperandType() == OperandType.None) {
+            return OpCodeHelpers.getLoadStoreMacroArgumentIndex(op);
+        }
+
+        return _operands[index];
+    }
+
+    /**
+     * Gets the index of the instruction targeted by a branch instruction.
+     */
+    public int getBranchTarget(final int index) {
+        return _operands[index];
+    }
+
+    public int getSwitchDefaultTarget(final int index) {
+        return _switches[_operands[index]][0];
+    }
+
+    public int getSwitchTargetCount(final int index) {
+        final int[] table = _switches[_operands[index]];
+        return isTableSwitch(index) ? table.length - 3 : table[1];
+    }
+
+    /**
+     * Gets the key of a switch case, i.e., the low value plus the case position for a
+     * {@code tableswitch}, or the matched key for a {@code lookupswitch}.
+     */
+    public int getSwitchKey(final int index, final int caseIndex) {
+        final int[] table = _switches[_operands[index]];
+        return isTableSwitch(index) ? table[1] + caseIndex : table[2 + caseIndex * 2];
+    }
+
+    public int getSwitchTarget(final int index, final int caseIndex) {
+        final int[] table = _switches[_operands[index]];
+        return isTableSwitch(index) ? table[3 + caseIndex] : table[3 + caseIndex * 2];
+    }
+
+    private boolean isTableSwitch(final int index) {
+        return _opCodes[index] == OpCode.TABLESWITCH.getCode();
+    }
+
+    /**
+     * Creates a view positioned at the first instruction.
+     */
+    public View view() {
+        return new View(this);
+    }
+
+    // </editor-fold>
+
+    // <editor-fold defaultstate="collapsed" desc="View Class">
+
+    /**
+     * A movable, flyweight view of one instruction in a {@link PackedInstructions} stream.
+     * A single view may be used to walk the whole stream without allocating per instruction.
+     */
+    public final static class View {
+        private final PackedInstructions _instructions;
+        private int _index;
+
+        View(final PackedInstructions instructions) {
+            _instructions = instructions;
+        }
+
+        public PackedInstructions getInstructions() {
+            return _instructions;
+        }
+
+        public int getIndex() {
+            return _index;
+        }
+
+        /**
+         * Determines whether the view is positioned at an instruction, rather than the end
+         * of the method.
+         */
+        public boolean isValid() {
+            return _index >= 0 && _index < _instructions._count;
+        }
+
+        public View moveTo(final int index) {
+            VerifyArgument.inRange(0, _instructions._count, index, "index");
+            _index = index;
+            return this;
+        }
+
+        public boolean moveToOffset(final int offset) {
+            final int index = _instructions.indexOfOffset(offset);
+
+            if (index < 0) {
+                return false;
+            }
+
+            _index = index;
+            return true;
+        }
+
+        public boolean moveNext() {
+            if (_index < _instructions._count) {
+                ++_index;
+            }
+            return _index < _instructions._count;
+        }
+
+        public boolean movePrevious() {
+            if (_index > 0) {
+                --_index;
+                return true;
+            }
+            return false;
+        }
+
+        public int getOffset() {
+            return _instructions.getOffset(_index);
+        }
+
+        public int getEndOffset() {
+            return _instructions.getEndOffset(_index);
+        }
+
+        public OpCode getOpCode() {
+            return _instructions.getOpCode(_index);
+        }
+
+        public int getOperand() {
+            return _instructions.getOperand(_index);
+        }
+
+        public int getExtraOperand() {
+            return _instructions.getExtraOperand(_index);
+        }
+
+        public TypeReference getTypeOperand() {
+            return _instructions.getTypeOperand(_index);
+        }
+
+        public MethodReference getMethodOperand() {
+            return _instructions.getMethodOperand(_index);
+        }
+
+        public FieldReference getFieldOperand() {
+            return _instructions.getFieldOperand(_index);
+        }
+
+        public DynamicCallSite getDynamicCallSiteOperand() {
+            return _instructions.getDynamicCallSiteOperand(_index);
+        }
+
+        public Object getConstantOperand() {
+            return _instructions.getConstantOperand(_index);
+        }
+
+        public int getVariableSlot() {
+            return _instructions.getVariableSlot(_index);
+        }
+
+        public int getBranchTarget() {
+            return _instructions.getBranchTarget(_index);
+        }
+
+        @Override
+        public String toString() {
+            if (!isValid()) {
+                return "<end>";
+            }
+            return String.format("#%04d: %s", getOffset(), getOpCode().name());
+        }
+    }
+
+    // </editor-fold>
+}
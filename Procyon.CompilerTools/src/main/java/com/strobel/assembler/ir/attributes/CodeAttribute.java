@@ -57,13 +57,7 @@ public final class CodeAttribute extends SourceAttribute {
 
         final Buffer code = new Buffer(codeSize);
 
-        System.arraycopy(
-            buffer.array(),
-            codeOffset,
-            code.array(),
-            0,
-            codeSize
-        );
+        buffer.copyTo(codeOffset, code.array(), 0, codeSize);
 
         _code = code;
         _attributesView = ArrayUtilities.asUnmodifiableList(attributes.clone());
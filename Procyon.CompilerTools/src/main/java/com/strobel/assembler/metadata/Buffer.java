@@ -19,18 +19,30 @@ package com.strobel.assembler.metadata;
 import com.strobel.core.VerifyArgument;
 import com.strobel.util.EmptyArrayCache;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.Arrays;
 
 /**
+ * A big-endian byte buffer used to read and write class files.  A buffer is normally backed by a
+ * growable heap array, but it may also wrap a {@link ByteBuffer}, e.g., a direct buffer or a mapped
+ * region of a file, in which case class files are parsed in place without first being copied onto
+ * the heap.  A wrapped buffer is copied onto the heap only if it is written to or its backing
+ * {@linkplain #array() array} is requested.
+ *
  * @author Mike Strobel
  */
 public class Buffer {
     private final static int DEFAULT_SIZE = 64;
 
     private byte[] _data;
+    private ByteBuffer _view;
     private int _length;
     private int _position;
+    private boolean _isPooled;
 
     public Buffer() {
         _data = new byte[DEFAULT_SIZE];
@@ -42,6 +54,15 @@ public class Buffer {
         _length = data.length;
     }
 
+    /**
+     * Creates a buffer over the remaining bytes of {@code data}.
+     *
+     * @see #wrap(ByteBuffer)
+     */
+    public Buffer(final ByteBuffer data) {
+        wrap(data);
+    }
+
     public Buffer(final int initialSize) {
         _data = new byte[initialSize];
         _length = initialSize;
@@ -80,20 +101,104 @@ public class Buffer {
     }
 
     public void reset(final int initialSize) {
-        if (VerifyArgument.isNonNegative(initialSize, "initialSize") == 0) {
+        _view = null;
+
+        //
+        // A pooled buffer keeps its array when shrinking, as it will be reused for other class files.
+        //
+
+        if (VerifyArgument.isNonNegative(initialSize, "initialSize") == 0 && !_isPooled) {
             _data = EmptyArrayCache.EMPTY_BYTE_ARRAY;
         }
-        else if (initialSize > _data.length || initialSize < _data.length / 4) {
+        else if (initialSize > _data.length || initialSize < _data.length / 4 && !_isPooled) {
             _data = new byte[initialSize];
         }
         _length = initialSize;
         _position = 0;
     }
 
+    /**
+     * Replaces the contents of this buffer with the remaining bytes of {@code data}, without copying
+     * them.  The position is reset to zero.  If {@code data} is backed by an accessible array whose
+     * contents start at index zero, this buffer simply adopts that array.  Otherwise, changes to the
+     * contents of {@code data} are visible through this buffer until this buffer is written to, at
+     * which point its contents are copied onto the heap.
+     */
+    public void wrap(final ByteBuffer data) {
+        VerifyArgument.notNull(data, "data");
+
+        if (data.hasArray() && data.arrayOffset() + data.position() == 0) {
+            //
+            // A heap buffer starting at the beginning of its array; use the array directly.
+            //
+            _data = data.array();
+            _view = null;
+        }
+        else {
+            //
+            // Slicing gives us a big-endian view whose indexes start at zero.
+            //
+            _data = EmptyArrayCache.EMPTY_BYTE_ARRAY;
+            _view = data.slice();
+        }
+
+        _length = data.remaining();
+        _position = 0;
+
+        //
+        // We do not own the wrapped storage, so it must never be handed out again by a pool.
+        //
+        _isPooled = false;
+    }
+
+    final boolean isPooled() {
+        return _isPooled;
+    }
+
+    final void setPooled(final boolean pooled) {
+        _isPooled = pooled;
+    }
+
+    final int capacity() {
+        return _view != null ? _length : _data.length;
+    }
+
+    /**
+     * Indicates whether this buffer's contents are held in a wrapped {@link ByteBuffer} rather than
+     * in a heap array.
+     */
+    public boolean isWrapped() {
+        return _view != null;
+    }
+
+    /**
+     * Gets the array backing this buffer.  If this buffer wraps a {@link ByteBuffer} which is not
+     * backed by an accessible array, its contents are first copied onto the heap.
+     */
     public byte[] array() {
+        ensureHeapStorage();
         return _data;
     }
 
+    /**
+     * Copies bytes out of this buffer without changing its position.
+     */
+    public void copyTo(final int index, final byte[] destination, final int destinationOffset, final int length) {
+        if (index < 0 || length < 0 || index + length > _length) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        if (_view == null) {
+            System.arraycopy(_data, index, destination, destinationOffset, length);
+            return;
+        }
+
+        final ByteBuffer source = _view.duplicate();
+
+        source.position(index);
+        source.get(destination, destinationOffset, length);
+    }
+
     public int read(final byte[] buffer, final int offset, final int length) {
         if (buffer == null) {
             throw new NullPointerException();
@@ -114,7 +219,7 @@ public class Buffer {
             return 0;
         }
 
-        System.arraycopy(_data, _position, buffer, offset, actualLength);
+        copyTo(_position, buffer, offset, actualLength);
 
         _position += actualLength;
 
@@ -124,16 +229,25 @@ public class Buffer {
     public String readUtf8() {
         final int utfLength = readUnsignedShort();
         final byte[] byteBuffer = new byte[utfLength];
+
+        read(byteBuffer, 0, utfLength);
+
+        return decodeUtf8(byteBuffer, 0, utfLength);
+    }
+
+    /**
+     * Decodes {@code utfLength} bytes of modified UTF-8, as found in class file constant pools,
+     * starting at {@code offset}.
+     */
+    static String decodeUtf8(final byte[] byteBuffer, final int offset, final int utfLength) {
         final char[] charBuffer = new char[utfLength];
 
         int ch, ch2, ch3;
         int count = 0;
         int charactersRead = 0;
 
-        read(byteBuffer, 0, utfLength);
-
         while (count < utfLength) {
-            ch = (int) byteBuffer[count] & 0xFF;
+            ch = (int) byteBuffer[offset + count] & 0xFF;
             if (ch > 127) {
                 break;
             }
@@ -142,7 +256,7 @@ public class Buffer {
         }
 
         while (count < utfLength) {
-            ch = (int) byteBuffer[count] & 0xff;
+            ch = (int) byteBuffer[offset + count] & 0xff;
 
             switch (ch & 0xE0) {
                 case 0x00:
@@ -166,7 +280,7 @@ public class Buffer {
                         throw new IllegalStateException("malformed input: partial character at end");
                     }
 
-                    ch2 = (int) byteBuffer[count - 1];
+                    ch2 = (int) byteBuffer[offset + count - 1];
 
                     if ((ch2 & 0xC0) != 0x80) {
                         throw new IllegalStateException("malformed input around byte " + count);
@@ -183,8 +297,8 @@ public class Buffer {
                         throw new IllegalStateException("malformed input: partial character at end");
                     }
 
-                    ch2 = (int) byteBuffer[count - 2];
-                    ch3 = (int) byteBuffer[count - 1];
+                    ch2 = (int) byteBuffer[offset + count - 2];
+                    ch3 = (int) byteBuffer[offset + count - 1];
 
                     if ((ch2 & 0xC0) != 0x80 || (ch3 & 0xC0) != 0x80) {
                         throw new IllegalStateException("malformed input around byte " + (count - 1));
@@ -207,28 +321,40 @@ public class Buffer {
 
     public byte readByte() {
         verifyReadableBytes(1);
-        return _data[_position++];
+        return _view != null ? _view.get(_position++) : _data[_position++];
     }
 
     public int readUnsignedByte() {
         verifyReadableBytes(1);
-        return _data[_position++] & 0xFF;
+        return (_view != null ? _view.get(_position++) : _data[_position++]) & 0xFF;
     }
 
     public short readShort() {
-        verifyReadableBytes(2);
-        return (short) ((readUnsignedByte() << 8) +
-                        (readUnsignedByte() << 0));
+        return (short) readUnsignedShort();
     }
 
     public int readUnsignedShort() {
         verifyReadableBytes(2);
+
+        if (_view != null) {
+            final int value = _view.getShort(_position) & 0xFFFF;
+            _position += 2;
+            return value;
+        }
+
         return ((readUnsignedByte() << 8) +
                 (readUnsignedByte() << 0));
     }
 
     public int readInt() {
         verifyReadableBytes(4);
+
+        if (_view != null) {
+            final int value = _view.getInt(_position);
+            _position += 4;
+            return value;
+        }
+
         return (readUnsignedByte() << 24) +
                (readUnsignedByte() << 16) +
                (readUnsignedByte() << 8) +
@@ -237,6 +363,13 @@ public class Buffer {
 
     public long readLong() {
         verifyReadableBytes(8);
+
+        if (_view != null) {
+            final long value = _view.getLong(_position);
+            _position += 8;
+            return value;
+        }
+
         return ((long)readUnsignedByte() << 56) +
                ((long)readUnsignedByte() << 48) +
                ((long)readUnsignedByte() << 40) +
@@ -373,6 +506,17 @@ public class Buffer {
         return this;
     }
 
+    /**
+     * Writes bytes copied from another buffer, without changing the position of {@code source}.
+     */
+    public Buffer putBuffer(final Buffer source, final int offset, final int length) {
+        VerifyArgument.notNull(source, "source");
+        ensureWriteableBytes(length);
+        source.copyTo(offset, _data, _position, length);
+        _position += length;
+        return this;
+    }
+
     public Buffer putByteArray(final byte[] b, final int offset, final int length) {
         ensureWriteableBytes(length);
         if (b != null) {
@@ -382,6 +526,78 @@ public class Buffer {
         return this;
     }
 
+    /**
+     * Replaces the contents of this buffer with the remainder of a stream, reading directly into
+     * the backing array.  The position is reset to zero.
+     *
+     * @param in the stream to read
+     * @param expectedLength the expected number of bytes, or a negative value if unknown; the stream is
+     *                       always read to its end, so an inaccurate length only costs a reallocation
+     */
+    public void readFrom(final InputStream in, final int expectedLength) throws IOException {
+        VerifyArgument.notNull(in, "in");
+
+        reset(expectedLength > 0 ? expectedLength : DEFAULT_SIZE);
+
+        int length = 0;
+
+        while (true) {
+            if (length == _data.length) {
+                //
+                // We have either filled the expected length or had no idea of the length.  Probe
+                // for the end of the stream before growing, as the expected length is usually exact.
+                //
+
+                final int next = in.read();
+
+                if (next < 0) {
+                    break;
+                }
+
+                _data = Arrays.copyOf(_data, Math.max(2 * _data.length, DEFAULT_SIZE));
+                _data[length++] = (byte) next;
+            }
+
+            final int bytesRead = in.read(_data, length, _data.length - length);
+
+            if (bytesRead < 0) {
+                break;
+            }
+
+            length += bytesRead;
+        }
+
+        _length = length;
+        _position = 0;
+    }
+
+    /**
+     * Replaces the contents of this buffer with the contents of a file, reading directly into the
+     * backing array.  The position is reset to zero.
+     */
+    public void readFrom(final FileChannel channel) throws IOException {
+        VerifyArgument.notNull(channel, "channel");
+
+        final long size = channel.size();
+
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("File is too large: " + size + " bytes.");
+        }
+
+        reset((int) size);
+
+        final ByteBuffer target = ByteBuffer.wrap(_data, 0, (int) size);
+
+        while (target.hasRemaining()) {
+            if (channel.read(target) < 0) {
+                break;
+            }
+        }
+
+        _length = target.position();
+        _position = 0;
+    }
+
     protected void verifyReadableBytes(final int size) {
         if (VerifyArgument.isNonNegative(size, "size") > 0 && _position + size > _length) {
             throw new BufferUnderflowException();
@@ -389,6 +605,8 @@ public class Buffer {
     }
 
     protected void ensureWriteableBytes(final int size) {
+        ensureHeapStorage();
+
         final int minLength = _position + size;
 
         if (minLength > _data.length) {
@@ -400,4 +618,19 @@ public class Buffer {
 
         _length = Math.max(minLength, _length);
     }
+
+    private void ensureHeapStorage() {
+        if (_view == null) {
+            return;
+        }
+
+        final byte[] data = new byte[_length];
+        final ByteBuffer source = _view.duplicate();
+
+        source.position(0);
+        source.get(data, 0, _length);
+
+        _data = data;
+        _view = null;
+    }
 }
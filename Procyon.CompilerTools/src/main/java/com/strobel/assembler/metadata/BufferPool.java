@@ -0,0 +1,134 @@
+/*
+ * BufferPool.java
+ *
+ * Copyright (c) 2013 Mike Strobel
+ *
+ * This source code is subject to terms and conditions of the Apache License, Version 2.0.
+ * A copy of the license can be found in the License.html file at the root of this distribution.
+ * By using this source code in any fashion, you are agreeing to be bound by the terms of the
+ * Apache License, Version 2.0.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.strobel.assembler.metadata;
+
+import com.strobel.core.VerifyArgument;
+
+/**
+ * Recycles the short-lived buffers into which class files are read, so that loading thousands
+ * of small classes does not allocate a fresh array for each one.  Each thread keeps its own
+ * pool, so acquiring and releasing buffers never contends with other threads; a buffer released
+ * on another thread than it was acquired on simply joins that thread's pool.
+ * <p>
+ * Pooled buffers are grouped into power-of-two size classes by the capacity of their backing
+ * arrays.  A pooled buffer keeps its array when reset to a smaller size, and a buffer which wraps
+ * storage it does not own, e.g., a mapped file, is never pooled again.  Only buffers that nothing
+ * else still refers to may be released.
+ */
+public final class BufferPool {
+    private final static int MIN_SIZE_CLASS = 10;        // 1 KB
+    private final static int MAX_SIZE_CLASS = 18;        // 256 KB
+    private final static int BUFFERS_PER_SIZE_CLASS = 2;
+
+    private final static ThreadLocal<BufferPool> THREAD_POOLS = new ThreadLocal<BufferPool>() {
+        @Override
+        protected BufferPool initialValue() {
+            return new BufferPool();
+        }
+    };
+
+    private final Buffer[][] _buffers;
+    private final int[] _counts;
+
+    private BufferPool() {
+        _buffers = new Buffer[MAX_SIZE_CLASS - MIN_SIZE_CLASS + 1][BUFFERS_PER_SIZE_CLASS];
+        _counts = new int[_buffers.length];
+    }
+
+    /**
+     * Acquires an empty buffer for a class file of unknown size.  The largest pooled buffer is
+     * preferred, as it is the least likely to need to grow.
+     */
+    public static Buffer acquire() {
+        return THREAD_POOLS.get().acquireCore(-1);
+    }
+
+    /**
+     * Acquires an empty buffer with room for at least {@code minimumCapacity} bytes.
+     */
+    public static Buffer acquire(final int minimumCapacity) {
+        return THREAD_POOLS.get().acquireCore(VerifyArgument.isNonNegative(minimumCapacity, "minimumCapacity"));
+    }
+
+    /**
+     * Returns a buffer to the current thread's pool.  The caller must not use the buffer again,
+     * and must be sure nothing else refers to it.  Buffers which were not acquired from a pool,
+     * or which have since wrapped external storage, are ignored.
+     */
+    public static void release(final Buffer buffer) {
+        if (buffer != null && buffer.isPooled()) {
+            THREAD_POOLS.get().releaseCore(buffer);
+        }
+    }
+
+    private Buffer acquireCore(final int minimumCapacity) {
+        if (minimumCapacity < 0) {
+            for (int i = _counts.length - 1; i >= 0; i--) {
+                if (_counts[i] > 0) {
+                    return take(i);
+                }
+            }
+        }
+        else {
+            for (int i = sizeClassIndex(minimumCapacity, true); i < _counts.length; i++) {
+                if (_counts[i] > 0) {
+                    return take(i);
+                }
+            }
+        }
+
+        final Buffer buffer = new Buffer(Math.max(minimumCapacity, 0));
+
+        buffer.setPooled(true);
+
+        return buffer;
+    }
+
+    private Buffer take(final int sizeClass) {
+        final int count = --_counts[sizeClass];
+        final Buffer buffer = _buffers[sizeClass][count];
+
+        _buffers[sizeClass][count] = null;
+
+        buffer.reset(0);
+
+        return buffer;
+    }
+
+    private void releaseCore(final Buffer buffer) {
+        final int capacity = buffer.capacity();
+
+        if (capacity < 1 << MIN_SIZE_CLASS || capacity >= 2 << MAX_SIZE_CLASS) {
+            return;
+        }
+
+        final int sizeClass = sizeClassIndex(capacity, false);
+
+        if (_counts[sizeClass] < BUFFERS_PER_SIZE_CLASS) {
+            _buffers[sizeClass][_counts[sizeClass]++] = buffer;
+        }
+    }
+
+    private static int sizeClassIndex(final int capacity, final boolean roundUp) {
+        //
+        // Buffers in size class N hold at least 2^N bytes, so a request rounds up to the next
+        // class while a released buffer rounds down.
+        //
+
+        final int log2 = 31 - Integer.numberOfLeadingZeros(Math.max(capacity, 1));
+        final int sizeClass = roundUp && (capacity & (capacity - 1)) != 0 ? log2 + 1 : log2;
+
+        return Math.min(Math.max(sizeClass, MIN_SIZE_CLASS), MAX_SIZE_CLASS + 1) - MIN_SIZE_CLASS;
+    }
+}
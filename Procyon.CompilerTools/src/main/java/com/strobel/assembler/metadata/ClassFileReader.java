@@ -41,13 +41,21 @@ public final class ClassFileReader extends MetadataReader {
     public final static int OPTION_PROCESS_ANNOTATIONS = 1 << 0;
     public final static int OPTION_PROCESS_CODE = 1 << 1;
 
+    /**
+     * Reads only the header of a class:  its name, flags, declaring type, base type, interfaces,
+     * and generic parameters.  Fields, methods, nested types, and attributes are read the first
+     * time they are requested from the {@link TypeDefinition}.  This makes types which are only
+     * loaded to walk the type hierarchy much cheaper.
+     */
+    public final static int OPTION_HEADER_ONLY = 1 << 3;
+
     public final static int OPTIONS_DEFAULT = OPTION_PROCESS_ANNOTATIONS;
 
     final static long MAGIC = 0xCAFEBABEL;
 
     private final int _options;
     private final IMetadataResolver _resolver;
-    private final Buffer _buffer;
+    private Buffer _buffer;
     private final ConstantPool _constantPool;
     private final ConstantPool.TypeInfoEntry _baseClassEntry;
     private final ConstantPool.TypeInfoEntry[] _interfaceEntries;
@@ -61,6 +69,9 @@ public final class ClassFileReader extends MetadataReader {
     private final ResolverFrame _resolverFrame;
     private final Scope _scope;
 
+    private MethodReference _declaringMethod;
+    private boolean _membersRead;
+
     private ClassFileReader(
         final int options,
         final IMetadataResolver resolver,
@@ -341,7 +352,7 @@ public final class ClassFileReader extends MetadataReader {
         final int minorVersion = b.readUnsignedShort();
         final int majorVersion = b.readUnsignedShort();
 
-        final ConstantPool constantPool = ConstantPool.read(b);
+        final ConstantPool constantPool = ConstantPool.read(b, symbolTableOf(resolver));
 
         final int accessFlags = b.readUnsignedShort();
 
@@ -377,6 +388,149 @@ public final class ClassFileReader extends MetadataReader {
         ).readClass();
     }
 
+    /**
+     * Locates and reads the {@code Code} attribute of a method within its original class file.
+     * Used to load the bodies of methods whose class was read from a stripped class file.
+     *
+     * @return the code attribute, with its code copied out of {@code b}, or {@code null} if
+     *         the method could not be found
+     */
+    static CodeAttribute readCodeAttribute(final MethodDefinition method, final Buffer b) {
+        final TypeDefinition declaringType = method.getDeclaringType().resolve();
+
+        if (declaringType == null) {
+            return null;
+        }
+
+        b.position(0);
+
+        if ((b.readInt() & 0xFFFFFFFFL) != MAGIC) {
+            return null;
+        }
+
+        b.readUnsignedShort(); // minor version
+        b.readUnsignedShort(); // major version
+
+        final ConstantPool constantPool = ConstantPool.read(b, symbolTableOf(declaringType.getResolver()));
+        final MetadataParser parser = new MetadataParser(declaringType);
+        final Scope scope = new Scope(parser, declaringType, constantPool);
+
+        b.readUnsignedShort(); // access flags
+        b.readUnsignedShort(); // this class
+        b.readUnsignedShort(); // base class
+        b.advance(b.readUnsignedShort() * 2);
+
+        for (int i = 0, fieldCount = b.readUnsignedShort(); i < fieldCount; i++) {
+            b.advance(6);
+            skipAttributes(b);
+        }
+
+        final String name = method.getName();
+        final String signature = method.getErasedSignature();
+
+        for (int i = 0, methodCount = b.readUnsignedShort(); i < methodCount; i++) {
+            b.readUnsignedShort(); // access flags
+
+            final String methodName = constantPool.lookupUtf8Constant(b.readUnsignedShort());
+            final String methodSignature = constantPool.lookupUtf8Constant(b.readUnsignedShort());
+
+            if (!StringUtilities.equals(name, methodName) || !StringUtilities.equals(signature, methodSignature)) {
+                skipAttributes(b);
+                continue;
+            }
+
+            for (int j = 0, attributeCount = b.readUnsignedShort(); j < attributeCount; j++) {
+                final String attributeName = constantPool.lookupUtf8Constant(b.readUnsignedShort());
+                final int length = b.readInt();
+
+                if (!AttributeNames.Code.equals(attributeName)) {
+                    b.advance(length);
+                    continue;
+                }
+
+                final int maxStack = b.readUnsignedShort();
+                final int maxLocals = b.readUnsignedShort();
+                final int codeLength = b.readInt();
+                final int codeOffset = b.position();
+
+                b.advance(codeLength);
+
+                final ExceptionTableEntry[] exceptionTable = new ExceptionTableEntry[b.readUnsignedShort()];
+
+                for (int k = 0; k < exceptionTable.length; k++) {
+                    final int startOffset = b.readUnsignedShort();
+                    final int endOffset = b.readUnsignedShort();
+                    final int handlerOffset = b.readUnsignedShort();
+                    final int catchTypeToken = b.readUnsignedShort();
+
+                    exceptionTable[k] = new ExceptionTableEntry(
+                        startOffset,
+                        endOffset,
+                        handlerOffset,
+                        catchTypeToken == 0 ? null : scope.lookupType(catchTypeToken)
+                    );
+                }
+
+                final SourceAttribute[] attributes = new SourceAttribute[b.readUnsignedShort()];
+
+                //
+                // Decode the nested attributes just as a full read of the class would, so local
+                // variable types are parsed against the method's generic context rather than
+                // looked up as plain type names.
+                //
+
+                final MetadataReader reader = new MetadataReader() {
+                    @Override
+                    protected IMetadataScope getScope() {
+                        return scope;
+                    }
+
+                    @Override
+                    protected MetadataParser getParser() {
+                        return parser;
+                    }
+                };
+
+                parser.pushGenericContext(declaringType);
+                parser.pushGenericContext(method);
+
+                try {
+                    reader.readAttributes(b, attributes);
+                }
+                finally {
+                    parser.popGenericContext();
+                    parser.popGenericContext();
+                }
+
+                return new CodeAttribute(
+                    length,
+                    maxStack,
+                    maxLocals,
+                    codeOffset,
+                    codeLength,
+                    b,
+                    exceptionTable,
+                    attributes
+                );
+            }
+
+            return null;
+        }
+
+        return null;
+    }
+
+    private static void skipAttributes(final Buffer b) {
+        for (int i = 0, attributeCount = b.readUnsignedShort(); i < attributeCount; i++) {
+            b.readUnsignedShort(); // name
+            b.advance(b.readInt());
+        }
+    }
+
+    static SymbolTable symbolTableOf(final IMetadataResolver resolver) {
+        return resolver instanceof MetadataSystem ? ((MetadataSystem) resolver).getSymbolTable() : null;
+    }
+
     // <editor-fold defaultstate="collapsed" desc="ClassReader Implementation">
 
     final TypeDefinition readClass() {
@@ -388,6 +542,12 @@ public final class ClassFileReader extends MetadataReader {
             try {
                 populateMemberInfo();
 
+                //
+                // Everything we need from the class file has now been read or copied, so let go
+                // of the buffer; its owner may reuse it while our members remain to be read.
+                //
+                _buffer = null;
+
                 SourceAttribute enclosingMethod = SourceAttribute.find(AttributeNames.EnclosingMethod, _attributes);
 
                 final MethodReference declaringMethod;
@@ -427,6 +587,8 @@ public final class ClassFileReader extends MetadataReader {
                     throw ExceptionUtilities.asRuntimeException(e);
                 }
 
+                _declaringMethod = declaringMethod;
+
                 if (declaringMethod != null) {
                     _parser.popGenericContext();
                     _parser.pushGenericContext(declaringMethod);
@@ -436,12 +598,15 @@ public final class ClassFileReader extends MetadataReader {
                 try {
                     populateDeclaringType();
                     populateBaseTypes();
-                    visitAttributes();
-                    visitFields();
-                    defineMethods();
-                    populateNamedInnerTypes();
-                    populateAnonymousInnerTypes();
-                    checkEnclosingMethodAttributes();
+                    populateMemberFlags();
+
+                    if (Flags.testAny(_options, OPTION_HEADER_ONLY)) {
+                        _typeDefinition.setDeferredMemberReader(this);
+                    }
+                    else {
+                        _membersRead = true;
+                        readMembers();
+                    }
                 }
                 finally {
                     if (declaringMethod != null) {
@@ -460,6 +625,69 @@ public final class ClassFileReader extends MetadataReader {
         }
     }
 
+    /**
+     * Reads the members and attributes of a class whose header was read with
+     * {@link #OPTION_HEADER_ONLY}.  Called when they are first requested.
+     */
+    final void readDeferredMembers() {
+        final Object lock = _resolver instanceof MetadataSystem ? ((MetadataSystem) _resolver).getLoadLock() : null;
+
+        synchronized (lock != null ? lock : this) {
+            //
+            // A thread which requests the members while reading them sees them as they are
+            // being populated, just as it would while reading the whole class at once.
+            //
+            if (_membersRead) {
+                return;
+            }
+
+            _membersRead = true;
+
+            if (_declaringMethod != null) {
+                _parser.pushGenericContext(_declaringMethod);
+            }
+
+            _parser.pushGenericContext(_typeDefinition);
+
+            try {
+                _resolver.pushFrame(_resolverFrame);
+
+                try {
+                    readMembers();
+                }
+                finally {
+                    _resolver.popFrame();
+                }
+            }
+            finally {
+                _parser.popGenericContext();
+
+                if (_declaringMethod != null) {
+                    _parser.popGenericContext();
+                }
+
+                _typeDefinition.setDeferredMemberReader(null);
+            }
+        }
+    }
+
+    private void readMembers() {
+        visitAttributes();
+        visitFields();
+        defineMethods();
+        populateNamedInnerTypes();
+        populateAnonymousInnerTypes();
+        checkEnclosingMethodAttributes();
+    }
+
+    private void populateMemberFlags() {
+        for (final MethodInfo method : _methods) {
+            if ("<init>".equals(method.name) && Flags.testAny(method.accessFlags, Flags.STRICTFP)) {
+                _typeDefinition.setFlags(_typeDefinition.getFlags() | Flags.STRICTFP);
+            }
+        }
+    }
+
     private void checkEnclosingMethodAttributes() {
         final InnerClassesAttribute innerClasses = SourceAttribute.find(AttributeNames.InnerClasses, _attributes);
 
@@ -1002,9 +1230,6 @@ public final class ClassFileReader extends MetadataReader {
                             methodDefinition.setFlags(methodDefinition.getFlags() | Flags.ANONCONSTR | Flags.SYNTHETIC);
                         }
 
-                        if (Flags.testAny(method.accessFlags, Flags.STRICTFP)) {
-                            _typeDefinition.setFlags(_typeDefinition.getFlags() | Flags.STRICTFP);
-                        }
                     }
 
                     readMethodBody(method, methodDefinition);
@@ -1091,7 +1316,13 @@ public final class ClassFileReader extends MetadataReader {
 
     private void readMethodBody(final MethodInfo methodInfo, final MethodDefinition methodDefinition) {
         if (methodInfo.codeAttribute instanceof CodeAttribute) {
-            if (Flags.testAny(_options, OPTION_PROCESS_CODE)) {
+            //
+            // A valid class file never has an empty code array; only the stubs left by stripping
+            // a class file for a type header index do (see TypeHeaderIndex).
+            //
+            final boolean isStripped = ((CodeAttribute) methodInfo.codeAttribute).getCodeSize() == 0;
+
+            if (Flags.testAny(_options, OPTION_PROCESS_CODE) && !isStripped) {
                 final MethodReader reader = new MethodReader(methodDefinition, _scope);
                 final MethodBody body = reader.readBody();
 
@@ -1099,6 +1330,10 @@ public final class ClassFileReader extends MetadataReader {
                 body.freeze();
             }
             else {
+                if (isStripped) {
+                    methodDefinition.setFlags(methodDefinition.getFlags() | Flags.STRIPPED_CODE);
+                }
+
                 final CodeAttribute codeAttribute = (CodeAttribute) methodInfo.codeAttribute;
 
                 final LocalVariableTableAttribute localVariables = SourceAttribute.find(
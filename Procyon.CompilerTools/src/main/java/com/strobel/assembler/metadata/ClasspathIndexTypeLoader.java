@@ -0,0 +1,317 @@
+/*
+ * ClasspathIndexTypeLoader.java
+ *
+ * Copyright (c) 2013 Mike Strobel
+ *
+ * This source code is subject to terms and conditions of the Apache License, Version 2.0.
+ * A copy of the license can be found in the License.html file at the root of this distribution.
+ * By using this source code in any fashion, you are agreeing to be bound by the terms of the
+ * Apache License, Version 2.0.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.strobel.assembler.metadata;
+
+import com.strobel.core.StringUtilities;
+import com.strobel.core.VerifyArgument;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Loads types from an explicit list of jar files, jmod files, and class file directories.
+ * <p>
+ * Every location is scanned once, when the loader is created, into a single index from internal
+ * type name to the container entry holding its class file.  A lookup is then one hash probe: types
+ * are never searched for on the file system, and a type which is not on the class path is known
+ * to be missing without any further I/O.  As with a JVM class path, a type found in more than one
+ * location is loaded from the first.
+ * <p>
+ * Because the index is built up front, class files added to a directory after the loader was
+ * created are not seen.  The jar and jmod files on the class path are held open until the loader
+ * is closed.
+ */
+public final class ClasspathIndexTypeLoader implements ITypeLoader, Closeable {
+    private final static Logger LOG = Logger.getLogger(ClasspathIndexTypeLoader.class.getSimpleName());
+
+    private final static String CLASS_EXTENSION = ".class";
+    private final static String JMOD_CLASSES_PREFIX = "classes/";
+    private final static String META_INF_PREFIX = "META-INF/";
+
+    private final List<File> _locations;
+    private final Map<String, Location> _index;
+    private final List<ZipFile> _archives;
+
+    private volatile boolean _isClosed;
+
+    public ClasspathIndexTypeLoader(final String classPath) {
+        this(splitClassPath(VerifyArgument.notNull(classPath, "classPath")));
+    }
+
+    public ClasspathIndexTypeLoader(final List<File> locations) {
+        VerifyArgument.noNullElements(locations, "locations");
+
+        _locations = Collections.unmodifiableList(new ArrayList<>(locations));
+        _index = new HashMap<>();
+        _archives = new ArrayList<>();
+
+        for (final File location : _locations) {
+            indexLocation(location);
+        }
+    }
+
+    public final List<File> getLocations() {
+        return _locations;
+    }
+
+    public final int getTypeCount() {
+        return _index.size();
+    }
+
+    public final boolean containsType(final String internalName) {
+        return _index.containsKey(internalName);
+    }
+
+    @Override
+    public boolean tryLoadType(final String internalName, final Buffer buffer) {
+        VerifyArgument.notNull(internalName, "internalName");
+        VerifyArgument.notNull(buffer, "buffer");
+
+        final Location location = _index.get(internalName);
+
+        if (location == null || _isClosed) {
+            return false;
+        }
+
+        try {
+            location.read(buffer);
+
+            if (LOG.isLoggable(Level.FINE)) {
+                LOG.fine("Type loaded from " + location + ".");
+            }
+
+            return true;
+        }
+        catch (final IOException e) {
+            if (LOG.isLoggable(Level.FINE)) {
+                LOG.fine("Could not read type " + internalName + " from " + location + ": " + e.getMessage());
+            }
+
+            buffer.reset();
+            return false;
+        }
+    }
+
+    /**
+     * Closes the jar and jmod files on the class path.  The loader loads no types afterward.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (_isClosed) {
+            return;
+        }
+
+        _isClosed = true;
+
+        IOException error = null;
+
+        for (final ZipFile archive : _archives) {
+            try {
+                archive.close();
+            }
+            catch (final IOException e) {
+                if (error == null) {
+                    error = e;
+                }
+                else {
+                    error.addSuppressed(e);
+                }
+            }
+        }
+
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    // <editor-fold defaultstate="collapsed" desc="Indexing">
+
+    private static List<File> splitClassPath(final String classPath) {
+        final List<File> locations = new ArrayList<>();
+
+        for (final String path : classPath.split(File.pathSeparator)) {
+            if (!StringUtilities.isNullOrWhitespace(path)) {
+                locations.add(new File(path.trim()));
+            }
+        }
+
+        return locations;
+    }
+
+    private void indexLocation(final File location) {
+        try {
+            if (location.isDirectory()) {
+                indexDirectory(location);
+            }
+            else if (location.isFile()) {
+                indexArchive(location);
+            }
+            else if (LOG.isLoggable(Level.FINE)) {
+                LOG.fine("Skipping missing class path location: " + location + ".");
+            }
+        }
+        catch (final IOException e) {
+            if (LOG.isLoggable(Level.WARNING)) {
+                LOG.warning("Could not index class path location " + location + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private void indexDirectory(final File directory) throws IOException {
+        final Path root = directory.toPath();
+
+        Files.walkFileTree(
+            root,
+            new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(final Path file, final BasicFileAttributes attributes) {
+                    final String relativePath = root.relativize(file).toString().replace(File.separatorChar, '/');
+
+                    if (attributes.isRegularFile() && isClassFile(relativePath)) {
+                        addType(relativePath, new FileLocation(file.toFile()));
+                    }
+
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(final Path file, final IOException e) {
+                    return FileVisitResult.CONTINUE;
+                }
+            }
+        );
+    }
+
+    private void indexArchive(final File file) throws IOException {
+        //
+        // Jmod files are zip files with a short header, which ZipFile skips over; their class
+        // files live under 'classes/'.  The zip file stays open until the loader is closed.
+        //
+
+        final boolean isJmod = StringUtilities.endsWithIgnoreCase(file.getName(), ".jmod");
+        final ZipFile zipFile = new ZipFile(file);
+
+        _archives.add(zipFile);
+
+        final Enumeration<? extends ZipEntry> entries = zipFile.entries();
+
+        while (entries.hasMoreElements()) {
+            final ZipEntry entry = entries.nextElement();
+
+            if (entry.isDirectory()) {
+                continue;
+            }
+
+            String path = entry.getName();
+
+            if (isJmod) {
+                if (!path.startsWith(JMOD_CLASSES_PREFIX)) {
+                    continue;
+                }
+                path = path.substring(JMOD_CLASSES_PREFIX.length());
+            }
+
+            if (isClassFile(path)) {
+                addType(path, new ZipLocation(zipFile, entry));
+            }
+        }
+    }
+
+    private static boolean isClassFile(final String path) {
+        //
+        // Skip versioned entries of multi-release jars; they shadow the unversioned entries
+        // only on the runtimes they target.
+        //
+        return path.endsWith(CLASS_EXTENSION) && !path.startsWith(META_INF_PREFIX);
+    }
+
+    private void addType(final String path, final Location location) {
+        final String internalName = path.substring(0, path.length() - CLASS_EXTENSION.length());
+
+        if (!_index.containsKey(internalName)) {
+            _index.put(internalName, location);
+        }
+    }
+
+    // </editor-fold>
+
+    // <editor-fold defaultstate="collapsed" desc="Location Classes">
+
+    private static abstract class Location {
+        abstract void read(final Buffer buffer) throws IOException;
+    }
+
+    private final static class ZipLocation extends Location {
+        private final ZipFile _zipFile;
+        private final ZipEntry _entry;
+
+        ZipLocation(final ZipFile zipFile, final ZipEntry entry) {
+            _zipFile = zipFile;
+            _entry = entry;
+        }
+
+        @Override
+        void read(final Buffer buffer) throws IOException {
+            try (final InputStream stream = _zipFile.getInputStream(_entry)) {
+                buffer.readFrom(stream, (int) _entry.getSize());
+            }
+        }
+
+        @Override
+        public String toString() {
+            return _zipFile.getName() + "!" + _entry.getName();
+        }
+    }
+
+    private final static class FileLocation extends Location {
+        private final File _file;
+
+        FileLocation(final File file) {
+            _file = file;
+        }
+
+        @Override
+        void read(final Buffer buffer) throws IOException {
+            try (final FileChannel channel = FileChannel.open(_file.toPath(), StandardOpenOption.READ)) {
+                buffer.readFrom(channel);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return _file.getAbsolutePath();
+        }
+    }
+
+    // </editor-fold>
+}
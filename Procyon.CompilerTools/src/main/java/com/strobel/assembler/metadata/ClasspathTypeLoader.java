@@ -16,32 +16,54 @@
 
 package com.strobel.assembler.metadata;
 
+import com.strobel.core.VerifyArgument;
+
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.net.URLConnection;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * @author Mike Strobel
  */
-public final class ClasspathTypeLoader implements ITypeLoader {
+public final class ClasspathTypeLoader implements ITypeLoader, Closeable {
     private final static Logger LOG = Logger.getLogger(ClasspathTypeLoader.class.getSimpleName());
 
     private final ClassLoader _loader;
+    private final ClasspathIndexTypeLoader _indexLoader;
 
     public ClasspathTypeLoader() {
         _loader = ClassLoader.getSystemClassLoader();
+        _indexLoader = null;
+    }
+
+    public ClasspathTypeLoader(final ClassLoader loader) {
+        _loader = VerifyArgument.notNull(loader, "loader");
+        _indexLoader = null;
     }
 
     //
-    // Temporarily removing this constructor to get a Java 9 compatibility fix out quickly.
-    // Hopefully nobody is using it.  Will restore once ClasspathTypeLoader can be fleshed
-    // out to support arbitrary paths.
+    // Custom class paths are served from an index rather than a class loader, which cannot
+    // load the runtime's own types from arbitrary paths on Java 9 and later.
     //
-//    public ClasspathTypeLoader(final String classPath) {
-//        throw new UnsupportedOperationException("Custom classpaths are temporarily unsupported.");
-//    }
+    public ClasspathTypeLoader(final String classPath) {
+        _loader = null;
+        _indexLoader = new ClasspathIndexTypeLoader(classPath);
+    }
+
+    /**
+     * Closes the archives of a custom class path.  A loader using a class loader has nothing
+     * to close.
+     */
+    @Override
+    public void close() throws IOException {
+        if (_indexLoader != null) {
+            _indexLoader.close();
+        }
+    }
 
     @Override
     public boolean tryLoadType(final String internalName, final Buffer buffer) {
@@ -49,6 +71,10 @@ public final class ClasspathTypeLoader implements ITypeLoader {
             LOG.fine("Attempting to load type: " + internalName + "...");
         }
 
+        if (_indexLoader != null) {
+            return _indexLoader.tryLoadType(internalName, buffer);
+        }
+
         final String path = internalName.concat(".class");
         final URL resource = _loader.getResource(path);
 
@@ -56,18 +82,18 @@ public final class ClasspathTypeLoader implements ITypeLoader {
             return false;
         }
 
-        try (final InputStream stream = _loader.getResourceAsStream(path)) {
-            final byte[] temp = new byte[4096];
+        try {
+            //
+            // Open the resource we already found rather than searching the class path again, and
+            // read it straight into the buffer.
+            //
 
-            int bytesRead;
+            final URLConnection connection = resource.openConnection();
 
-            while ((bytesRead = stream.read(temp, 0, temp.length)) > 0) {
-                buffer.ensureWriteableBytes(bytesRead);
-                buffer.putByteArray(temp, 0, bytesRead);
+            try (final InputStream stream = connection.getInputStream()) {
+                buffer.readFrom(stream, (int) connection.getContentLengthLong());
             }
 
-            buffer.flip();
-
             if (LOG.isLoggable(Level.FINE)) {
                 LOG.fine("Type loaded from " + resource + ".");
             }
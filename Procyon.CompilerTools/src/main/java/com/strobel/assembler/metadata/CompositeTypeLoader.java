@@ -18,7 +18,10 @@ package com.strobel.assembler.metadata;
 
 import com.strobel.core.VerifyArgument;
 
-public final class CompositeTypeLoader implements ITypeLoader {
+import java.io.Closeable;
+import java.io.IOException;
+
+public final class CompositeTypeLoader implements ITypeLoader, Closeable {
     private final ITypeLoader[] _typeLoaders;
 
     public CompositeTypeLoader(final ITypeLoader... typeLoaders) {
@@ -37,4 +40,32 @@ public final class CompositeTypeLoader implements ITypeLoader {
 
         return false;
     }
+
+    /**
+     * Closes each of the composed type loaders which holds resources of its own.
+     */
+    @Override
+    public void close() throws IOException {
+        IOException error = null;
+
+        for (final ITypeLoader typeLoader : _typeLoaders) {
+            if (typeLoader instanceof Closeable) {
+                try {
+                    ((Closeable) typeLoader).close();
+                }
+                catch (final IOException e) {
+                    if (error == null) {
+                        error = e;
+                    }
+                    else {
+                        error.addSuppressed(e);
+                    }
+                }
+            }
+        }
+
+        if (error != null) {
+            throw error;
+        }
+    }
 }
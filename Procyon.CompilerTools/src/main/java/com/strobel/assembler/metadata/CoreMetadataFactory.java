@@ -39,6 +39,8 @@ public class CoreMetadataFactory implements MetadataFactory {
     private final IGenericContext _scope;
     private final Stack<GenericParameter> _tempScope;
 
+    private int _scopeLookupCount;
+
     private CoreMetadataFactory(final TypeDefinition owner, final IMetadataResolver resolver, final IGenericContext scope) {
         _owner = owner;
         _resolver = resolver;
@@ -58,6 +60,24 @@ public class CoreMetadataFactory implements MetadataFactory {
         return _scope;
     }
 
+    /**
+     * Gets the number of times a type was made by consulting the generic scope.  A type made
+     * without it would be made the same way again for as long as the owner's inner class table
+     * is unchanged.
+     */
+    final int getScopeLookupCount() {
+        return _scopeLookupCount;
+    }
+
+    /**
+     * Determines whether the owner has an inner class table, in which case any named type may
+     * be made differently than it would be for another owner with the same resolver.
+     */
+    final boolean hasInnerClassScope() {
+        return _owner != null &&
+               SourceAttribute.find(AttributeNames.InnerClasses, _owner.getSourceAttributes()) instanceof InnerClassesAttribute;
+    }
+
     public GenericParameter makeTypeVariable(final String name, final FieldTypeSignature[] bounds) {
         final GenericParameter genericParameter = new GenericParameter(name);
 
@@ -159,6 +179,8 @@ public class CoreMetadataFactory implements MetadataFactory {
     }
 
     public GenericParameter findTypeVariable(final String name) {
+        ++_scopeLookupCount;
+
         for (int i = _tempScope.size() - 1; i >= 0; i--) {
             final GenericParameter genericParameter = _tempScope.get(i);
 
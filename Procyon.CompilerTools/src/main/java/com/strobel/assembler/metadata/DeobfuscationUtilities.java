@@ -25,6 +25,18 @@ public class DeobfuscationUtilities {
     public static void processType(@NotNull final TypeDefinition type) {
         VerifyArgument.notNull(type, "type");
 
+        //
+        // Processing updates the flags of related types, which may be shared by several
+        // decompiling threads through a thread-safe MetadataSystem.
+        //
+
+        synchronized (DeobfuscationUtilities.class) {
+            processTypeCore(type);
+        }
+    }
+
+    private static void processTypeCore(final TypeDefinition type) {
+
         if (Flags.testAny(type.getFlags(), Flags.DEOBFUSCATED)) {
             return;
         }
@@ -45,7 +57,7 @@ public class DeobfuscationUtilities {
             final TypeDefinition resolvedBaseType = baseType.resolve();
 
             if (resolvedBaseType != null) {
-                processType(resolvedBaseType);
+                processTypeCore(resolvedBaseType);
             }
         }
 
@@ -488,6 +488,12 @@ public class Flags {
      */
     public static final long DEOBFUSCATED = 1L << 47;
 
+    /**
+     * Indicates a method was read from a class file whose method bodies were stripped, and
+     * that its body must be read from the original class file.
+     */
+    public static final long STRIPPED_CODE = 1L << 48;
+
     /**
      * Modifier masks.
      */
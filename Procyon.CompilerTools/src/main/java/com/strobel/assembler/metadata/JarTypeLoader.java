@@ -22,8 +22,8 @@ import com.strobel.core.VerifyArgument;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.logging.Level;
@@ -37,7 +37,7 @@ public class JarTypeLoader implements ITypeLoader {
 
     public JarTypeLoader(final JarFile jarFile) {
         _jarFile = VerifyArgument.notNull(jarFile, "jarFile");
-        _knownMappings = new HashMap<>();
+        _knownMappings = new ConcurrentHashMap<>();
     }
 
     @Override
@@ -56,25 +56,15 @@ public class JarTypeLoader implements ITypeLoader {
                        !mappedName.equals(internalName) && tryLoadType(mappedName, buffer);
             }
 
-            final InputStream inputStream = _jarFile.getInputStream(entry);
+            //
+            // The central directory gives us the uncompressed size of both stored and deflated
+            // entries, so we can inflate straight into the buffer without intermediate copies.
+            //
 
-            int remainingBytes = inputStream.available();
-
-            buffer.reset(remainingBytes);
-
-            while (remainingBytes > 0) {
-                final int bytesRead = inputStream.read(buffer.array(), buffer.position(), remainingBytes);
-
-                if (bytesRead < 0) {
-                    break;
-                }
-
-                buffer.position(buffer.position() + bytesRead);
-                remainingBytes -= bytesRead;
+            try (final InputStream inputStream = _jarFile.getInputStream(entry)) {
+                buffer.readFrom(inputStream, (int) entry.getSize());
             }
 
-            buffer.position(0);
-
             final String actualName = getInternalNameFromClassFile(buffer);
 
             if (actualName != null && !actualName.equals(internalName)) {
@@ -0,0 +1,320 @@
+/*
+ * JdkTypeLoader.java
+ *
+ * Copyright (c) 2013 Mike Strobel
+ *
+ * This source code is subject to terms and conditions of the Apache License, Version 2.0.
+ * A copy of the license can be found in the License.html file at the root of this distribution.
+ * By using this source code in any fashion, you are agreeing to be bound by the terms of the
+ * Apache License, Version 2.0.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.strobel.assembler.metadata;
+
+import com.strobel.core.ExceptionUtilities;
+import com.strobel.core.StringUtilities;
+import com.strobel.core.VerifyArgument;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.ProviderNotFoundException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Loads the runtime library types of a JDK installation, which need not be the JDK running the
+ * decompiler.  Depending on what the installation provides, class files are read from:
+ * <ul>
+ *     <li>its {@code lib/modules} image (Java 9 and later), through the installation's own
+ *     {@code jrt:/} file system;</li>
+ *     <li>its {@code jmods} directory; or</li>
+ *     <li>the jar files in its {@code jre/lib} and {@code lib} directories (Java 8 and earlier).</li>
+ * </ul>
+ * In every case, an index of the runtime's packages or types is built up front, so a lookup goes
+ * straight to the one module or archive which can hold the type, and a type outside the runtime
+ * library is rejected without any I/O.  Class files are read directly into the buffer's backing
+ * array rather than being streamed through a class loader.
+ * <p>
+ * The archives or the image file system of another JDK are held open until the loader is closed.
+ */
+public final class JdkTypeLoader implements ITypeLoader, Closeable {
+    private final static Logger LOG = Logger.getLogger(JdkTypeLoader.class.getSimpleName());
+
+    private final static URI JRT_URI = URI.create("jrt:/");
+
+    private final File _jdkHome;
+
+    //
+    // Exactly one of these is set: either the runtime image of a modular JDK and the modules
+    // holding each of its packages, or an index of the archives of a JDK without an image.
+    //
+
+    private final FileSystem _imageFileSystem;
+    private final boolean _ownsImageFileSystem;
+    private final Map<String, String[]> _packageModules;
+    private final ClasspathIndexTypeLoader _archiveLoader;
+
+    private volatile boolean _isClosed;
+
+    /**
+     * Creates a type loader for the JDK running the decompiler.
+     */
+    public JdkTypeLoader() {
+        this(new File(System.getProperty("java.home")));
+    }
+
+    public JdkTypeLoader(final File jdkHome) {
+        _jdkHome = VerifyArgument.notNull(jdkHome, "jdkHome");
+
+        if (new File(jdkHome, "lib" + File.separator + "modules").isFile()) {
+            try {
+                _ownsImageFileSystem = !isRunningJdkHome(jdkHome);
+                _imageFileSystem = openImageFileSystem(jdkHome, _ownsImageFileSystem);
+                _packageModules = indexPackages(_imageFileSystem);
+                _archiveLoader = null;
+            }
+            catch (final IOException e) {
+                throw ExceptionUtilities.asRuntimeException(e);
+            }
+            return;
+        }
+
+        final List<File> archives = findArchives(jdkHome);
+
+        if (archives.isEmpty()) {
+            throw new IllegalArgumentException(
+                String.format("No runtime image, jmod files, or runtime jar files were found in \"%s\".", jdkHome)
+            );
+        }
+
+        _imageFileSystem = null;
+        _ownsImageFileSystem = false;
+        _packageModules = null;
+        _archiveLoader = new ClasspathIndexTypeLoader(archives);
+    }
+
+    public final File getJdkHome() {
+        return _jdkHome;
+    }
+
+    /**
+     * Closes the JDK's archives, or its image file system unless it is that of the running JDK.
+     * The loader loads no types afterward.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (_isClosed) {
+            return;
+        }
+
+        _isClosed = true;
+
+        if (_archiveLoader != null) {
+            _archiveLoader.close();
+        }
+        else if (_ownsImageFileSystem) {
+            _imageFileSystem.close();
+        }
+    }
+
+    @Override
+    public boolean tryLoadType(final String internalName, final Buffer buffer) {
+        VerifyArgument.notNull(internalName, "internalName");
+        VerifyArgument.notNull(buffer, "buffer");
+
+        if (_isClosed) {
+            return false;
+        }
+
+        if (_archiveLoader != null) {
+            return _archiveLoader.tryLoadType(internalName, buffer);
+        }
+
+        final int packageEnd = internalName.lastIndexOf('/');
+
+        if (packageEnd <= 0) {
+            return false;
+        }
+
+        final String[] modules = _packageModules.get(internalName.substring(0, packageEnd));
+
+        if (modules == null) {
+            return false;
+        }
+
+        final String fileName = internalName.concat(".class");
+
+        for (final String module : modules) {
+            final Path path = _imageFileSystem.getPath("/modules", module, fileName);
+
+            try {
+                //
+                // The image file system hands us a fresh array holding the (decompressed) class
+                // file; the buffer adopts it rather than copying it again.
+                //
+
+                buffer.wrap(ByteBuffer.wrap(Files.readAllBytes(path)));
+
+                if (LOG.isLoggable(Level.FINE)) {
+                    LOG.fine("Type loaded from " + _jdkHome + "!/modules/" + module + "/" + fileName + ".");
+                }
+
+                return true;
+            }
+            catch (final NoSuchFileException ignored) {
+                //
+                // A split package; try the next module.
+                //
+            }
+            catch (final IOException e) {
+                if (LOG.isLoggable(Level.FINE)) {
+                    LOG.fine("Could not read type " + internalName + " from " + path + ": " + e.getMessage());
+                }
+                return false;
+            }
+        }
+
+        return false;
+    }
+
+    // <editor-fold defaultstate="collapsed" desc="Runtime Image Support">
+
+    private static boolean isRunningJdkHome(final File jdkHome) throws IOException {
+        final File runningJdkHome = new File(System.getProperty("java.home"));
+        return jdkHome.getCanonicalFile().equals(runningJdkHome.getCanonicalFile());
+    }
+
+    private static FileSystem openImageFileSystem(final File jdkHome, final boolean isForeignJdk) throws IOException {
+        try {
+            if (!isForeignJdk) {
+                return FileSystems.getFileSystem(JRT_URI);
+            }
+
+            //
+            // A modular runtime can open the image of another JDK through that JDK's own
+            // jrt-fs.jar, so images written by newer releases are still readable.
+            //
+
+            return FileSystems.newFileSystem(
+                JRT_URI,
+                Collections.singletonMap("java.home", jdkHome.getAbsolutePath())
+            );
+        }
+        catch (final ProviderNotFoundException | IllegalArgumentException e) {
+            //
+            // We are running on a Java 8 runtime, which has no jrt:/ provider of its own.
+            //
+
+            final File jrtFileSystemJar = new File(jdkHome, "lib" + File.separator + "jrt-fs.jar");
+            final ClassLoader loader = new URLClassLoader(new URL[] { jrtFileSystemJar.toURI().toURL() });
+
+            return FileSystems.newFileSystem(JRT_URI, Collections.<String, Object>emptyMap(), loader);
+        }
+    }
+
+    private static Map<String, String[]> indexPackages(final FileSystem fileSystem) throws IOException {
+        //
+        // The image keeps a directory per package listing the modules which contain it, so the
+        // index is built without visiting a single class file.
+        //
+
+        final Map<String, String[]> packageModules = new HashMap<>();
+
+        try (final DirectoryStream<Path> packages = Files.newDirectoryStream(fileSystem.getPath("/packages"))) {
+            for (final Path packageDirectory : packages) {
+                final List<String> modules = new ArrayList<>(1);
+
+                try (final DirectoryStream<Path> links = Files.newDirectoryStream(packageDirectory)) {
+                    for (final Path link : links) {
+                        modules.add(link.getFileName().toString());
+                    }
+                }
+
+                if (!modules.isEmpty()) {
+                    packageModules.put(
+                        packageDirectory.getFileName().toString().replace('.', '/'),
+                        modules.toArray(new String[modules.size()])
+                    );
+                }
+            }
+        }
+
+        return packageModules;
+    }
+
+    // </editor-fold>
+
+    // <editor-fold defaultstate="collapsed" desc="Archive Support">
+
+    private static List<File> findArchives(final File jdkHome) {
+        final File[] jmods = listFiles(new File(jdkHome, "jmods"), ".jmod");
+
+        if (jmods.length > 0) {
+            return Arrays.asList(jmods);
+        }
+
+        //
+        // The home of a Java 8 JDK keeps its runtime jars in 'jre/lib', and tools like tools.jar
+        // in 'lib'; the home of a JRE keeps its runtime jars in 'lib'.  Search both.
+        //
+
+        final List<File> archives = new ArrayList<>();
+
+        for (final File libDirectory : new File[] { new File(jdkHome, "jre" + File.separator + "lib"), new File(jdkHome, "lib") }) {
+            archives.addAll(Arrays.asList(listFiles(libDirectory, ".jar")));
+        }
+
+        //
+        // Most types live in rt.jar; look there first.
+        //
+
+        for (int i = 0; i < archives.size(); i++) {
+            if (archives.get(i).getName().equals("rt.jar")) {
+                archives.add(0, archives.remove(i));
+                break;
+            }
+        }
+
+        return archives;
+    }
+
+    private static File[] listFiles(final File directory, final String extension) {
+        final File[] files = directory.listFiles(
+            new FileFilter() {
+                @Override
+                public boolean accept(final File file) {
+                    return file.isFile() && StringUtilities.endsWithIgnoreCase(file.getName(), extension);
+                }
+            }
+        );
+
+        if (files == null) {
+            return new File[0];
+        }
+
+        Arrays.sort(files);
+        return files;
+    }
+
+    // </editor-fold>
+}
@@ -50,6 +50,18 @@ public final class MetadataParser {
     private final CoreMetadataFactory _factory;
     private final AtomicInteger _suppressResolveDepth;
 
+    //
+    // Parse results which depend on neither the generic scope nor the owner go in the cache
+    // shared by every parser of our metadata system.  If the owner has an inner class table,
+    // any named type may depend on it, so results which only depend on the owner go in a cache
+    // of our own instead.  The rest are only good until the generic scope changes, so they go
+    // in a cache which is dropped whenever it does.
+    //
+
+    private final SignatureCache _sharedCache;
+    private SignatureCache _ownerCache;
+    private SignatureCache _scopedCache;
+
     public MetadataParser() {
         this(MetadataSystem.instance());
     }
@@ -60,6 +72,7 @@ public final class MetadataParser {
         _genericContexts = new Stack<>();
         _factory = CoreMetadataFactory.make(resolver, new StackBasedGenericContext());
         _suppressResolveDepth = new AtomicInteger();
+        _sharedCache = signatureCacheOf(resolver);
     }
 
     public MetadataParser(final TypeDefinition owner) {
@@ -70,6 +83,11 @@ public final class MetadataParser {
         _genericContexts = new Stack<>();
         _factory = CoreMetadataFactory.make(owner, new StackBasedGenericContext());
         _suppressResolveDepth = new AtomicInteger();
+        _sharedCache = signatureCacheOf(owner.getResolver());
+    }
+
+    private static SignatureCache signatureCacheOf(final IMetadataResolver resolver) {
+        return resolver instanceof MetadataSystem ? ((MetadataSystem) resolver).getSignatureCache() : null;
     }
 
     public final SafeCloseable suppressTypeResolution() {
@@ -109,10 +127,12 @@ public final class MetadataParser {
 
     public void pushGenericContext(final IGenericContext context) {
         _genericContexts.push(VerifyArgument.notNull(context, "context"));
+        _scopedCache = null;
     }
 
     public void popGenericContext() {
         _genericContexts.pop();
+        _scopedCache = null;
     }
 
     public TypeReference parseTypeDescriptor(final String descriptor) {
@@ -122,12 +142,53 @@ public final class MetadataParser {
             return parseTypeSignature(descriptor);
         }
 
-        return parseTypeSignature("L" + descriptor + ";");
+        final SignatureCache unscopedCache = getUnscopedCache();
+        final TypeReference cachedType = unscopedCache != null ? unscopedCache.findDescriptor(descriptor) : null;
+
+        if (cachedType != null) {
+            return cachedType;
+        }
+
+        final int scopeLookupCount = _factory.getScopeLookupCount();
+        final TypeReference type = parseTypeSignatureCore("L" + descriptor + ";");
+
+        if (type != null) {
+            getResultCache(scopeLookupCount).addDescriptor(descriptor, type);
+        }
+
+        return type;
     }
 
     public TypeReference parseTypeSignature(final String signature) {
         VerifyArgument.notNull(signature, "signature");
 
+        final SignatureCache unscopedCache = getUnscopedCache();
+
+        TypeReference cachedType = null;
+
+        if (unscopedCache != null) {
+            cachedType = unscopedCache.findType(signature);
+        }
+
+        if (cachedType == null && _scopedCache != null) {
+            cachedType = _scopedCache.findType(signature);
+        }
+
+        if (cachedType != null) {
+            return cachedType;
+        }
+
+        final int scopeLookupCount = _factory.getScopeLookupCount();
+        final TypeReference type = parseTypeSignatureCore(signature);
+
+        if (type != null) {
+            getResultCache(scopeLookupCount).addType(signature, type);
+        }
+
+        return type;
+    }
+
+    private TypeReference parseTypeSignatureCore(final String signature) {
         final TypeSignature typeSignature = _signatureParser.parseTypeSignature(signature);
         final Reifier reifier = Reifier.make(_factory);
 
@@ -136,6 +197,31 @@ public final class MetadataParser {
         return reifier.getResult();
     }
 
+    private SignatureCache getUnscopedCache() {
+        return _factory.hasInnerClassScope() ? _ownerCache : _sharedCache;
+    }
+
+    private SignatureCache getResultCache(final int scopeLookupCountBeforeParse) {
+        if (_factory.getScopeLookupCount() == scopeLookupCountBeforeParse) {
+            if (_factory.hasInnerClassScope()) {
+                if (_ownerCache == null) {
+                    _ownerCache = new SignatureCache(SignatureCache.DEFAULT_CAPACITY);
+                }
+                return _ownerCache;
+            }
+
+            if (_sharedCache != null) {
+                return _sharedCache;
+            }
+        }
+
+        if (_scopedCache == null) {
+            _scopedCache = new SignatureCache(SignatureCache.DEFAULT_CAPACITY);
+        }
+
+        return _scopedCache;
+    }
+
     public FieldReference parseField(final TypeReference declaringType, final String name, final String signature) {
         VerifyArgument.notNull(declaringType, "declaringType");
         VerifyArgument.notNull(name, "name");
@@ -231,6 +317,31 @@ public final class MetadataParser {
     public IMethodSignature parseMethodSignature(final String signature) {
         VerifyArgument.notNull(signature, "signature");
 
+        final SignatureCache unscopedCache = getUnscopedCache();
+
+        SignatureCache.ParsedMethodSignature cachedSignature = null;
+
+        if (unscopedCache != null) {
+            cachedSignature = unscopedCache.findMethodSignature(signature);
+        }
+
+        if (cachedSignature == null && _scopedCache != null) {
+            cachedSignature = _scopedCache.findMethodSignature(signature);
+        }
+
+        if (cachedSignature != null) {
+            //
+            // Signatures are never shared, as each carries its own parameter definitions.
+            //
+            return _factory.makeMethodSignature(
+                cachedSignature.returnType,
+                cachedSignature.parameterTypes,
+                Collections.<GenericParameter>emptyList(),
+                cachedSignature.thrownTypes
+            );
+        }
+
+        final int scopeLookupCount = _factory.getScopeLookupCount();
         final MethodTypeSignature methodTypeSignature = _signatureParser.parseMethodSignature(signature);
         final Reifier reifier = Reifier.make(_factory);
 
@@ -327,6 +438,18 @@ public final class MetadataParser {
                 thrownTypes = ArrayUtilities.asUnmodifiableList(tt);
             }
 
+            //
+            // A generic method's type parameters belong to the method being parsed, so its
+            // signature must be parsed afresh each time.
+            //
+
+            if (genericParameters.isEmpty()) {
+                getResultCache(scopeLookupCount).addMethodSignature(
+                    signature,
+                    new SignatureCache.ParsedMethodSignature(returnType, parameterTypes, thrownTypes)
+                );
+            }
+
             return _factory.makeMethodSignature(returnType, parameterTypes, genericParameters, thrownTypes);
         }
         finally {
@@ -28,15 +28,48 @@ import java.util.Stack;
  */
 public abstract class MetadataResolver implements IMetadataResolver, IGenericContext {
     private final Stack<IResolverFrame> _frames;
+    private final ThreadLocal<Stack<IResolverFrame>> _threadFrames;
 
     protected MetadataResolver() {
-        _frames = new Stack<>();
+        this(false);
+    }
+
+    /**
+     * Creates a resolver.  A thread-safe resolver keeps a separate frame stack for each
+     * thread, so that multiple threads may resolve types through it concurrently.
+     *
+     * @param isThreadSafe whether resolver frames should be tracked per thread
+     */
+    protected MetadataResolver(final boolean isThreadSafe) {
+        if (isThreadSafe) {
+            _frames = null;
+            _threadFrames = new ThreadLocal<Stack<IResolverFrame>>() {
+                @Override
+                protected Stack<IResolverFrame> initialValue() {
+                    return new Stack<>();
+                }
+            };
+        }
+        else {
+            _frames = new Stack<>();
+            _threadFrames = null;
+        }
+    }
+
+    public final boolean isThreadSafe() {
+        return _threadFrames != null;
+    }
+
+    private Stack<IResolverFrame> frames() {
+        return _frames != null ? _frames : _threadFrames.get();
     }
 
     @Override
     public final TypeReference lookupType(final String descriptor) {
-        for (int i = _frames.size() - 1; i >= 0; i--) {
-            final TypeReference type = _frames.get(i).findType(descriptor);
+        final Stack<IResolverFrame> frames = frames();
+
+        for (int i = frames.size() - 1; i >= 0; i--) {
+            final TypeReference type = frames.get(i).findType(descriptor);
 
             if (type != null) {
                 return type;
@@ -48,8 +81,10 @@ public abstract class MetadataResolver implements IMetadataResolver, IGenericCon
 
     @Override
     public final GenericParameter findTypeVariable(final String name) {
-        for (int i = _frames.size() - 1; i >= 0; i--) {
-            final GenericParameter type = _frames.get(i).findTypeVariable(name);
+        final Stack<IResolverFrame> frames = frames();
+
+        for (int i = frames.size() - 1; i >= 0; i--) {
+            final GenericParameter type = frames.get(i).findTypeVariable(name);
 
             if (type != null) {
                 return type;
@@ -63,23 +98,25 @@ public abstract class MetadataResolver implements IMetadataResolver, IGenericCon
 
     @Override
     public void pushFrame(final IResolverFrame frame) {
-        _frames.push(VerifyArgument.notNull(frame, "frame"));
+        frames().push(VerifyArgument.notNull(frame, "frame"));
     }
 
     @Override
     public void popFrame() {
-        _frames.pop();
+        frames().pop();
     }
 
     @Override
     public TypeDefinition resolve(final TypeReference type) {
         final TypeReference t = VerifyArgument.notNull(type, "type").getUnderlyingType();
 
-        if (!_frames.isEmpty()) {
+        final Stack<IResolverFrame> frames = frames();
+
+        if (!frames.isEmpty()) {
             final String descriptor = type.getInternalName();
 
-            for (int i = _frames.size() - 1; i >= 0; i--) {
-                final TypeReference resolved = _frames.get(i).findType(descriptor);
+            for (int i = frames.size() - 1; i >= 0; i--) {
+                final TypeReference resolved = frames.get(i).findType(descriptor);
 
                 if (resolved instanceof TypeDefinition) {
                     return (TypeDefinition) resolved;
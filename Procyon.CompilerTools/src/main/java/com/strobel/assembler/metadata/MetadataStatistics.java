@@ -0,0 +1,130 @@
+/*
+ * MetadataStatistics.java
+ *
+ * Copyright (c) 2013 Mike Strobel
+ *
+ * This source code is subject to terms and conditions of the Apache License, Version 2.0.
+ * A copy of the license can be found in the License.html file at the root of this distribution.
+ * By using this source code in any fashion, you are agreeing to be bound by the terms of the
+ * Apache License, Version 2.0.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.strobel.assembler.metadata;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts how a {@link MetadataSystem} resolves types:  how many lookups were answered from the
+ * type cache, how many had to go to the type loader, how many were answered by the cache of
+ * known-missing types, and how much time and class file data loading took.  Counters may be
+ * updated and read concurrently; a snapshot taken while types are being loaded is approximate.
+ */
+public final class MetadataStatistics {
+    private final LongAdder _cacheHits = new LongAdder();
+    private final LongAdder _missingTypeHits = new LongAdder();
+    private final LongAdder _typesLoaded = new LongAdder();
+    private final LongAdder _typesNotFound = new LongAdder();
+    private final LongAdder _bytesRead = new LongAdder();
+    private final LongAdder _loadTime = new LongAdder();
+
+    /**
+     * Gets the number of lookups answered by a type already in the type cache.
+     */
+    public long getCacheHits() {
+        return _cacheHits.sum();
+    }
+
+    /**
+     * Gets the number of lookups which were not answered from the type cache, and so either
+     * went to the type loader or were answered by the cache of known-missing types.
+     */
+    public long getCacheMisses() {
+        return getMissingTypeHits() + getTypesLoaded() + getTypesNotFound();
+    }
+
+    /**
+     * Gets the number of lookups answered by the cache of known-missing types, each of which
+     * saved a search of the type loader.
+     */
+    public long getMissingTypeHits() {
+        return _missingTypeHits.sum();
+    }
+
+    /**
+     * Gets the number of types read from class files.
+     */
+    public long getTypesLoaded() {
+        return _typesLoaded.sum();
+    }
+
+    /**
+     * Gets the number of lookups for which the type loader found no class file.
+     */
+    public long getTypesNotFound() {
+        return _typesNotFound.sum();
+    }
+
+    /**
+     * Gets the total size of the class files read.
+     */
+    public long getBytesRead() {
+        return _bytesRead.sum();
+    }
+
+    /**
+     * Gets the time spent loading and reading class files, in nanoseconds.
+     */
+    public long getLoadTime() {
+        return _loadTime.sum();
+    }
+
+    public void reset() {
+        _cacheHits.reset();
+        _missingTypeHits.reset();
+        _typesLoaded.reset();
+        _typesNotFound.reset();
+        _bytesRead.reset();
+        _loadTime.reset();
+    }
+
+    final void recordCacheHit() {
+        _cacheHits.increment();
+    }
+
+    final void recordMissingTypeHit() {
+        _missingTypeHits.increment();
+    }
+
+    final void recordTypeLoaded(final int classFileSize, final long elapsedNanos) {
+        _typesLoaded.increment();
+        _bytesRead.add(classFileSize);
+        _loadTime.add(elapsedNanos);
+    }
+
+    final void recordTypeNotFound(final long elapsedNanos) {
+        _typesNotFound.increment();
+        _loadTime.add(elapsedNanos);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+            "Type cache hits:     %d\n" +
+            "Type cache misses:   %d\n" +
+            "  Types loaded:      %d (%d bytes)\n" +
+            "  Types not found:   %d\n" +
+            "  Known missing:     %d\n" +
+            "Load time:           %d ms",
+            getCacheHits(),
+            getCacheMisses(),
+            getTypesLoaded(),
+            getBytesRead(),
+            getTypesNotFound(),
+            getMissingTypeHits(),
+            TimeUnit.NANOSECONDS.toMillis(getLoadTime())
+        );
+    }
+}
@@ -20,7 +20,8 @@ import com.strobel.compilerservices.RuntimeHelpers;
 import com.strobel.core.Fences;
 import com.strobel.core.VerifyArgument;
 
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * @author Mike Strobel
@@ -28,10 +29,24 @@ import java.util.concurrent.ConcurrentHashMap;
 public class MetadataSystem extends MetadataResolver {
     private static MetadataSystem _instance;
 
-    private final ConcurrentHashMap<String, TypeDefinition> _types;
+    /**
+     * A suggested number of known-missing types for a metadata system to remember.  Metadata
+     * systems do not remember missing types unless given a capacity through
+     * {@link #setMissingTypeCacheCapacity}.
+     */
+    public final static int DEFAULT_MISSING_TYPE_CACHE_CAPACITY = 4096;
+
+    private final TypeCache _types;
     private final ITypeLoader _typeLoader;
+    private final Object _loadLock;
+    private final MetadataStatistics _statistics;
+    private final SymbolTable _symbols;
+    private final SignatureCache _signatures;
 
     private boolean _isEagerMethodLoadingEnabled;
+    private volatile TypeHeaderIndex _typeHeaderIndex;
+    private volatile MissingTypeCache _missingTypes;
+    private int _loadDepth;
 
     public static MetadataSystem instance() {
         if (_instance == null) {
@@ -58,8 +73,74 @@ public class MetadataSystem extends MetadataResolver {
 //    }
 
     public MetadataSystem(final ITypeLoader typeLoader) {
+        this(typeLoader, false);
+    }
+
+    /**
+     * Creates a metadata system backed by the specified type loader.  A thread-safe metadata
+     * system may be shared by several decompiling threads:  cached types are returned without
+     * locking, while reading new class files is serialized, as reading a class may update the
+     * definitions of related types.  The type loader must itself be safe for concurrent use.
+     *
+     * @param typeLoader the type loader from which class files are read
+     * @param isThreadSafe whether the metadata system may be used by multiple threads
+     */
+    public MetadataSystem(final ITypeLoader typeLoader, final boolean isThreadSafe) {
+        this(typeLoader, TypeCache.createUnbounded(), isThreadSafe);
+    }
+
+    /**
+     * Creates a metadata system backed by the specified type loader, retaining the types it
+     * reads according to the eviction policy of {@code typeCache}.
+     *
+     * @param typeLoader the type loader from which class files are read
+     * @param typeCache the cache holding the types read by this metadata system
+     * @param isThreadSafe whether the metadata system may be used by multiple threads
+     */
+    public MetadataSystem(final ITypeLoader typeLoader, final TypeCache typeCache, final boolean isThreadSafe) {
+        super(isThreadSafe);
         _typeLoader = VerifyArgument.notNull(typeLoader, "typeLoader");
-        _types = new ConcurrentHashMap<>();
+        _types = VerifyArgument.notNull(typeCache, "typeCache");
+        _loadLock = isThreadSafe ? new Object() : null;
+        _statistics = new MetadataStatistics();
+        _symbols = new SymbolTable();
+        _signatures = new SignatureCache(SignatureCache.DEFAULT_CAPACITY);
+    }
+
+    public final MetadataStatistics getStatistics() {
+        return _statistics;
+    }
+
+    /**
+     * Gets the table through which the constant pools of the class files read by this metadata
+     * system share their names and descriptors.
+     */
+    public final SymbolTable getSymbolTable() {
+        return _symbols;
+    }
+
+    final SignatureCache getSignatureCache() {
+        return _signatures;
+    }
+
+    public final int getMissingTypeCacheCapacity() {
+        final MissingTypeCache missingTypes = _missingTypes;
+        return missingTypes != null ? missingTypes.capacity : 0;
+    }
+
+    /**
+     * Sets how many types this metadata system remembers its type loader could not find.
+     * Lookups of a remembered type fail immediately rather than searching the type loader
+     * again, which assumes the type loader does not find a type it failed to find before, so
+     * missing types are not remembered unless a capacity is set.  Types defined later through
+     * {@link #addTypeDefinition} or {@link #prefetchType} are forgotten automatically.
+     *
+     * @param capacity the number of missing types to remember, or {@code 0} to always search
+     *                 the type loader
+     */
+    public final void setMissingTypeCacheCapacity(final int capacity) {
+        VerifyArgument.isNonNegative(capacity, "capacity");
+        _missingTypes = capacity > 0 ? new MissingTypeCache(capacity) : null;
     }
 
     public final boolean isEagerMethodLoadingEnabled() {
@@ -70,9 +151,43 @@ public class MetadataSystem extends MetadataResolver {
         _isEagerMethodLoadingEnabled = value;
     }
 
+    public final TypeHeaderIndex getTypeHeaderIndex() {
+        return _typeHeaderIndex;
+    }
+
+    /**
+     * Sets the persistent index of library types which serves stripped class files within this
+     * metadata system's type loader chain (see {@link TypeHeaderIndex}).  The bodies of methods
+     * read from stripped class files are read from the index's container when first needed.
+     *
+     * @param typeHeaderIndex the index, or {@code null} if the type loader does not use one
+     */
+    public final void setTypeHeaderIndex(final TypeHeaderIndex typeHeaderIndex) {
+        _typeHeaderIndex = typeHeaderIndex;
+    }
+
     public void addTypeDefinition(final TypeDefinition type) {
         VerifyArgument.notNull(type, "type");
-        _types.putIfAbsent(type.getInternalName(), type);
+
+        //
+        // Added types cannot be read back from the type loader, so never evict them.
+        //
+
+        final String descriptor = type.getInternalName();
+
+        forgetMissingType(descriptor);
+
+        _types.pin(descriptor);
+        _types.cache(descriptor, type, 0);
+    }
+
+    /**
+     * Exempts a frequently used type from eviction by the type cache.
+     *
+     * @param descriptor the internal name of the type
+     */
+    public final void pinType(final String descriptor) {
+        _types.pin(VerifyArgument.notNull(descriptor, "descriptor"));
     }
 
     @Override
@@ -114,35 +229,230 @@ public class MetadataSystem extends MetadataResolver {
             }
         }
 
-        TypeDefinition cachedDefinition = _types.get(descriptor);
+        final TypeDefinition cachedDefinition = _types.get(descriptor);
 
         if (cachedDefinition != null) {
+            _statistics.recordCacheHit();
             return cachedDefinition;
         }
 
-        final Buffer buffer = new Buffer(0);
+        final MissingTypeCache missingTypes = _missingTypes;
 
-        if (!_typeLoader.tryLoadType(descriptor, buffer)) {
+        if (missingTypes != null && missingTypes.contains(descriptor)) {
+            _statistics.recordMissingTypeHit();
             return null;
         }
 
-        final TypeDefinition typeDefinition = ClassFileReader.readClass(
-            _isEagerMethodLoadingEnabled ? ClassFileReader.OPTIONS_DEFAULT | ClassFileReader.OPTION_PROCESS_CODE
-                                         : ClassFileReader.OPTIONS_DEFAULT,
-            this,
-            buffer
-        );
+        if (_loadLock == null) {
+            return loadType(descriptor);
+        }
+
+        synchronized (_loadLock) {
+            return loadType(descriptor);
+        }
+    }
+
+    /**
+     * Reads and caches the header of a type whose class file has already been loaded, e.g., by
+     * a thread prefetching the types of a jar file.  The type's members are read on demand, as
+     * for types loaded by this metadata system's type loader.
+     *
+     * @param descriptor the internal name of the type
+     * @param classFile a buffer holding the type's class file
+     *
+     * @return the type, or a previously cached definition of the same type
+     */
+    public TypeDefinition prefetchType(final String descriptor, final Buffer classFile) {
+        VerifyArgument.notNull(descriptor, "descriptor");
+        VerifyArgument.notNull(classFile, "classFile");
+
+        final TypeDefinition cachedDefinition = _types.get(descriptor);
+
+        if (cachedDefinition != null) {
+            return cachedDefinition;
+        }
+
+        if (_loadLock == null) {
+            return prefetchTypeCore(descriptor, classFile);
+        }
+
+        synchronized (_loadLock) {
+            return prefetchTypeCore(descriptor, classFile);
+        }
+    }
+
+    private TypeDefinition prefetchTypeCore(final String descriptor, final Buffer classFile) {
+        final TypeDefinition cachedDefinition = _types.get(descriptor);
+
+        if (cachedDefinition != null) {
+            return cachedDefinition;
+        }
+
+        forgetMissingType(descriptor);
+
+        final long startTime = System.nanoTime();
+        final TypeDefinition type;
+
+        classFile.position(0);
+        ++_loadDepth;
+
+        try {
+            type = defineType(descriptor, getReadOptions(), _typeLoader, classFile);
+        }
+        finally {
+            --_loadDepth;
+        }
+
+        _statistics.recordTypeLoaded(classFile.size(), System.nanoTime() - startTime);
+
+        return type;
+    }
 
-        cachedDefinition = _types.putIfAbsent(descriptor, typeDefinition);
-        typeDefinition.setTypeLoader(_typeLoader);
+    private TypeDefinition loadType(final String descriptor) {
+        final TypeDefinition cachedDefinition = _types.get(descriptor);
 
         if (cachedDefinition != null) {
+            _statistics.recordCacheHit();
             return cachedDefinition;
         }
 
-        return typeDefinition;
+        //
+        // Reading a class may load related types; only the outermost load is timed, so that
+        // the load time is not counted twice.
+        //
+
+        final boolean isOutermostLoad = _loadDepth++ == 0;
+        final long startTime = isOutermostLoad ? System.nanoTime() : 0L;
+        final Buffer buffer = BufferPool.acquire();
+        final TypeDefinition type;
+
+        try {
+            type = loadTypeCore(descriptor, buffer);
+        }
+        finally {
+            --_loadDepth;
+        }
+
+        final long elapsed = isOutermostLoad ? System.nanoTime() - startTime : 0L;
+        final int classFileSize = buffer.size();
+
+        //
+        // The class reader lets go of the class file once it has read the header, even if the
+        // type's members have yet to be read, so the buffer can be reused right away.
+        //
+
+        BufferPool.release(buffer);
+
+        if (type != null) {
+            _statistics.recordTypeLoaded(classFileSize, elapsed);
+            return type;
+        }
+
+        _statistics.recordTypeNotFound(elapsed);
+
+        final MissingTypeCache missingTypes = _missingTypes;
+
+        if (missingTypes != null) {
+            missingTypes.add(descriptor);
+        }
+
+        return null;
+    }
+
+    private void forgetMissingType(final String descriptor) {
+        final MissingTypeCache missingTypes = _missingTypes;
+
+        if (missingTypes != null) {
+            missingTypes.remove(descriptor);
+        }
+    }
+
+    /**
+     * Gets the type loader from which the original class files of types read from stripped
+     * class files are read, or {@code null} if there is no type header index.
+     */
+    final ITypeLoader getStrippedTypeSourceLoader() {
+        final TypeHeaderIndex index = _typeHeaderIndex;
+        return index != null ? index.getSourceTypeLoader() : null;
+    }
+
+    private TypeDefinition loadTypeCore(final String descriptor, final Buffer buffer) {
+        if (!_typeLoader.tryLoadType(descriptor, buffer)) {
+            return null;
+        }
+
+        return defineType(descriptor, getReadOptions(), _typeLoader, buffer);
+    }
+
+    private int getReadOptions() {
+        //
+        // Many types are only loaded to walk the type hierarchy, so read their members on demand.
+        //
+
+        return _isEagerMethodLoadingEnabled
+               ? ClassFileReader.OPTIONS_DEFAULT | ClassFileReader.OPTION_HEADER_ONLY | ClassFileReader.OPTION_PROCESS_CODE
+               : ClassFileReader.OPTIONS_DEFAULT | ClassFileReader.OPTION_HEADER_ONLY;
+    }
+
+    /**
+     * Gets the lock which serializes reading class files, or {@code null} if this metadata
+     * system is not thread-safe.  Members of types read header-only are read under this lock.
+     */
+    final Object getLoadLock() {
+        return _loadLock;
+    }
+
+    private TypeDefinition defineType(final String descriptor, final int options, final ITypeLoader typeLoader, final Buffer buffer) {
+        final TypeDefinition typeDefinition = ClassFileReader.readClass(options, this, buffer);
+
+        typeDefinition.setTypeLoader(typeLoader);
+
+        return _types.cache(descriptor, typeDefinition, buffer.size());
+    }
+
+    // <editor-fold defaultstate="collapsed" desc="MissingTypeCache Class">
+
+    private final static class MissingTypeCache {
+        final int capacity;
+
+        private final DescriptorMap _descriptors;
+
+        MissingTypeCache(final int capacity) {
+            this.capacity = capacity;
+            _descriptors = new DescriptorMap(capacity);
+        }
+
+        synchronized boolean contains(final String descriptor) {
+            return _descriptors.get(descriptor) != null;
+        }
+
+        synchronized void add(final String descriptor) {
+            _descriptors.put(descriptor, Boolean.TRUE);
+        }
+
+        synchronized void remove(final String descriptor) {
+            _descriptors.remove(descriptor);
+        }
+
+        private final static class DescriptorMap extends LinkedHashMap<String, Boolean> {
+            private static final long serialVersionUID = -2361507842256017435L;
+
+            private final int _capacity;
+
+            DescriptorMap(final int capacity) {
+                super(16, 0.75f, true);
+                _capacity = capacity;
+            }
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, Boolean> eldest) {
+                return size() > _capacity;
+            }
+        }
     }
 
+    // </editor-fold>
+
     // <editor-fold defaultstate="collapsed" desc="Primitive Lookup">
 
     private final static TypeDefinition[] PRIMITIVE_TYPES_BY_NAME = new TypeDefinition['Z' - 'B' + 1];
@@ -18,6 +18,7 @@ package com.strobel.assembler.metadata;
 
 import com.strobel.assembler.Collection;
 import com.strobel.assembler.ir.ConstantPool;
+import com.strobel.assembler.ir.PackedInstructions;
 import com.strobel.assembler.ir.attributes.AttributeNames;
 import com.strobel.assembler.ir.attributes.CodeAttribute;
 import com.strobel.assembler.ir.attributes.ExceptionTableEntry;
@@ -86,6 +87,16 @@ public class MethodDefinition extends MethodReference implements IMemberDefiniti
         return body;
     }
 
+    /**
+     * Reads the bytecode of this method into a compact, read-only form, for analyses which do
+     * not need a full {@link MethodBody}.  The result is not cached.
+     *
+     * @return the instructions, or {@code null} if this method has no body or it could not be read
+     */
+    public final PackedInstructions getPackedInstructions() {
+        return (PackedInstructions) tryReadCode(true);
+    }
+
     public final boolean hasThis() {
         return !isStatic();
     }
@@ -655,7 +666,30 @@ public class MethodDefinition extends MethodReference implements IMemberDefiniti
 
     // <editor-fold defaultstate="collapsed" desc="Deferred Method Body Loading">
 
-    private MethodBody tryLoadBody() {
+    private synchronized MethodBody tryLoadBody() {
+        //
+        // Loading temporarily swaps out the code attribute, so concurrent loads of the same
+        // body must be serialized.  Another thread may have loaded it while we were waiting.
+        //
+
+        final SoftReference<MethodBody> cachedBody = _body;
+        final MethodBody existingBody = cachedBody != null ? cachedBody.get() : null;
+
+        if (existingBody != null) {
+            return existingBody;
+        }
+
+        final MethodBody body = (MethodBody) tryReadCode(false);
+
+        if (body != null) {
+            _body = new SoftReference<>(body);
+            body.tryFreeze();
+        }
+
+        return body;
+    }
+
+    private synchronized Object tryReadCode(final boolean packed) {
         if (Flags.testAny(_flags, Flags.LOAD_BODY_FAILED)) {
             return null;
         }
@@ -671,7 +705,36 @@ public class MethodDefinition extends MethodReference implements IMemberDefiniti
         Buffer code = codeAttribute.getCode();
         ConstantPool constantPool = _declaringType.getConstantPool();
 
-        if (code == null) {
+        if (Flags.testAny(_flags, Flags.STRIPPED_CODE)) {
+            //
+            // Our declaring type was read from a header index, so we only have a stub of our
+            // code attribute.  Read the real one from the original class file; the type loader
+            // chain would only give us the stripped one again.
+            //
+
+            final IMetadataResolver resolver = _declaringType.getResolver();
+            final ITypeLoader typeLoader = resolver instanceof MetadataSystem ? ((MetadataSystem) resolver).getStrippedTypeSourceLoader()
+                                                                              : null;
+            final Buffer classFile = BufferPool.acquire();
+            final CodeAttribute fullCodeAttribute;
+
+            try {
+                fullCodeAttribute = typeLoader != null && typeLoader.tryLoadType(_declaringType.getInternalName(), classFile)
+                                    ? ClassFileReader.readCodeAttribute(this, classFile)
+                                    : null;
+            }
+            finally {
+                BufferPool.release(classFile);
+            }
+
+            if (fullCodeAttribute == null) {
+                _flags |= Flags.LOAD_BODY_FAILED;
+                return null;
+            }
+
+            _sourceAttributes.set(codeAttributeIndex, fullCodeAttribute);
+        }
+        else if (code == null) {
             final ITypeLoader typeLoader = _declaringType.getTypeLoader();
 
             if (typeLoader == null) {
@@ -679,9 +742,15 @@ public class MethodDefinition extends MethodReference implements IMemberDefiniti
                 return null;
             }
 
-            code = new Buffer();
+            //
+            // The code attribute and constant pool copy what they need out of the class file,
+            // so it is only needed until both have been read.
+            //
+
+            code = BufferPool.acquire();
 
             if (!typeLoader.tryLoadType(_declaringType.getInternalName(), code)) {
+                BufferPool.release(code);
                 _flags |= Flags.LOAD_BODY_FAILED;
                 return null;
             }
@@ -717,23 +786,24 @@ public class MethodDefinition extends MethodReference implements IMemberDefiniti
                 code.readUnsignedShort(); // minor version
                 code.readUnsignedShort(); // major version
 
-                constantPool = ConstantPool.read(code);
+                constantPool = ConstantPool.read(code, ClassFileReader.symbolTableOf(_declaringType.getResolver()));
             }
 
+            BufferPool.release(code);
+
             _sourceAttributes.set(codeAttributeIndex, newCode);
         }
 
         final MetadataParser parser = new MetadataParser(_declaringType);
         final IMetadataScope scope = new ClassFileReader.Scope(parser, _declaringType, constantPool);
 
-        final MethodBody body = new MethodReader(this, scope).readBody();
-
-        _body = new SoftReference<>(body);
-        _sourceAttributes.set(codeAttributeIndex, codeAttribute);
-
-        body.tryFreeze();
-
-        return body;
+        try {
+            final MethodReader reader = new MethodReader(this, scope);
+            return packed ? reader.readPackedInstructions() : reader.readBody();
+        }
+        finally {
+            _sourceAttributes.set(codeAttributeIndex, codeAttribute);
+        }
     }
 
     // </editor-fold>
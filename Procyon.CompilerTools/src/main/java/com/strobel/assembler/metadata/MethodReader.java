@@ -22,6 +22,7 @@ import com.strobel.assembler.ir.InstructionCollection;
 import com.strobel.assembler.ir.OpCode;
 import com.strobel.assembler.ir.OpCodeHelpers;
 import com.strobel.assembler.ir.OperandType;
+import com.strobel.assembler.ir.PackedInstructions;
 import com.strobel.assembler.ir.attributes.AttributeNames;
 import com.strobel.assembler.ir.attributes.CodeAttribute;
 import com.strobel.assembler.ir.attributes.ExceptionTableEntry;
@@ -72,6 +73,25 @@ public class MethodReader {
         }
     }
 
+    /**
+     * Reads the method's bytecode into a compact, read-only instruction stream, without building
+     * a {@link MethodBody}.  Constant pool operands are resolved lazily against this reader's scope.
+     */
+    public PackedInstructions readPackedInstructions() {
+        try {
+            return PackedInstructions.read(_code.getCode(), _scope);
+        }
+        catch (final Throwable t) {
+            throw new MethodBodyParseException(
+                format(
+                    "An error occurred while parsing the bytecode of method '%s:%s'.",
+                    _methodDefinition.getFullName(),
+                    _methodDefinition.getSignature()
+                ),
+                t);
+        }
+    }
+
     private MethodBody readBodyCore() {
         final Buffer b = _code.getCode();
 
@@ -0,0 +1,92 @@
+/*
+ * SignatureCache.java
+ *
+ * Copyright (c) 2013 Mike Strobel
+ *
+ * This source code is subject to terms and conditions of the Apache License, Version 2.0.
+ * A copy of the license can be found in the License.html file at the root of this distribution.
+ * By using this source code in any fashion, you are agreeing to be bound by the terms of the
+ * Apache License, Version 2.0.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.strobel.assembler.metadata;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers the types and method signatures a {@link MetadataParser} made from descriptor and
+ * signature strings.  A cache owned by a {@link MetadataSystem} is shared by all of its parsers,
+ * and only holds results which do not depend on the generic scope or the owner type of the
+ * parser which made them.  The cache stops growing once it reaches its capacity.
+ */
+final class SignatureCache {
+    final static int DEFAULT_CAPACITY = 1 << 16;
+
+    final static class ParsedMethodSignature {
+        final TypeReference returnType;
+        final List<TypeReference> parameterTypes;
+        final List<TypeReference> thrownTypes;
+
+        ParsedMethodSignature(
+            final TypeReference returnType,
+            final List<TypeReference> parameterTypes,
+            final List<TypeReference> thrownTypes) {
+
+            this.returnType = returnType;
+            this.parameterTypes = parameterTypes;
+            this.thrownTypes = thrownTypes;
+        }
+    }
+
+    private final int _capacity;
+
+    //
+    // Internal names passed to parseTypeDescriptor() are kept apart from type signatures, as
+    // a class named, e.g., 'I' would otherwise collide with a primitive signature.
+    //
+
+    private final ConcurrentHashMap<String, TypeReference> _descriptors = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, TypeReference> _types = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, ParsedMethodSignature> _methodSignatures = new ConcurrentHashMap<>();
+
+    SignatureCache(final int capacity) {
+        _capacity = capacity;
+    }
+
+    TypeReference findDescriptor(final String descriptor) {
+        return _descriptors.get(descriptor);
+    }
+
+    TypeReference findType(final String signature) {
+        return _types.get(signature);
+    }
+
+    ParsedMethodSignature findMethodSignature(final String signature) {
+        return _methodSignatures.get(signature);
+    }
+
+    void addDescriptor(final String descriptor, final TypeReference type) {
+        if (_descriptors.size() < _capacity) {
+            _descriptors.putIfAbsent(descriptor, type);
+        }
+    }
+
+    void addType(final String signature, final TypeReference type) {
+        if (_types.size() < _capacity) {
+            _types.putIfAbsent(signature, type);
+        }
+    }
+
+    void addMethodSignature(final String signature, final ParsedMethodSignature methodSignature) {
+        if (_methodSignatures.size() < _capacity) {
+            _methodSignatures.putIfAbsent(signature, methodSignature);
+        }
+    }
+
+    int size() {
+        return _descriptors.size() + _types.size() + _methodSignatures.size();
+    }
+}
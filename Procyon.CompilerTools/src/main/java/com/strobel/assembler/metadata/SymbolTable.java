@@ -0,0 +1,238 @@
+/*
+ * SymbolTable.java
+ *
+ * Copyright (c) 2013 Mike Strobel
+ *
+ * This source code is subject to terms and conditions of the Apache License, Version 2.0.
+ * A copy of the license can be found in the License.html file at the root of this distribution.
+ * By using this source code in any fashion, you are agreeing to be bound by the terms of the
+ * Apache License, Version 2.0.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.strobel.assembler.metadata;
+
+import com.strobel.core.VerifyArgument;
+
+/**
+ * Interns the UTF-8 constants of the class files read by a {@link MetadataSystem}.  The same
+ * names and descriptors, e.g., {@code java/lang/Object}, {@code <init>}, or {@code ()V}, appear in
+ * nearly every class file; a symbol table matches them against the raw bytes of the constant,
+ * so each distinct string is decoded only once, and every class shares a single copy of it.
+ * Constants are matched against the strings themselves, so the table keeps no bytes of its own.
+ * <p>
+ * The table lives as long as its metadata system, which may evict the types using a symbol long
+ * before the table is discarded.  So that it does not grow without bound, the table starts over
+ * once it reaches its maximum size; strings already handed out are unaffected.
+ * <p>
+ * Lookups take no locks unless a new symbol must be added.
+ */
+public final class SymbolTable {
+    public final static int DEFAULT_MAXIMUM_SIZE = 1 << 18;
+
+    private final static int INITIAL_CAPACITY = 4096;
+
+    private final static class Symbol {
+        final int hashCode;
+        final String value;
+        final Symbol next;
+
+        Symbol(final int hashCode, final String value, final Symbol next) {
+            this.hashCode = hashCode;
+            this.value = value;
+            this.next = next;
+        }
+    }
+
+    //
+    // A bucket only ever gains a new head, and the table is only ever cleared by replacing the
+    // bucket array, so readers may walk a chain without locking; a symbol missed by a racing
+    // reader is found again under the lock.
+    //
+
+    private final int _maximumSize;
+    private volatile Symbol[] _buckets = new Symbol[INITIAL_CAPACITY];
+    private int _size;
+
+    public SymbolTable() {
+        this(DEFAULT_MAXIMUM_SIZE);
+    }
+
+    public SymbolTable(final int maximumSize) {
+        _maximumSize = VerifyArgument.isPositive(maximumSize, "maximumSize");
+    }
+
+    /**
+     * Gets the string encoded by {@code length} bytes of modified UTF-8 starting at
+     * {@code offset}, decoding it only if no equal string has been seen before.
+     */
+    public String lookup(final byte[] data, final int offset, final int length) {
+        VerifyArgument.notNull(data, "data");
+
+        if (offset < 0 || length < 0 || offset + length > data.length) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        final int hashCode = hash(data, offset, length);
+        final Symbol[] buckets = _buckets;
+        final Symbol symbol = find(buckets[hashCode & (buckets.length - 1)], hashCode, data, offset, length);
+
+        if (symbol != null) {
+            return symbol.value;
+        }
+
+        return add(hashCode, data, offset, length);
+    }
+
+    /**
+     * Gets the number of distinct symbols in the table.
+     */
+    public synchronized int size() {
+        return _size;
+    }
+
+    private synchronized String add(final int hashCode, final byte[] data, final int offset, final int length) {
+        Symbol[] buckets = _buckets;
+
+        final Symbol existing = find(buckets[hashCode & (buckets.length - 1)], hashCode, data, offset, length);
+
+        if (existing != null) {
+            return existing.value;
+        }
+
+        final String value = Buffer.decodeUtf8(data, offset, length);
+
+        if (_size >= _maximumSize) {
+            buckets = new Symbol[INITIAL_CAPACITY];
+            _size = 0;
+        }
+        else if (_size >= buckets.length - (buckets.length >> 2)) {
+            buckets = grow(buckets);
+        }
+
+        final int index = hashCode & (buckets.length - 1);
+
+        buckets[index] = new Symbol(hashCode, value, buckets[index]);
+
+        ++_size;
+        _buckets = buckets;
+
+        return value;
+    }
+
+    private Symbol[] grow(final Symbol[] buckets) {
+        //
+        // Rehash into a fresh array, copying each symbol rather than relinking it, so readers
+        // still walking the old chains never see them change.
+        //
+
+        final Symbol[] newBuckets = new Symbol[buckets.length << 1];
+
+        for (final Symbol head : buckets) {
+            for (Symbol symbol = head; symbol != null; symbol = symbol.next) {
+                final int index = symbol.hashCode & (newBuckets.length - 1);
+                newBuckets[index] = new Symbol(symbol.hashCode, symbol.value, newBuckets[index]);
+            }
+        }
+
+        return newBuckets;
+    }
+
+    private static Symbol find(
+        final Symbol head,
+        final int hashCode,
+        final byte[] data,
+        final int offset,
+        final int length) {
+
+        for (Symbol symbol = head; symbol != null; symbol = symbol.next) {
+            if (symbol.hashCode == hashCode && matches(symbol.value, data, offset, length)) {
+                return symbol;
+            }
+        }
+
+        return null;
+    }
+
+    private static boolean matches(final String value, final byte[] data, final int offset, final int length) {
+        final int valueLength = value.length();
+
+        //
+        // Every character takes at least one byte, so a longer string cannot match.
+        //
+
+        if (valueLength > length) {
+            return false;
+        }
+
+        //
+        // Decode the bytes as we compare, exactly as Buffer.decodeUtf8() would.  Malformed
+        // input never matches, as it can never have been added.
+        //
+
+        int position = offset;
+        int count = 0;
+
+        final int end = offset + length;
+
+        while (position < end) {
+            if (count >= valueLength) {
+                return false;
+            }
+
+            final int ch = data[position] & 0xFF;
+            final char decoded;
+
+            switch (ch & 0xE0) {
+                case 0xC0:
+                    if (position + 2 > end || (data[position + 1] & 0xC0) != 0x80) {
+                        return false;
+                    }
+                    decoded = (char) ((ch & 0x1F) << 6 | data[position + 1] & 0x3F);
+                    position += 2;
+                    break;
+
+                case 0xE0:
+                    if (position + 3 > end ||
+                        (data[position + 1] & 0xC0) != 0x80 ||
+                        (data[position + 2] & 0xC0) != 0x80) {
+
+                        return false;
+                    }
+                    decoded = (char) ((ch & 0x0F) << 12 | (data[position + 1] & 0x3F) << 6 | data[position + 2] & 0x3F);
+                    position += 3;
+                    break;
+
+                case 0x80:
+                case 0xA0:
+                    return false;
+
+                default:
+                    decoded = (char) ch;
+                    position++;
+                    break;
+            }
+
+            if (value.charAt(count++) != decoded) {
+                return false;
+            }
+        }
+
+        return count == valueLength;
+    }
+
+    private static int hash(final byte[] data, final int offset, final int length) {
+        int hashCode = 0;
+
+        for (int i = offset, end = offset + length; i < end; i++) {
+            hashCode = 31 * hashCode + data[i];
+        }
+
+        //
+        // Spread the high bits downward, as the bucket index only uses the low ones.
+        //
+
+        return hashCode ^ (hashCode >>> 16);
+    }
+}
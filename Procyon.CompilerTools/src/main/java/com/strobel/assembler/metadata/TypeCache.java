@@ -0,0 +1,375 @@
+/*
+ * TypeCache.java
+ *
+ * Copyright (c) 2013 Mike Strobel
+ *
+ * This source code is subject to terms and conditions of the Apache License, Version 2.0.
+ * A copy of the license can be found in the License.html file at the root of this distribution.
+ * By using this source code in any fashion, you are agreeing to be bound by the terms of the
+ * Apache License, Version 2.0.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.strobel.assembler.metadata;
+
+import com.strobel.core.VerifyArgument;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds the type definitions read by a {@link MetadataSystem}.  The eviction policy of a
+ * cache determines how many definitions stay resident; evicted types are simply read again
+ * from their type loader the next time they are requested.  Pinned types are never evicted.
+ * <p>
+ * A definition is never replaced while it is still reachable from elsewhere, e.g., from the
+ * method being decompiled, as type identity must be preserved for the lifetime of a type.
+ * All implementations are safe for concurrent use.
+ */
+public abstract class TypeCache {
+    private final Set<String> _pinnedDescriptors;
+    private final ConcurrentHashMap<String, TypeDefinition> _pinnedTypes;
+
+    protected TypeCache() {
+        _pinnedDescriptors = ConcurrentHashMap.newKeySet();
+        _pinnedTypes = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Gets the cached definition of a type.
+     *
+     * @param descriptor the internal name of the type
+     *
+     * @return the cached definition, or {@code null} if none is resident
+     */
+    public final TypeDefinition get(final String descriptor) {
+        final TypeDefinition pinnedType = _pinnedTypes.get(descriptor);
+
+        if (pinnedType != null) {
+            return pinnedType;
+        }
+
+        return getCore(descriptor);
+    }
+
+    /**
+     * Places a type definition in the cache only if no definition exists with the same name.
+     *
+     * @param descriptor the internal name of the type
+     * @param type the type definition to cache
+     * @param classFileSize the size of the class file from which the type was read, used as
+     *                      an estimate of the memory retained by the definition
+     *
+     * @return the cached definition, which will be {@code type} if no existing definition was found
+     */
+    public final TypeDefinition cache(final String descriptor, final TypeDefinition type, final int classFileSize) {
+        VerifyArgument.notNull(descriptor, "descriptor");
+        VerifyArgument.notNull(type, "type");
+
+        if (_pinnedDescriptors.contains(descriptor)) {
+            final TypeDefinition existing = _pinnedTypes.putIfAbsent(descriptor, type);
+            return existing != null ? existing : type;
+        }
+
+        return cacheCore(descriptor, type, Math.max(classFileSize, 0));
+    }
+
+    /**
+     * Exempts a type from eviction.  The type need not have been loaded yet.
+     *
+     * @param descriptor the internal name of the type
+     */
+    public final void pin(final String descriptor) {
+        VerifyArgument.notNull(descriptor, "descriptor");
+
+        if (!_pinnedDescriptors.add(descriptor)) {
+            return;
+        }
+
+        final TypeDefinition existing = removeCore(descriptor);
+
+        if (existing != null) {
+            _pinnedTypes.putIfAbsent(descriptor, existing);
+        }
+    }
+
+    public final boolean isPinned(final String descriptor) {
+        return _pinnedDescriptors.contains(descriptor);
+    }
+
+    /**
+     * Gets the number of resident type definitions, including pinned types.
+     */
+    public final int size() {
+        return _pinnedTypes.size() + sizeCore();
+    }
+
+    protected abstract TypeDefinition getCore(final String descriptor);
+
+    protected abstract TypeDefinition cacheCore(final String descriptor, final TypeDefinition type, final int classFileSize);
+
+    protected abstract TypeDefinition removeCore(final String descriptor);
+
+    protected abstract int sizeCore();
+
+    /**
+     * Creates a cache that never evicts anything.
+     */
+    public static TypeCache createUnbounded() {
+        return new UnboundedTypeCache();
+    }
+
+    /**
+     * Creates a cache that evicts the least recently used types once more than
+     * {@code maximumSize} unpinned types are strongly held.
+     */
+    public static TypeCache createLeastRecentlyUsed(final int maximumSize) {
+        VerifyArgument.isPositive(maximumSize, "maximumSize");
+        return new BoundedTypeCache(maximumSize, false);
+    }
+
+    /**
+     * Creates a cache that evicts the least recently used types once the estimated memory
+     * retained by unpinned types exceeds {@code maximumBytes}.  Retained memory is estimated
+     * from the size of the class files the types were read from.
+     */
+    public static TypeCache createSizeBounded(final long maximumBytes) {
+        VerifyArgument.isPositive(maximumBytes, "maximumBytes");
+        return new BoundedTypeCache(maximumBytes, true);
+    }
+
+    /**
+     * Creates a cache whose unpinned types are softly reachable, leaving it to the garbage
+     * collector to evict them when the heap runs low.
+     */
+    public static TypeCache createSoft() {
+        return new ReferenceTypeCache(true);
+    }
+
+    /**
+     * Creates a cache whose unpinned types are weakly reachable, so that types stay resident
+     * only while something else still refers to them.
+     */
+    public static TypeCache createWeak() {
+        return new ReferenceTypeCache(false);
+    }
+
+    // <editor-fold defaultstate="collapsed" desc="Implementations">
+
+    private final static class UnboundedTypeCache extends TypeCache {
+        private final ConcurrentHashMap<String, TypeDefinition> _types = new ConcurrentHashMap<>();
+
+        @Override
+        protected TypeDefinition getCore(final String descriptor) {
+            return _types.get(descriptor);
+        }
+
+        @Override
+        protected TypeDefinition cacheCore(final String descriptor, final TypeDefinition type, final int classFileSize) {
+            final TypeDefinition existing = _types.putIfAbsent(descriptor, type);
+            return existing != null ? existing : type;
+        }
+
+        @Override
+        protected TypeDefinition removeCore(final String descriptor) {
+            return _types.remove(descriptor);
+        }
+
+        @Override
+        protected int sizeCore() {
+            return _types.size();
+        }
+    }
+
+    private final static class BoundedTypeCache extends TypeCache {
+        private final long _capacity;
+        private final boolean _weighByClassFileSize;
+        private final LinkedHashMap<String, WeightedEntry> _entries;
+        private final ReferenceTypeCache _evicted;
+
+        private long _totalWeight;
+
+        BoundedTypeCache(final long capacity, final boolean weighByClassFileSize) {
+            _capacity = capacity;
+            _weighByClassFileSize = weighByClassFileSize;
+            _entries = new LinkedHashMap<>(16, 0.75f, true);
+            _evicted = new ReferenceTypeCache(false);
+        }
+
+        @Override
+        protected synchronized TypeDefinition getCore(final String descriptor) {
+            final WeightedEntry entry = _entries.get(descriptor);
+
+            if (entry != null) {
+                return entry.type;
+            }
+
+            //
+            // An evicted type that is still in use elsewhere must be handed out again rather
+            // than re-read, or we would end up with two definitions of the same type.
+            //
+
+            return _evicted.getCore(descriptor);
+        }
+
+        @Override
+        protected synchronized TypeDefinition cacheCore(final String descriptor, final TypeDefinition type, final int classFileSize) {
+            final WeightedEntry existing = _entries.get(descriptor);
+
+            if (existing != null) {
+                return existing.type;
+            }
+
+            final TypeDefinition evictedType = _evicted.removeCore(descriptor);
+
+            if (evictedType != null) {
+                return cacheCore(descriptor, evictedType, classFileSize);
+            }
+
+            final long weight = _weighByClassFileSize ? classFileSize : 1L;
+
+            _entries.put(descriptor, new WeightedEntry(type, weight));
+            _totalWeight += weight;
+
+            //
+            // Always keep the newest entry, even if it alone exceeds the capacity.
+            //
+
+            final Iterator<Map.Entry<String, WeightedEntry>> iterator = _entries.entrySet().iterator();
+
+            while (_totalWeight > _capacity && _entries.size() > 1) {
+                final Map.Entry<String, WeightedEntry> eldest = iterator.next();
+
+                _totalWeight -= eldest.getValue().weight;
+                _evicted.cacheCore(eldest.getKey(), eldest.getValue().type, 0);
+
+                iterator.remove();
+            }
+
+            return type;
+        }
+
+        @Override
+        protected synchronized TypeDefinition removeCore(final String descriptor) {
+            final WeightedEntry entry = _entries.remove(descriptor);
+
+            if (entry == null) {
+                return _evicted.removeCore(descriptor);
+            }
+
+            _totalWeight -= entry.weight;
+            return entry.type;
+        }
+
+        @Override
+        protected synchronized int sizeCore() {
+            return _entries.size();
+        }
+
+        private final static class WeightedEntry {
+            final TypeDefinition type;
+            final long weight;
+
+            WeightedEntry(final TypeDefinition type, final long weight) {
+                this.type = type;
+                this.weight = weight;
+            }
+        }
+    }
+
+    private final static class ReferenceTypeCache extends TypeCache {
+        private final boolean _soft;
+        private final ConcurrentHashMap<String, Reference<TypeDefinition>> _references;
+        private final ReferenceQueue<TypeDefinition> _queue;
+
+        ReferenceTypeCache(final boolean soft) {
+            _soft = soft;
+            _references = new ConcurrentHashMap<>();
+            _queue = new ReferenceQueue<>();
+        }
+
+        @Override
+        protected TypeDefinition getCore(final String descriptor) {
+            final Reference<TypeDefinition> reference = _references.get(descriptor);
+            return reference != null ? reference.get() : null;
+        }
+
+        @Override
+        protected TypeDefinition cacheCore(final String descriptor, final TypeDefinition type, final int classFileSize) {
+            purgeClearedReferences();
+
+            final Reference<TypeDefinition> newReference = _soft ? new SoftTypeReference(descriptor, type, _queue)
+                                                                 : new WeakTypeReference(descriptor, type, _queue);
+
+            while (true) {
+                final Reference<TypeDefinition> existing = _references.putIfAbsent(descriptor, newReference);
+
+                if (existing == null) {
+                    return type;
+                }
+
+                final TypeDefinition existingType = existing.get();
+
+                if (existingType != null) {
+                    return existingType;
+                }
+
+                if (_references.replace(descriptor, existing, newReference)) {
+                    return type;
+                }
+            }
+        }
+
+        @Override
+        protected TypeDefinition removeCore(final String descriptor) {
+            final Reference<TypeDefinition> reference = _references.remove(descriptor);
+            return reference != null ? reference.get() : null;
+        }
+
+        @Override
+        protected int sizeCore() {
+            purgeClearedReferences();
+            return _references.size();
+        }
+
+        private void purgeClearedReferences() {
+            Reference<? extends TypeDefinition> reference;
+
+            while ((reference = _queue.poll()) != null) {
+                final String descriptor = reference instanceof SoftTypeReference ? ((SoftTypeReference) reference).descriptor
+                                                                                 : ((WeakTypeReference) reference).descriptor;
+
+                //noinspection SuspiciousMethodCalls
+                _references.remove(descriptor, reference);
+            }
+        }
+
+        private final static class SoftTypeReference extends SoftReference<TypeDefinition> {
+            final String descriptor;
+
+            SoftTypeReference(final String descriptor, final TypeDefinition type, final ReferenceQueue<TypeDefinition> queue) {
+                super(type, queue);
+                this.descriptor = descriptor;
+            }
+        }
+
+        private final static class WeakTypeReference extends WeakReference<TypeDefinition> {
+            final String descriptor;
+
+            WeakTypeReference(final String descriptor, final TypeDefinition type, final ReferenceQueue<TypeDefinition> queue) {
+                super(type, queue);
+                this.descriptor = descriptor;
+            }
+        }
+    }
+
+    // </editor-fold>
+}
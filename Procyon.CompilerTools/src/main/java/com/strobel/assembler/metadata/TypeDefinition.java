@@ -58,6 +58,7 @@ public class TypeDefinition extends TypeReference implements IMemberDefinition {
     private MethodReference _declaringMethod;
     private ConstantPool _constantPool;
     private ITypeLoader _typeLoader;
+    private volatile ClassFileReader _deferredMemberReader;
 
     public TypeDefinition() {
         _genericParameters = new GenericParameterCollection(this);
@@ -89,6 +90,28 @@ public class TypeDefinition extends TypeReference implements IMemberDefinition {
         _typeLoader = typeLoader;
     }
 
+    final void setDeferredMemberReader(final ClassFileReader reader) {
+        _deferredMemberReader = reader;
+    }
+
+    /**
+     * Determines whether this type was read header-only and its members have yet to be read.
+     */
+    final boolean hasDeferredMembers() {
+        return _deferredMemberReader != null;
+    }
+
+    /**
+     * Reads the members and attributes of a type whose class file was read header-only.
+     */
+    private void ensureMembersRead() {
+        final ClassFileReader reader = _deferredMemberReader;
+
+        if (reader != null) {
+            reader.readDeferredMembers();
+        }
+    }
+
     public final CompilerTarget getCompilerTarget() {
         return CompilerTarget.lookup(getCompilerMajorVersion(), getCompilerMinorVersion());
     }
@@ -220,10 +243,12 @@ public class TypeDefinition extends TypeReference implements IMemberDefinition {
 
     @Override
     public final List<CustomAnnotation> getAnnotations() {
+        ensureMembersRead();
         return _customAnnotationsView;
     }
 
     public final List<SourceAttribute> getSourceAttributes() {
+        ensureMembersRead();
         return _sourceAttributesView;
     }
 
@@ -284,14 +309,17 @@ public class TypeDefinition extends TypeReference implements IMemberDefinition {
     }
 
     protected final Collection<TypeDefinition> getDeclaredTypesInternal() {
+        ensureMembersRead();
         return _declaredTypes;
     }
 
     protected final Collection<FieldDefinition> getDeclaredFieldsInternal() {
+        ensureMembersRead();
         return _declaredFields;
     }
 
     protected final Collection<MethodDefinition> getDeclaredMethodsInternal() {
+        ensureMembersRead();
         return _declaredMethods;
     }
 
@@ -300,10 +328,12 @@ public class TypeDefinition extends TypeReference implements IMemberDefinition {
     }
 
     protected final Collection<CustomAnnotation> getAnnotationsInternal() {
+        ensureMembersRead();
         return _customAnnotations;
     }
 
     protected final Collection<SourceAttribute> getSourceAttributesInternal() {
+        ensureMembersRead();
         return _sourceAttributes;
     }
 
@@ -417,14 +447,17 @@ public class TypeDefinition extends TypeReference implements IMemberDefinition {
     // <editor-fold defaultstate="collapsed" desc="Members">
 
     public final List<FieldDefinition> getDeclaredFields() {
+        ensureMembersRead();
         return _declaredFieldsView;
     }
 
     public final List<MethodDefinition> getDeclaredMethods() {
+        ensureMembersRead();
         return _declaredMethodsView;
     }
 
     public final List<TypeDefinition> getDeclaredTypes() {
+        ensureMembersRead();
         return _declaredTypesView;
     }
 
@@ -0,0 +1,446 @@
+/*
+ * TypeHeaderIndex.java
+ *
+ * Copyright (c) 2013 Mike Strobel
+ *
+ * This source code is subject to terms and conditions of the Apache License, Version 2.0.
+ * A copy of the license can be found in the License.html file at the root of this distribution.
+ * By using this source code in any fashion, you are agreeing to be bound by the terms of the
+ * Apache License, Version 2.0.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.strobel.assembler.metadata;
+
+import com.strobel.assembler.ir.ConstantPool;
+import com.strobel.assembler.ir.attributes.AttributeNames;
+import com.strobel.core.VerifyArgument;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A persistent, on-disk index of the class files in a library container, e.g., a jar file or
+ * the runtime image of a JDK.  The index stores each class file with its method bodies stripped,
+ * which is all that is needed to resolve supertypes and member signatures.
+ * <p>
+ * An index is a caching type loader wrapped around the loader which reads its container, and
+ * takes that loader's place in a type loader chain, so the container's types are still only
+ * found if no loader ahead of it finds them.  Types indexed by an earlier run are loaded from
+ * their stripped class files; types not yet in the index are read from the container, added to
+ * the index, and read from the container for the rest of the run.  Call {@link #save()} to
+ * persist them for the next run.  A {@link MetadataSystem} given the index through
+ * {@link MetadataSystem#setTypeHeaderIndex} reads the original class file from the container
+ * if a method body is requested.
+ * <p>
+ * An index is keyed by the path, size, and modification time of its container, and is discarded
+ * if the container changes.
+ */
+public final class TypeHeaderIndex implements ITypeLoader {
+    private final static Logger LOG = Logger.getLogger(TypeHeaderIndex.class.getSimpleName());
+
+    private final static int INDEX_MAGIC = 0x50484458;
+    private final static int INDEX_VERSION = 2;
+
+    private final File _indexFile;
+    private final String _containerPath;
+    private final long _containerLength;
+    private final long _containerLastModified;
+    private final ITypeLoader _sourceTypeLoader;
+    private final ConcurrentHashMap<String, byte[]> _headers;
+    private final Set<String> _typesReadFromSource;
+
+    private volatile boolean _isDirty;
+
+    private TypeHeaderIndex(
+        final File indexFile,
+        final String containerPath,
+        final long containerLength,
+        final long containerLastModified,
+        final ITypeLoader sourceTypeLoader) {
+
+        _indexFile = indexFile;
+        _containerPath = containerPath;
+        _containerLength = containerLength;
+        _containerLastModified = containerLastModified;
+        _sourceTypeLoader = sourceTypeLoader;
+        _headers = new ConcurrentHashMap<>();
+        _typesReadFromSource = ConcurrentHashMap.newKeySet();
+    }
+
+    /**
+     * Opens the index of a library container, creating an empty index if none exists or the
+     * container has changed since the index was written.
+     *
+     * @param indexDirectory the directory in which indexes are stored
+     * @param container the jar file, runtime image, or directory whose types are indexed
+     * @param sourceTypeLoader a type loader which reads types from {@code container}
+     */
+    public static TypeHeaderIndex open(final File indexDirectory, final File container, final ITypeLoader sourceTypeLoader) {
+        VerifyArgument.notNull(indexDirectory, "indexDirectory");
+        VerifyArgument.notNull(container, "container");
+        VerifyArgument.notNull(sourceTypeLoader, "sourceTypeLoader");
+
+        String containerPath;
+
+        try {
+            containerPath = container.getCanonicalPath();
+        }
+        catch (final IOException ignored) {
+            containerPath = container.getAbsolutePath();
+        }
+
+        final File indexFile = new File(
+            indexDirectory,
+            container.getName() + "-" + Integer.toHexString(containerPath.hashCode()) + ".idx"
+        );
+
+        final TypeHeaderIndex index = new TypeHeaderIndex(
+            indexFile,
+            containerPath,
+            container.length(),
+            container.lastModified(),
+            sourceTypeLoader
+        );
+
+        if (indexFile.exists()) {
+            try {
+                index.read();
+            }
+            catch (final IOException e) {
+                index._headers.clear();
+
+                if (LOG.isLoggable(Level.FINE)) {
+                    LOG.fine("Discarding unreadable type header index " + indexFile + ": " + e.getMessage());
+                }
+            }
+        }
+
+        return index;
+    }
+
+    /**
+     * Opens the index of the Java runtime hosting the decompiler, i.e., the {@code lib/modules}
+     * image on JDK 9 and later, or {@code lib/rt.jar} on earlier versions.
+     *
+     * @param indexDirectory the directory in which indexes are stored
+     */
+    public static TypeHeaderIndex openRuntimeIndex(final File indexDirectory) {
+        final File javaHome = new File(System.getProperty("java.home"));
+        final File modules = new File(javaHome, "lib" + File.separator + "modules");
+        final File runtimeJar = new File(javaHome, "lib" + File.separator + "rt.jar");
+
+        final ClassLoader systemLoader = ClassLoader.getSystemClassLoader();
+        final ClassLoader platformLoader = systemLoader.getParent();
+
+        //
+        // The parent of the system class loader only sees runtime types, which keeps the
+        // application class path out of the index.
+        //
+
+        return open(
+            indexDirectory,
+            modules.exists() ? modules : runtimeJar.exists() ? runtimeJar : javaHome,
+            new ClasspathTypeLoader(platformLoader != null ? platformLoader : systemLoader)
+        );
+    }
+
+    public final ITypeLoader getSourceTypeLoader() {
+        return _sourceTypeLoader;
+    }
+
+    public final File getIndexFile() {
+        return _indexFile;
+    }
+
+    public final int size() {
+        return _headers.size();
+    }
+
+    /**
+     * Loads the stripped class file of a type indexed by an earlier run, or else the full class
+     * file from the index's container, adding the type to the index if it is found.
+     */
+    @Override
+    public boolean tryLoadType(final String internalName, final Buffer buffer) {
+        if (_typesReadFromSource.contains(internalName)) {
+            //
+            // Types read from the container this run were read with their method bodies, and their
+            // bodies are read lazily through this same loader, so they must get the full class file
+            // again rather than the stripped one.
+            //
+            return _sourceTypeLoader.tryLoadType(internalName, buffer);
+        }
+
+        final byte[] header = _headers.get(internalName);
+
+        if (header != null) {
+            //
+            // Parse the header in place; the read-only view protects our copy if the buffer is written to.
+            //
+            buffer.wrap(ByteBuffer.wrap(header).asReadOnlyBuffer());
+            return true;
+        }
+
+        if (!_sourceTypeLoader.tryLoadType(internalName, buffer)) {
+            return false;
+        }
+
+        _typesReadFromSource.add(internalName);
+
+        final int position = buffer.position();
+
+        try {
+            if (_headers.putIfAbsent(internalName, stripClassFile(buffer)) == null) {
+                _isDirty = true;
+            }
+        }
+        catch (final RuntimeException e) {
+            //
+            // We can still use the type; we just can't index it.
+            //
+            if (LOG.isLoggable(Level.FINE)) {
+                LOG.fine("Could not index type " + internalName + ": " + e.getMessage());
+            }
+        }
+
+        buffer.position(position);
+        return true;
+    }
+
+    /**
+     * Writes the index to disk if any types have been added since it was opened.
+     */
+    public synchronized void save() throws IOException {
+        if (!_isDirty) {
+            return;
+        }
+
+        final Path directory = _indexFile.getAbsoluteFile().getParentFile().toPath();
+
+        Files.createDirectories(directory);
+
+        //
+        // Several processes may share an index directory, so write to a temporary file of our own,
+        // and move it into place in one step; readers see either the old index or the new one.
+        //
+
+        final Path tempFile = Files.createTempFile(directory, _indexFile.getName(), ".tmp");
+
+        try {
+            write(tempFile.toFile());
+
+            //
+            // Temporary files are private to their owner; the index may be shared by other users.
+            //
+            tempFile.toFile().setReadable(true, false);
+
+            try {
+                Files.move(tempFile, _indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (final AtomicMoveNotSupportedException ignored) {
+                Files.move(tempFile, _indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        finally {
+            Files.deleteIfExists(tempFile);
+        }
+
+        _isDirty = false;
+    }
+
+    private void write(final File file) throws IOException {
+        try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(INDEX_MAGIC);
+            out.writeInt(INDEX_VERSION);
+            out.writeUTF(_containerPath);
+            out.writeLong(_containerLength);
+            out.writeLong(_containerLastModified);
+            out.writeInt(_headers.size());
+
+            for (final Map.Entry<String, byte[]> entry : _headers.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeInt(entry.getValue().length);
+                out.write(entry.getValue());
+            }
+        }
+    }
+
+    private void read() throws IOException {
+        try (final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(_indexFile)))) {
+            if (in.readInt() != INDEX_MAGIC || in.readInt() != INDEX_VERSION) {
+                return;
+            }
+
+            if (!_containerPath.equals(in.readUTF()) ||
+                in.readLong() != _containerLength ||
+                in.readLong() != _containerLastModified) {
+
+                //
+                // The container has changed; start over with an empty index.
+                //
+                return;
+            }
+
+            for (int i = 0, n = in.readInt(); i < n; i++) {
+                final String internalName = in.readUTF();
+                final byte[] header = new byte[in.readInt()];
+
+                in.readFully(header);
+                _headers.put(internalName, header);
+            }
+        }
+    }
+
+    // <editor-fold defaultstate="collapsed" desc="Class File Stripping">
+
+    /**
+     * Copies a class file, replacing the {@code Code} attribute of each method with a stub
+     * having no instructions and no exception table.  Only the local variable tables and line
+     * number tables of the original attribute are retained, as they supply parameter names and
+     * the source order of nested types.  The constant pool is copied verbatim, so constant
+     * indexes in the stripped file match the original.
+     */
+    static byte[] stripClassFile(final Buffer input) {
+        input.position(0);
+
+        if ((input.readInt() & 0xFFFFFFFFL) != ClassFileReader.MAGIC) {
+            throw new IllegalStateException("Wrong magic number.");
+        }
+
+        input.readUnsignedShort(); // minor version
+        input.readUnsignedShort(); // major version
+
+        final ConstantPool constantPool = ConstantPool.read(input);
+
+        input.advance(6); // access flags, this class, base class
+        input.advance(input.readUnsignedShort() * 2);
+
+        for (int i = 0, fieldCount = input.readUnsignedShort(); i < fieldCount; i++) {
+            input.advance(6);
+            skipAttributes(input);
+        }
+
+        final Buffer output = new Buffer(input.size());
+        final int methodsStart = input.position();
+
+        output.putBuffer(input, 0, methodsStart);
+
+        final int methodCount = input.readUnsignedShort();
+
+        output.writeShort(methodCount);
+
+        for (int i = 0; i < methodCount; i++) {
+            output.putBuffer(input, input.position(), 6);
+            input.advance(6);
+
+            final int attributeCount = input.readUnsignedShort();
+
+            output.writeShort(attributeCount);
+
+            for (int j = 0; j < attributeCount; j++) {
+                final int nameIndex = input.readUnsignedShort();
+                final int length = input.readInt();
+                final int end = input.position() + length;
+
+                output.writeShort(nameIndex);
+
+                if (AttributeNames.Code.equals(constantPool.lookupUtf8Constant(nameIndex))) {
+                    writeCodeStub(constantPool, input, output);
+                }
+                else {
+                    output.writeInt(length);
+                    output.putBuffer(input, input.position(), length);
+                }
+
+                input.position(end);
+            }
+        }
+
+        final int remaining = input.size() - input.position();
+
+        output.putBuffer(input, input.position(), remaining);
+
+        final byte[] result = new byte[output.position()];
+
+        System.arraycopy(output.array(), 0, result, 0, result.length);
+
+        return result;
+    }
+
+    private static void writeCodeStub(final ConstantPool constantPool, final Buffer input, final Buffer output) {
+        final int lengthPosition = output.position();
+
+        output.writeInt(0);
+
+        final int start = output.position();
+
+        output.writeShort(input.readUnsignedShort()); // max stack
+        output.writeShort(input.readUnsignedShort()); // max locals
+        output.writeInt(0);                           // code length
+
+        input.advance(input.readInt());
+        input.advance(input.readUnsignedShort() * 8);
+
+        output.writeShort(0);                         // exception table length
+
+        final int countPosition = output.position();
+        final int attributeCount = input.readUnsignedShort();
+
+        int retainedCount = 0;
+
+        output.writeShort(0);
+
+        for (int i = 0; i < attributeCount; i++) {
+            final int nameIndex = input.readUnsignedShort();
+            final int length = input.readInt();
+            final String name = constantPool.lookupUtf8Constant(nameIndex);
+
+            if (AttributeNames.LocalVariableTable.equals(name) ||
+                AttributeNames.LocalVariableTypeTable.equals(name) ||
+                AttributeNames.LineNumberTable.equals(name)) {
+
+                output.writeShort(nameIndex);
+                output.writeInt(length);
+                output.putBuffer(input, input.position(), length);
+                ++retainedCount;
+            }
+
+            input.advance(length);
+        }
+
+        final int end = output.position();
+
+        output.position(countPosition);
+        output.writeShort(retainedCount);
+        output.position(lengthPosition);
+        output.writeInt(end - start);
+        output.position(end);
+    }
+
+    private static void skipAttributes(final Buffer b) {
+        for (int i = 0, attributeCount = b.readUnsignedShort(); i < attributeCount; i++) {
+            b.readUnsignedShort(); // name
+            b.advance(b.readInt());
+        }
+    }
+
+    // </editor-fold>
+}
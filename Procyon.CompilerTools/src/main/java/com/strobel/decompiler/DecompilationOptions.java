@@ -16,9 +16,15 @@
 
 package com.strobel.decompiler;
 
+import com.strobel.decompiler.ast.AstOptimizationProfiler;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
 public class DecompilationOptions {
     private boolean _fullDecompilation = true;
     private DecompilerSettings _settings;
+    private AtomicBoolean _canceled;
+    private AstOptimizationProfiler _optimizationProfiler;
 
     public final boolean isFullDecompilation() {
         return _fullDecompilation;
@@ -38,4 +44,29 @@ public class DecompilationOptions {
     public final void setSettings(final DecompilerSettings settings) {
         _settings = settings;
     }
+
+    public final AtomicBoolean getCanceled() {
+        return _canceled;
+    }
+
+    /**
+     * Sets a flag which, once raised, causes decompilation to stop with a
+     * {@link java.util.concurrent.CancellationException} at the next method boundary
+     * or optimization step.  The flag may be raised from any thread.
+     */
+    public final void setCanceled(final AtomicBoolean canceled) {
+        _canceled = canceled;
+    }
+
+    public final AstOptimizationProfiler getOptimizationProfiler() {
+        return _optimizationProfiler;
+    }
+
+    /**
+     * Sets a profiler which records the time spent in each bytecode AST optimization step of
+     * every method decompiled with these options.
+     */
+    public final void setOptimizationProfiler(final AstOptimizationProfiler optimizationProfiler) {
+        _optimizationProfiler = optimizationProfiler;
+    }
 }
@@ -22,18 +22,28 @@ import com.strobel.assembler.metadata.MethodDefinition;
 import com.strobel.assembler.metadata.TypeDefinition;
 import com.strobel.componentmodel.UserDataStoreBase;
 import com.strobel.core.BooleanBox;
+import com.strobel.core.VerifyArgument;
+import com.strobel.decompiler.ast.AstOptimizationProfiler;
 
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public final class DecompilerContext extends UserDataStoreBase {
     private final List<String> _reservedVariableNames = new Collection<>();
     private final Set<IMemberDefinition> _forcedVisibleMembers = new LinkedHashSet<>();
     private DecompilerSettings _settings = new DecompilerSettings();
     private BooleanBox _isCanceled;
+    private AtomicBoolean _cancellationToken;
+    private AstOptimizationProfiler _optimizationProfiler;
     private TypeDefinition _currentType;
     private MethodDefinition _currentMethod;
+    private MethodDefinition _timedMethod;
+    private long _methodTimeout;
+    private long _methodDeadline;
 
     public DecompilerContext() {
     }
@@ -58,6 +68,75 @@ public final class DecompilerContext extends UserDataStoreBase {
         _isCanceled = canceled;
     }
 
+    public AtomicBoolean getCancellationToken() {
+        return _cancellationToken;
+    }
+
+    /**
+     * Sets a flag which another thread may raise to cancel decompilation.  Unlike the flag set
+     * by {@link #setCanceled(BooleanBox)}, it is always seen by the decompiling thread.
+     */
+    public void setCancellationToken(final AtomicBoolean cancellationToken) {
+        _cancellationToken = cancellationToken;
+    }
+
+    public boolean isCanceled() {
+        final BooleanBox canceled = _isCanceled;
+        final AtomicBoolean cancellationToken = _cancellationToken;
+
+        return canceled != null && canceled.value ||
+               cancellationToken != null && cancellationToken.get();
+    }
+
+    /**
+     * @throws CancellationException if cancellation has been requested
+     * @throws MethodTimeoutException if the method being timed has used up its time
+     */
+    public void throwIfCanceled() {
+        if (isCanceled()) {
+            throw new CancellationException();
+        }
+
+        if (_timedMethod != null && System.nanoTime() - _methodDeadline >= 0L) {
+            throw new MethodTimeoutException(_timedMethod, _methodTimeout);
+        }
+    }
+
+    /**
+     * Starts timing the body of {@code method} against the settings' method timeout, unless there
+     * is no timeout or another method is already being timed; the body of a lambda or local class
+     * decompiled while building an enclosing method counts against the enclosing method's time.
+     *
+     * @return {@code true} if the caller started the timer, and must stop it
+     */
+    public boolean startMethodTimer(final MethodDefinition method) {
+        VerifyArgument.notNull(method, "method");
+
+        final long timeout = _settings != null ? _settings.getMethodTimeout() : 0L;
+
+        if (timeout <= 0L || _timedMethod != null) {
+            return false;
+        }
+
+        _timedMethod = method;
+        _methodTimeout = timeout;
+        _methodDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+
+        return true;
+    }
+
+    public void stopMethodTimer() {
+        _timedMethod = null;
+    }
+
+    public AstOptimizationProfiler getOptimizationProfiler() {
+        return _optimizationProfiler;
+    }
+
+    public void setOptimizationProfiler(final AstOptimizationProfiler optimizationProfiler) {
+        _optimizationProfiler = optimizationProfiler;
+    }
+
     public TypeDefinition getCurrentType() {
         return _currentType;
     }
@@ -45,6 +45,7 @@ public class DecompilerSettings {
     private String _outputDirectory;
     private boolean _showDebugLineNumbers;
     private boolean _simplifyMemberReferences;
+    private long _methodTimeout;
 
     public DecompilerSettings() {
     }
@@ -221,6 +222,19 @@ public class DecompilerSettings {
         _forceFullyQualifiedReferences = forceFullyQualifiedReferences;
     }
 
+    public final long getMethodTimeout() {
+        return _methodTimeout;
+    }
+
+    /**
+     * Sets the number of milliseconds the decompiler may spend on the body of a single method
+     * (including any lambdas and local classes decompiled along with it).  A method which runs
+     * out of time is written as bytecode instead.  A value of zero or less means no limit.
+     */
+    public final void setMethodTimeout(final long methodTimeout) {
+        _methodTimeout = methodTimeout;
+    }
+
     public static DecompilerSettings javaDefaults() {
         final DecompilerSettings settings = new DecompilerSettings();
         settings.setJavaFormattingOptions(JavaFormattingOptions.createDefault());
@@ -0,0 +1,44 @@
+/*
+ * MethodTimeoutException.java
+ *
+ * Copyright (c) 2013 Mike Strobel
+ *
+ * This source code is subject to terms and conditions of the Apache License, Version 2.0.
+ * A copy of the license can be found in the License.html file at the root of this distribution.
+ * By using this source code in any fashion, you are agreeing to be bound by the terms of the
+ * Apache License, Version 2.0.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.strobel.decompiler;
+
+import com.strobel.assembler.metadata.MethodDefinition;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * Thrown when decompiling a method body takes longer than {@link DecompilerSettings#getMethodTimeout()}.
+ * Being a {@link CancellationException}, it passes through everything which lets cancellation
+ * through, up to the point where the timed method's body is being built.
+ */
+public class MethodTimeoutException extends CancellationException {
+    private static final long serialVersionUID = 4207551395462893107L;
+
+    private final transient MethodDefinition _method;
+    private final long _timeout;
+
+    public MethodTimeoutException(final MethodDefinition method, final long timeout) {
+        super("Decompiling " + (method != null ? method.getFullName() : "a method") + " took longer than " + timeout + " ms.");
+        _method = method;
+        _timeout = timeout;
+    }
+
+    public final MethodDefinition getMethod() {
+        return _method;
+    }
+
+    public final long getTimeout() {
+        return _timeout;
+    }
+}
@@ -0,0 +1,591 @@
+/*
+ * AstOptimizationProfiler.java
+ *
+ * Copyright (c) 2013 Mike Strobel
+ *
+ * This source code is subject to terms and conditions of the Apache License, Version 2.0.
+ * A copy of the license can be found in the License.html file at the root of this distribution.
+ * By using this source code in any fashion, you are agreeing to be bound by the terms of the
+ * Apache License, Version 2.0.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.strobel.decompiler.ast;
+
+import com.strobel.assembler.metadata.MethodDefinition;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records how long each {@link AstOptimizationStep} takes, for every method optimized by
+ * {@link AstOptimizer} while the profiler is attached to a
+ * {@link com.strobel.decompiler.DecompilerContext}.  For each method, the profiler measures the
+ * time spent in each step, the number of rounds of the block-level optimization loop, and,
+ * optionally, the number of bytes the optimizing thread allocated.  Totals per step are kept
+ * across all methods.
+ * <p>
+ * Method profiles are not kept beyond the slowest few the profiler was asked to retain, so a
+ * profiler may stay attached for any number of methods.  To see every method, start writing
+ * the profile before decompiling; each method is then written out as soon as it finishes.
+ * <p>
+ * One profiler may be shared by several decompiling threads.  Times are inclusive:  when a step
+ * optimizes the body of a lambda, the lambda is profiled as a method of its own, and its time is
+ * also counted toward the enclosing step.
+ */
+public final class AstOptimizationProfiler {
+    private final static AstOptimizationStep[] STEPS = AstOptimizationStep.values();
+
+    private final static Comparator<MethodProfile> FASTEST_FIRST = new Comparator<MethodProfile>() {
+        @Override
+        public int compare(final MethodProfile o1, final MethodProfile o2) {
+            return Long.compare(o1.getElapsedTime(), o2.getElapsedTime());
+        }
+    };
+
+    private final AllocationCounter _allocationCounter;
+    private final LongAdder[] _stepTimes;
+    private final LongAdder[] _stepInvocations;
+    private final LongAdder[] _stepAllocations;
+
+    //
+    // The slowest methods so far, fastest first, so the next method to give way is at the head.
+    // Guarded by 'this', as is the output.
+    //
+
+    private final int _slowestMethodCapacity;
+    private final PriorityQueue<MethodProfile> _slowestMethods;
+
+    private Appendable _output;
+    private boolean _isJsonOutput;
+    private int _outputMethodCount;
+    private IOException _outputError;
+
+    public AstOptimizationProfiler() {
+        this(false, 0);
+    }
+
+    public AstOptimizationProfiler(final boolean trackAllocations) {
+        this(trackAllocations, 0);
+    }
+
+    /**
+     * Creates a profiler which retains the profiles of the {@code slowestMethodCount} slowest
+     * methods, and which, if {@code trackAllocations} is set and the runtime supports it, also
+     * measures the bytes allocated by each step.
+     */
+    public AstOptimizationProfiler(final boolean trackAllocations, final int slowestMethodCount) {
+        _allocationCounter = trackAllocations ? AllocationCounter.create() : null;
+        _stepTimes = newCounters();
+        _stepInvocations = newCounters();
+        _stepAllocations = newCounters();
+        _slowestMethodCapacity = Math.max(slowestMethodCount, 0);
+        _slowestMethods = new PriorityQueue<>(Math.max(_slowestMethodCapacity, 1), FASTEST_FIRST);
+    }
+
+    public final boolean isAllocationTrackingEnabled() {
+        return _allocationCounter != null;
+    }
+
+    public final long getStepTime(final AstOptimizationStep step) {
+        return _stepTimes[step.ordinal()].sum();
+    }
+
+    public final long getStepInvocations(final AstOptimizationStep step) {
+        return _stepInvocations[step.ordinal()].sum();
+    }
+
+    /**
+     * Gets the bytes allocated by a step across all methods, or {@code -1} if allocations are
+     * not being tracked.
+     */
+    public final long getStepAllocatedBytes(final AstOptimizationStep step) {
+        return _allocationCounter != null ? _stepAllocations[step.ordinal()].sum() : -1L;
+    }
+
+    /**
+     * Gets the profiles of the {@code count} methods which took the longest to optimize,
+     * slowest first.  No more methods are available than the profiler was created to retain.
+     */
+    public final List<MethodProfile> getSlowestMethods(final int count) {
+        final List<MethodProfile> methods;
+
+        synchronized (this) {
+            methods = new ArrayList<>(_slowestMethods);
+        }
+
+        Collections.sort(methods, Collections.reverseOrder(FASTEST_FIRST));
+
+        return methods.size() > count ? new ArrayList<>(methods.subList(0, Math.max(count, 0))) : methods;
+    }
+
+    public final void reset() {
+        for (int i = 0; i < STEPS.length; i++) {
+            _stepTimes[i].reset();
+            _stepInvocations[i].reset();
+            _stepAllocations[i].reset();
+        }
+
+        synchronized (this) {
+            _slowestMethods.clear();
+        }
+    }
+
+    // <editor-fold defaultstate="collapsed" desc="Output">
+
+    /**
+     * Starts writing the profile as CSV:  one line per method, with the time in nanoseconds spent
+     * in each step, written as each method finishes.  Allocation columns are only written when
+     * allocations are being tracked.
+     */
+    public final synchronized void startCsv(final Appendable output) throws IOException {
+        final boolean allocations = isAllocationTrackingEnabled();
+
+        output.append("method,descriptor,time_ns,block_rounds,max_block_rounds");
+
+        if (allocations) {
+            output.append(",allocated_bytes");
+        }
+
+        for (final AstOptimizationStep step : STEPS) {
+            output.append(',').append(step.name()).append("_ns");
+        }
+
+        if (allocations) {
+            for (final AstOptimizationStep step : STEPS) {
+                output.append(',').append(step.name()).append("_bytes");
+            }
+        }
+
+        output.append('\n');
+
+        startOutput(output, false);
+    }
+
+    /**
+     * Starts writing the profile as JSON:  the profile of each method, written as each method
+     * finishes, followed by the totals for each step once the output is finished.  Steps a
+     * method never reached are left out of its profile.
+     */
+    public final synchronized void startJson(final Appendable output) throws IOException {
+        output.append("{\n  \"methods\": [");
+        startOutput(output, true);
+    }
+
+    /**
+     * Finishes the output started by {@link #startCsv} or {@link #startJson}.  Throws the first
+     * error which occurred while writing the profile of a method, if any.
+     */
+    public final synchronized void finishOutput() throws IOException {
+        final Appendable output = _output;
+        final IOException error = _outputError;
+
+        _output = null;
+        _outputError = null;
+
+        if (error != null) {
+            throw error;
+        }
+
+        if (output != null && _isJsonOutput) {
+            writeJsonStepTotals(output);
+        }
+    }
+
+    private void startOutput(final Appendable output, final boolean isJson) {
+        _output = output;
+        _isJsonOutput = isJson;
+        _outputMethodCount = 0;
+        _outputError = null;
+    }
+
+    private void writeMethod(final MethodProfile method) {
+        if (_output == null || _outputError != null) {
+            return;
+        }
+
+        try {
+            if (_isJsonOutput) {
+                writeJsonMethod(_output, method, _outputMethodCount == 0);
+            }
+            else {
+                writeCsvMethod(_output, method);
+            }
+            ++_outputMethodCount;
+        }
+        catch (final IOException e) {
+            _outputError = e;
+        }
+    }
+
+    private void writeCsvMethod(final Appendable output, final MethodProfile method) throws IOException {
+        final boolean allocations = isAllocationTrackingEnabled();
+
+        appendCsvValue(output, method.getMethodName()).append(',');
+        appendCsvValue(output, method.getDescriptor()).append(',');
+
+        output.append(String.valueOf(method.getElapsedTime())).append(',')
+              .append(String.valueOf(method.getBlockRounds())).append(',')
+              .append(String.valueOf(method.getMaxBlockRounds()));
+
+        if (allocations) {
+            output.append(',').append(String.valueOf(method.getAllocatedBytes()));
+        }
+
+        for (final AstOptimizationStep step : STEPS) {
+            output.append(',').append(String.valueOf(method.getStepTime(step)));
+        }
+
+        if (allocations) {
+            for (final AstOptimizationStep step : STEPS) {
+                output.append(',').append(String.valueOf(method.getStepAllocatedBytes(step)));
+            }
+        }
+
+        output.append('\n');
+    }
+
+    private void writeJsonMethod(final Appendable output, final MethodProfile method, final boolean first) throws IOException {
+        output.append(first ? "\n" : ",\n");
+        output.append("    { \"method\": ");
+        appendJsonString(output, method.getMethodName());
+        output.append(", \"descriptor\": ");
+        appendJsonString(output, method.getDescriptor());
+        output.append(", \"time_ns\": ").append(String.valueOf(method.getElapsedTime()));
+        output.append(", \"block_rounds\": ").append(String.valueOf(method.getBlockRounds()));
+        output.append(", \"max_block_rounds\": ").append(String.valueOf(method.getMaxBlockRounds()));
+
+        if (isAllocationTrackingEnabled()) {
+            output.append(", \"allocated_bytes\": ").append(String.valueOf(method.getAllocatedBytes()));
+        }
+
+        output.append(", \"steps\": {");
+
+        boolean firstStep = true;
+
+        for (final AstOptimizationStep step : STEPS) {
+            if (method.getStepInvocations(step) == 0) {
+                continue;
+            }
+
+            output.append(firstStep ? " " : ", ");
+            appendJsonString(output, step.name());
+            output.append(": ").append(String.valueOf(method.getStepTime(step)));
+            firstStep = false;
+        }
+
+        output.append(firstStep ? "} }" : " } }");
+    }
+
+    private void writeJsonStepTotals(final Appendable output) throws IOException {
+        final boolean allocations = isAllocationTrackingEnabled();
+
+        output.append("\n  ],\n  \"steps\": [");
+
+        boolean first = true;
+
+        for (final AstOptimizationStep step : STEPS) {
+            if (getStepInvocations(step) == 0) {
+                continue;
+            }
+
+            output.append(first ? "\n" : ",\n");
+            output.append("    { \"step\": ");
+            appendJsonString(output, step.name());
+            output.append(", \"invocations\": ").append(String.valueOf(getStepInvocations(step)));
+            output.append(", \"time_ns\": ").append(String.valueOf(getStepTime(step)));
+
+            if (allocations) {
+                output.append(", \"allocated_bytes\": ").append(String.valueOf(getStepAllocatedBytes(step)));
+            }
+
+            output.append(" }");
+            first = false;
+        }
+
+        output.append("\n  ]\n}\n");
+    }
+
+    private static Appendable appendCsvValue(final Appendable output, final String value) throws IOException {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0) {
+            return output.append(value);
+        }
+        return output.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+
+    private static void appendJsonString(final Appendable output, final String value) throws IOException {
+        output.append('"');
+
+        for (int i = 0, n = value.length(); i < n; i++) {
+            final char c = value.charAt(i);
+
+            if (c == '"' || c == '\\') {
+                output.append('\\').append(c);
+            }
+            else if (c < 0x20) {
+                output.append(String.format("\\u%04x", (int) c));
+            }
+            else {
+                output.append(c);
+            }
+        }
+
+        output.append('"');
+    }
+
+    // </editor-fold>
+
+    // <editor-fold defaultstate="collapsed" desc="Recording">
+
+    final MethodProfile beginMethod(final MethodDefinition method) {
+        return new MethodProfile(
+            method != null ? method.getFullName() : "<unknown>",
+            method != null ? method.getErasedSignature() : "",
+            this
+        );
+    }
+
+    private long allocatedBytes() {
+        return _allocationCounter.getCurrentThreadAllocatedBytes();
+    }
+
+    private void record(final MethodProfile method) {
+        for (int i = 0; i < STEPS.length; i++) {
+            if (method._stepInvocations[i] == 0) {
+                continue;
+            }
+
+            _stepTimes[i].add(method._stepTimes[i]);
+            _stepInvocations[i].add(method._stepInvocations[i]);
+
+            if (method._stepAllocations != null) {
+                _stepAllocations[i].add(method._stepAllocations[i]);
+            }
+        }
+
+        synchronized (this) {
+            if (_slowestMethodCapacity > 0) {
+                if (_slowestMethods.size() < _slowestMethodCapacity) {
+                    _slowestMethods.add(method);
+                }
+                else if (FASTEST_FIRST.compare(_slowestMethods.peek(), method) < 0) {
+                    _slowestMethods.poll();
+                    _slowestMethods.add(method);
+                }
+            }
+
+            writeMethod(method);
+        }
+    }
+
+    private static LongAdder[] newCounters() {
+        final LongAdder[] counters = new LongAdder[STEPS.length];
+
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = new LongAdder();
+        }
+
+        return counters;
+    }
+
+    // </editor-fold>
+
+    // <editor-fold defaultstate="collapsed" desc="AllocationCounter Class">
+
+    /**
+     * Reads the bytes allocated by the current thread through the HotSpot extension of
+     * {@link java.lang.management.ThreadMXBean}.  The extension is looked up reflectively, so
+     * the profiler still loads on runtimes which do not provide it.
+     */
+    private final static class AllocationCounter {
+        private final Object _threadBean;
+        private final Method _getThreadAllocatedBytes;
+
+        private AllocationCounter(final Object threadBean, final Method getThreadAllocatedBytes) {
+            _threadBean = threadBean;
+            _getThreadAllocatedBytes = getThreadAllocatedBytes;
+        }
+
+        static AllocationCounter create() {
+            try {
+                final Class<?> beanType = Class.forName("com.sun.management.ThreadMXBean");
+                final Object threadBean = ManagementFactory.getThreadMXBean();
+
+                if (!beanType.isInstance(threadBean) ||
+                    !(Boolean) beanType.getMethod("isThreadAllocatedMemorySupported").invoke(threadBean)) {
+
+                    return null;
+                }
+
+                beanType.getMethod("setThreadAllocatedMemoryEnabled", boolean.class).invoke(threadBean, true);
+
+                return new AllocationCounter(threadBean, beanType.getMethod("getThreadAllocatedBytes", long.class));
+            }
+            catch (final Throwable ignored) {
+                //
+                // Not a HotSpot-compatible runtime; allocations simply go untracked.
+                //
+                return null;
+            }
+        }
+
+        long getCurrentThreadAllocatedBytes() {
+            try {
+                return (Long) _getThreadAllocatedBytes.invoke(_threadBean, Thread.currentThread().getId());
+            }
+            catch (final ReflectiveOperationException e) {
+                return 0L;
+            }
+        }
+    }
+
+    // </editor-fold>
+
+    // <editor-fold defaultstate="collapsed" desc="MethodProfile Class">
+
+    /**
+     * The profile of a single optimization of one method body.  A profile is recorded by the
+     * thread optimizing the method, and is only published to the profiler once it is complete.
+     */
+    public final static class MethodProfile {
+        private final String _methodName;
+        private final String _descriptor;
+        private final AstOptimizationProfiler _profiler;
+        private final long[] _stepTimes;
+        private final int[] _stepInvocations;
+        private final long[] _stepAllocations;
+        private final long _startTime;
+        private final long _startAllocation;
+
+        private AstOptimizationStep _currentStep;
+        private long _stepStartTime;
+        private long _stepStartAllocation;
+        private long _elapsedTime;
+        private long _allocatedBytes = -1L;
+        private int _blockRounds;
+        private int _maxBlockRounds;
+
+        private MethodProfile(final String methodName, final String descriptor, final AstOptimizationProfiler profiler) {
+            _methodName = methodName;
+            _descriptor = descriptor;
+            _profiler = profiler;
+            _stepTimes = new long[STEPS.length];
+            _stepInvocations = new int[STEPS.length];
+            _stepAllocations = profiler.isAllocationTrackingEnabled() ? new long[STEPS.length] : null;
+            _startAllocation = _stepAllocations != null ? profiler.allocatedBytes() : 0L;
+            _startTime = System.nanoTime();
+        }
+
+        public final String getMethodName() {
+            return _methodName;
+        }
+
+        public final String getDescriptor() {
+            return _descriptor;
+        }
+
+        /**
+         * Gets the time spent optimizing the method, in nanoseconds.
+         */
+        public final long getElapsedTime() {
+            return _elapsedTime;
+        }
+
+        /**
+         * Gets the bytes allocated while optimizing the method, or {@code -1} if allocations
+         * were not tracked.
+         */
+        public final long getAllocatedBytes() {
+            return _allocatedBytes;
+        }
+
+        /**
+         * Gets the total number of rounds the block-level optimizations took to reach a fixed
+         * point, summed over all blocks of the method.
+         */
+        public final int getBlockRounds() {
+            return _blockRounds;
+        }
+
+        /**
+         * Gets the largest number of rounds any single block took to reach a fixed point.
+         */
+        public final int getMaxBlockRounds() {
+            return _maxBlockRounds;
+        }
+
+        public final long getStepTime(final AstOptimizationStep step) {
+            return _stepTimes[step.ordinal()];
+        }
+
+        public final int getStepInvocations(final AstOptimizationStep step) {
+            return _stepInvocations[step.ordinal()];
+        }
+
+        public final long getStepAllocatedBytes(final AstOptimizationStep step) {
+            return _stepAllocations != null ? _stepAllocations[step.ordinal()] : -1L;
+        }
+
+        final void enterStep(final AstOptimizationStep step) {
+            final long now = System.nanoTime();
+            final long allocation = _stepAllocations != null ? _profiler.allocatedBytes() : 0L;
+
+            exitStep(now, allocation);
+
+            _currentStep = step;
+            _stepStartTime = now;
+            _stepStartAllocation = allocation;
+            _stepInvocations[step.ordinal()]++;
+        }
+
+        final void recordBlockRounds(final int rounds) {
+            _blockRounds += rounds;
+            _maxBlockRounds = Math.max(_maxBlockRounds, rounds);
+        }
+
+        final void end() {
+            final long now = System.nanoTime();
+            final long allocation = _stepAllocations != null ? _profiler.allocatedBytes() : 0L;
+
+            exitStep(now, allocation);
+
+            _currentStep = null;
+            _elapsedTime = now - _startTime;
+
+            if (_stepAllocations != null) {
+                _allocatedBytes = allocation - _startAllocation;
+            }
+
+            _profiler.record(this);
+        }
+
+        private void exitStep(final long now, final long allocation) {
+            if (_currentStep == null) {
+                return;
+            }
+
+            final int index = _currentStep.ordinal();
+
+            _stepTimes[index] += now - _stepStartTime;
+
+            if (_stepAllocations != null) {
+                _stepAllocations[index] += allocation - _stepStartAllocation;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return _methodName + ":" + _descriptor;
+        }
+    }
+
+    // </editor-fold>
+}
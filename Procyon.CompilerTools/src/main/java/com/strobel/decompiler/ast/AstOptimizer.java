@@ -46,9 +46,32 @@ public final class AstOptimizer {
         VerifyArgument.notNull(context, "context");
         VerifyArgument.notNull(method, "method");
 
+        final AstOptimizationProfiler profiler = context.getOptimizationProfiler();
+
+        if (profiler == null) {
+            optimizeCore(context, method, abortBeforeStep, null);
+            return;
+        }
+
+        final AstOptimizationProfiler.MethodProfile profile = profiler.beginMethod(context.getCurrentMethod());
+
+        try {
+            optimizeCore(context, method, abortBeforeStep, profile);
+        }
+        finally {
+            profile.end();
+        }
+    }
+
+    private static void optimizeCore(
+        final DecompilerContext context,
+        final Block method,
+        final AstOptimizationStep abortBeforeStep,
+        final AstOptimizationProfiler.MethodProfile profile) {
+
         LOG.fine("Beginning bytecode AST optimization...");
 
-        if (!shouldPerformStep(abortBeforeStep, AstOptimizationStep.RemoveRedundantCode)) {
+        if (!shouldPerformStep(context, profile, abortBeforeStep, AstOptimizationStep.RemoveRedundantCode)) {
             return;
         }
 
@@ -56,7 +79,7 @@ public final class AstOptimizer {
 
         removeRedundantCode(method, context.getSettings());
 
-        if (!shouldPerformStep(abortBeforeStep, AstOptimizationStep.ReduceBranchInstructionSet)) {
+        if (!shouldPerformStep(context, profile, abortBeforeStep, AstOptimizationStep.ReduceBranchInstructionSet)) {
             return;
         }
 
@@ -66,7 +89,7 @@ public final class AstOptimizer {
             reduceBranchInstructionSet(block);
         }
 
-        if (!shouldPerformStep(abortBeforeStep, AstOptimizationStep.InlineVariables)) {
+        if (!shouldPerformStep(context, profile, abortBeforeStep, AstOptimizationStep.InlineVariables)) {
             return;
         }
 
@@ -76,19 +99,19 @@ public final class AstOptimizer {
             inliningPhase1.analyzeMethod();
         }
 
-        if (!shouldPerformStep(abortBeforeStep, AstOptimizationStep.CopyPropagation)) {
+        if (!shouldPerformStep(context, profile, abortBeforeStep, AstOptimizationStep.CopyPropagation)) {
             return;
         }
 
         inliningPhase1.copyPropagation();
 
-        if (!shouldPerformStep(abortBeforeStep, AstOptimizationStep.RewriteFinallyBlocks)) {
+        if (!shouldPerformStep(context, profile, abortBeforeStep, AstOptimizationStep.RewriteFinallyBlocks)) {
             return;
         }
 
         rewriteFinallyBlocks(method);
 
-        if (!shouldPerformStep(abortBeforeStep, AstOptimizationStep.SplitToMovableBlocks)) {
+        if (!shouldPerformStep(context, profile, abortBeforeStep, AstOptimizationStep.SplitToMovableBlocks)) {
             return;
         }
 
@@ -96,13 +119,13 @@ public final class AstOptimizer {
             optimizer.splitToMovableBlocks(block);
         }
 
-        if (!shouldPerformStep(abortBeforeStep, AstOptimizationStep.RemoveUnreachableBlocks)) {
+        if (!shouldPerformStep(context, profile, abortBeforeStep, AstOptimizationStep.RemoveUnreachableBlocks)) {
             return;
         }
 
         removeUnreachableBlocks(method);
 
-        if (!shouldPerformStep(abortBeforeStep, AstOptimizationStep.TypeInference)) {
+        if (!shouldPerformStep(context, profile, abortBeforeStep, AstOptimizationStep.TypeInference)) {
             return;
         }
 
@@ -115,133 +138,171 @@ public final class AstOptimizer {
         int blockNumber = 0;
 
         for (final Block block : method.getSelfAndChildrenRecursive(Block.class)) {
+            final BlockWorklist worklist = new BlockWorklist(method);
+
             boolean modified;
             int blockRound = 0;
 
             ++blockNumber;
 
             do {
+                ++blockRound;
+
                 if (LOG.isLoggable(Level.FINER)) {
-                    LOG.finer("Optimizing block #" + blockNumber + ", round " + ++blockRound + "...");
+                    LOG.finer("Optimizing block #" + blockNumber + ", round " + blockRound + "...");
                 }
 
                 modified = false;
 
-                if (!shouldPerformStep(abortBeforeStep, AstOptimizationStep.RemoveInnerClassInitSecurityChecks)) {
+                if (!shouldPerformStep(context, profile, abortBeforeStep, AstOptimizationStep.RemoveInnerClassInitSecurityChecks)) {
                     done = true;
                     break;
                 }
 
-                modified |= runOptimization(block, new RemoveInnerClassInitSecurityChecksOptimization(context, method));
+                if (worklist.enter(AstOptimizationStep.RemoveInnerClassInitSecurityChecks)) {
+                    modified |= worklist.update(runOptimization(block, new RemoveInnerClassInitSecurityChecksOptimization(context, method)));
+                }
 
-                if (!shouldPerformStep(abortBeforeStep, AstOptimizationStep.PreProcessShortCircuitAssignments)) {
+                if (!shouldPerformStep(context, profile, abortBeforeStep, AstOptimizationStep.PreProcessShortCircuitAssignments)) {
                     done = true;
                     break;
                 }
 
-                modified |= runOptimization(block, new PreProcessShortCircuitAssignmentsOptimization(context, method));
+                if (worklist.enter(AstOptimizationStep.PreProcessShortCircuitAssignments)) {
+                    modified |= worklist.update(runOptimization(block, new PreProcessShortCircuitAssignmentsOptimization(context, method, worklist.labels())));
+                }
 
-                if (!shouldPerformStep(abortBeforeStep, AstOptimizationStep.SimplifyShortCircuit)) {
+                if (!shouldPerformStep(context, profile, abortBeforeStep, AstOptimizationStep.SimplifyShortCircuit)) {
                     done = true;
                     break;
                 }
 
-                modified |= runOptimization(block, new SimplifyShortCircuitOptimization(context, method));
+                if (worklist.enter(AstOptimizationStep.SimplifyShortCircuit)) {
+                    modified |= worklist.update(runOptimization(block, new SimplifyShortCircuitOptimization(context, method, worklist.labels())));
+                }
 
-                if (!shouldPerformStep(abortBeforeStep, AstOptimizationStep.JoinBranchConditions)) {
+                if (!shouldPerformStep(context, profile, abortBeforeStep, AstOptimizationStep.JoinBranchConditions)) {
                     done = true;
                     break;
                 }
 
-                modified |= runOptimization(block, new JoinBranchConditionsOptimization(context, method));
+                if (worklist.enter(AstOptimizationStep.JoinBranchConditions)) {
+                    modified |= worklist.update(runOptimization(block, new JoinBranchConditionsOptimization(context, method, worklist.labels())));
+                }
 
-                if (!shouldPerformStep(abortBeforeStep, AstOptimizationStep.SimplifyTernaryOperator)) {
+                if (!shouldPerformStep(context, profile, abortBeforeStep, AstOptimizationStep.SimplifyTernaryOperator)) {
                     done = true;
                     break;
                 }
 
-                modified |= runOptimization(block, new SimplifyTernaryOperatorOptimization(context, method));
-                modified |= runOptimization(block, new SimplifyTernaryOperatorRoundTwoOptimization(context, method));
+                if (worklist.enter(AstOptimizationStep.SimplifyTernaryOperator)) {
+                    modified |= worklist.update(runOptimization(block, new SimplifyTernaryOperatorOptimization(context, method, worklist.labels())));
+                    modified |= worklist.update(runOptimization(block, new SimplifyTernaryOperatorRoundTwoOptimization(context, method)));
+                }
 
-                if (!shouldPerformStep(abortBeforeStep, AstOptimizationStep.JoinBasicBlocks)) {
+                if (!shouldPerformStep(context, profile, abortBeforeStep, AstOptimizationStep.JoinBasicBlocks)) {
                     done = true;
                     break;
                 }
 
-                modified |= runOptimization(block, new JoinBasicBlocksOptimization(context, method));
+                if (worklist.enter(AstOptimizationStep.JoinBasicBlocks)) {
+                    modified |= worklist.update(runOptimization(block, new JoinBasicBlocksOptimization(context, method, worklist.labels())));
+                }
 
-                if (!shouldPerformStep(abortBeforeStep, AstOptimizationStep.SimplifyLogicalNot)) {
+                if (!shouldPerformStep(context, profile, abortBeforeStep, AstOptimizationStep.SimplifyLogicalNot)) {
                     done = true;
                     break;
                 }
 
-                modified |= runOptimization(block, new SimplifyLogicalNotOptimization(context, method));
+                if (worklist.enter(AstOptimizationStep.SimplifyLogicalNot)) {
+                    modified |= worklist.update(runOptimization(block, new SimplifyLogicalNotOptimization(context, method)));
+                }
 
-                if (!shouldPerformStep(abortBeforeStep, AstOptimizationStep.TransformObjectInitializers)) {
+                if (!shouldPerformStep(context, profile, abortBeforeStep, AstOptimizationStep.TransformObjectInitializers)) {
                     done = true;
                     break;
                 }
 
-                modified |= runOptimization(block, new TransformObjectInitializersOptimization(context, method));
+                if (worklist.enter(AstOptimizationStep.TransformObjectInitializers)) {
+                    modified |= worklist.update(runOptimization(block, new TransformObjectInitializersOptimization(context, method)));
+                }
 
-                if (!shouldPerformStep(abortBeforeStep, AstOptimizationStep.TransformArrayInitializers)) {
+                if (!shouldPerformStep(context, profile, abortBeforeStep, AstOptimizationStep.TransformArrayInitializers)) {
                     done = true;
                     break;
                 }
 
-                modified |= new Inlining(context, method, true).inlineAllInBlock(block);
-                modified |= runOptimization(block, new TransformArrayInitializersOptimization(context, method));
+                if (worklist.enter(AstOptimizationStep.TransformArrayInitializers)) {
+                    modified |= worklist.update(new Inlining(context, method, true).inlineAllInBlock(block));
+                    modified |= worklist.update(runOptimization(block, new TransformArrayInitializersOptimization(context, method)));
+                }
 
-                if (!shouldPerformStep(abortBeforeStep, AstOptimizationStep.IntroducePostIncrement)) {
+                if (!shouldPerformStep(context, profile, abortBeforeStep, AstOptimizationStep.IntroducePostIncrement)) {
                     done = true;
                     break;
                 }
 
-                modified |= runOptimization(block, new IntroducePostIncrementOptimization(context, method));
+                if (worklist.enter(AstOptimizationStep.IntroducePostIncrement)) {
+                    modified |= worklist.update(runOptimization(block, new IntroducePostIncrementOptimization(context, method)));
+                }
 
-                if (!shouldPerformStep(abortBeforeStep, AstOptimizationStep.InlineConditionalAssignments)) {
+                if (!shouldPerformStep(context, profile, abortBeforeStep, AstOptimizationStep.InlineConditionalAssignments)) {
                     done = true;
                     break;
                 }
 
-                modified |= runOptimization(block, new InlineConditionalAssignmentsOptimization(context, method));
+                if (worklist.enter(AstOptimizationStep.InlineConditionalAssignments)) {
+                    modified |= worklist.update(runOptimization(block, new InlineConditionalAssignmentsOptimization(context, method, worklist.labels())));
+                }
 
-                if (!shouldPerformStep(abortBeforeStep, AstOptimizationStep.MakeAssignmentExpressions)) {
+                if (!shouldPerformStep(context, profile, abortBeforeStep, AstOptimizationStep.MakeAssignmentExpressions)) {
                     done = true;
                     break;
                 }
 
-                modified |= runOptimization(block, new MakeAssignmentExpressionsOptimization(context, method));
+                if (worklist.enter(AstOptimizationStep.MakeAssignmentExpressions)) {
+                    modified |= worklist.update(runOptimization(block, new MakeAssignmentExpressionsOptimization(context, method)));
+                }
 
-                if (!shouldPerformStep(abortBeforeStep, AstOptimizationStep.InlineLambdas)) {
+                if (!shouldPerformStep(context, profile, abortBeforeStep, AstOptimizationStep.InlineLambdas)) {
                     return;
                 }
 
-                modified |= runOptimization(block, new InlineLambdasOptimization(context, method));
+                if (worklist.enter(AstOptimizationStep.InlineLambdas)) {
+                    modified |= worklist.update(runOptimization(block, new InlineLambdasOptimization(context, method)));
+                }
 
-                if (!shouldPerformStep(abortBeforeStep, AstOptimizationStep.InlineVariables2)) {
+                if (!shouldPerformStep(context, profile, abortBeforeStep, AstOptimizationStep.InlineVariables2)) {
                     done = true;
                     break;
                 }
 
-                modified |= new Inlining(context, method, true).inlineAllInBlock(block);
-                new Inlining(context, method).copyPropagation();
+                if (worklist.enter(AstOptimizationStep.InlineVariables2)) {
+                    modified |= worklist.update(new Inlining(context, method, true).inlineAllInBlock(block));
+                    worklist.update(new Inlining(context, method).copyPropagation());
+                }
 
-                if (!shouldPerformStep(abortBeforeStep, AstOptimizationStep.MergeDisparateObjectInitializations)) {
+                if (!shouldPerformStep(context, profile, abortBeforeStep, AstOptimizationStep.MergeDisparateObjectInitializations)) {
                     done = true;
                     break;
                 }
 
-                modified |= mergeDisparateObjectInitializations(context, block);
+                if (worklist.enter(AstOptimizationStep.MergeDisparateObjectInitializations)) {
+                    modified |= worklist.update(mergeDisparateObjectInitializations(context, block));
+                }
             }
             while (modified);
+
+            if (profile != null) {
+                profile.recordBlockRounds(blockRound);
+            }
         }
 
         if (done) {
             return;
         }
 
-        if (!shouldPerformStep(abortBeforeStep, AstOptimizationStep.FindLoops)) {
+        if (!shouldPerformStep(context, profile, abortBeforeStep, AstOptimizationStep.FindLoops)) {
             return;
         }
 
@@ -249,7 +310,7 @@ public final class AstOptimizer {
             new LoopsAndConditions(context).findLoops(block);
         }
 
-        if (!shouldPerformStep(abortBeforeStep, AstOptimizationStep.FindConditions)) {
+        if (!shouldPerformStep(context, profile, abortBeforeStep, AstOptimizationStep.FindConditions)) {
             return;
         }
 
@@ -257,43 +318,43 @@ public final class AstOptimizer {
             new LoopsAndConditions(context).findConditions(block);
         }
 
-        if (!shouldPerformStep(abortBeforeStep, AstOptimizationStep.FlattenNestedMovableBlocks)) {
+        if (!shouldPerformStep(context, profile, abortBeforeStep, AstOptimizationStep.FlattenNestedMovableBlocks)) {
             return;
         }
 
         flattenBasicBlocks(method);
 
-        if (!shouldPerformStep(abortBeforeStep, AstOptimizationStep.RemoveRedundantCode2)) {
+        if (!shouldPerformStep(context, profile, abortBeforeStep, AstOptimizationStep.RemoveRedundantCode2)) {
             return;
         }
 
         removeRedundantCode(method, context.getSettings());
 
-        if (!shouldPerformStep(abortBeforeStep, AstOptimizationStep.GotoRemoval)) {
+        if (!shouldPerformStep(context, profile, abortBeforeStep, AstOptimizationStep.GotoRemoval)) {
             return;
         }
 
         new GotoRemoval().removeGotos(method);
 
-        if (!shouldPerformStep(abortBeforeStep, AstOptimizationStep.DuplicateReturns)) {
+        if (!shouldPerformStep(context, profile, abortBeforeStep, AstOptimizationStep.DuplicateReturns)) {
             return;
         }
 
         duplicateReturnStatements(method);
 
-        if (!shouldPerformStep(abortBeforeStep, AstOptimizationStep.ReduceIfNesting)) {
+        if (!shouldPerformStep(context, profile, abortBeforeStep, AstOptimizationStep.ReduceIfNesting)) {
             return;
         }
 
         reduceIfNesting(method);
 
-        if (!shouldPerformStep(abortBeforeStep, AstOptimizationStep.GotoRemoval2)) {
+        if (!shouldPerformStep(context, profile, abortBeforeStep, AstOptimizationStep.GotoRemoval2)) {
             return;
         }
 
         new GotoRemoval().removeGotos(method);
 
-        if (!shouldPerformStep(abortBeforeStep, AstOptimizationStep.ReduceComparisonInstructionSet)) {
+        if (!shouldPerformStep(context, profile, abortBeforeStep, AstOptimizationStep.ReduceComparisonInstructionSet)) {
             return;
         }
 
@@ -301,13 +362,13 @@ public final class AstOptimizer {
             reduceComparisonInstructionSet(e);
         }
 
-        if (!shouldPerformStep(abortBeforeStep, AstOptimizationStep.RecombineVariables)) {
+        if (!shouldPerformStep(context, profile, abortBeforeStep, AstOptimizationStep.RecombineVariables)) {
             return;
         }
 
         recombineVariables(method);
 
-        if (!shouldPerformStep(abortBeforeStep, AstOptimizationStep.RemoveRedundantCode3)) {
+        if (!shouldPerformStep(context, profile, abortBeforeStep, AstOptimizationStep.RemoveRedundantCode3)) {
             return;
         }
 
@@ -317,7 +378,7 @@ public final class AstOptimizer {
             GotoRemoval.OPTION_REMOVE_REDUNDANT_RETURNS
         );
 
-        if (!shouldPerformStep(abortBeforeStep, AstOptimizationStep.CleanUpTryBlocks)) {
+        if (!shouldPerformStep(context, profile, abortBeforeStep, AstOptimizationStep.CleanUpTryBlocks)) {
             return;
         }
 
@@ -328,7 +389,7 @@ public final class AstOptimizer {
         // introduction of ternary operators may open up additional inlining possibilities.
         //
 
-        if (!shouldPerformStep(abortBeforeStep, AstOptimizationStep.InlineVariables3)) {
+        if (!shouldPerformStep(context, profile, abortBeforeStep, AstOptimizationStep.InlineVariables3)) {
             return;
         }
 
@@ -336,7 +397,7 @@ public final class AstOptimizer {
 
         inliningPhase3.inlineAllVariables();
 
-        if (!shouldPerformStep(abortBeforeStep, AstOptimizationStep.TypeInference2)) {
+        if (!shouldPerformStep(context, profile, abortBeforeStep, AstOptimizationStep.TypeInference2)) {
             return;
         }
 
@@ -346,11 +407,22 @@ public final class AstOptimizer {
         LOG.fine("Finished bytecode AST optimization.");
     }
 
-    private static boolean shouldPerformStep(final AstOptimizationStep abortBeforeStep, final AstOptimizationStep nextStep) {
+    private static boolean shouldPerformStep(
+        final DecompilerContext context,
+        final AstOptimizationProfiler.MethodProfile profile,
+        final AstOptimizationStep abortBeforeStep,
+        final AstOptimizationStep nextStep) {
+
         if (abortBeforeStep == nextStep) {
             return false;
         }
 
+        context.throwIfCanceled();
+
+        if (profile != null) {
+            profile.enterStep(nextStep);
+        }
+
         if (nextStep.isBlockLevelOptimization()) {
             if (LOG.isLoggable(Level.FINER)) {
                 LOG.finer("Performing block-level optimization: " + nextStep + ".");
@@ -1114,7 +1186,7 @@ public final class AstOptimizer {
         final int amount = (int) tAny.get();
 
         if (matchGetArguments(n3, AstCode.Store, tAny, a) &&
-            inlining.loadCounts.get(v = (Variable) tAny.get()).getValue() > 1 &&
+            inlining.loadCounts.get(v = (Variable) tAny.get()) > 1 &&
             matchGetArguments(a.get(0), AstCode.Add, a) &&
             matchLoad(a.get(0), t) &&
             matchLoad(a.get(1), u) &&
@@ -1226,7 +1298,7 @@ public final class AstOptimizer {
         final Expression e3 = (Expression) body.get(i + 2);
 
         if (!matchGetArguments(e3, AstCode.Store, tVar, a) ||
-            tVar.get().isGenerated() && inlining.loadCounts.get(tVar.get()).getValue() <= 1 ||
+            tVar.get().isGenerated() && inlining.loadCounts.get(tVar.get()) <= 1 ||
             !matchGetArguments(a.get(0), AstCode.Add, a) ||
             !matchLoad(a.get(0), t) ||
             !matchLoad(a.get(1), u)) {
@@ -1679,8 +1751,8 @@ public final class AstOptimizer {
     // <editor-fold defaultstate="collapsed" desc="SimplifyShortCircuit Step">
 
     private static final class SimplifyShortCircuitOptimization extends AbstractBasicBlockOptimization {
-        public SimplifyShortCircuitOptimization(final DecompilerContext context, final Block method) {
-            super(context, method);
+        public SimplifyShortCircuitOptimization(final DecompilerContext context, final Block method, final LabelIndex labels) {
+            super(context, method, labels);
         }
 
         @Override
@@ -1769,8 +1841,8 @@ public final class AstOptimizer {
     // <editor-fold defaultstate="collapsed" desc="PreProcessShortCircuitAssignments Step">
 
     private static final class PreProcessShortCircuitAssignmentsOptimization extends AbstractBasicBlockOptimization {
-        public PreProcessShortCircuitAssignmentsOptimization(final DecompilerContext context, final Block method) {
-            super(context, method);
+        public PreProcessShortCircuitAssignmentsOptimization(final DecompilerContext context, final Block method, final LabelIndex labels) {
+            super(context, method, labels);
         }
 
         @Override
@@ -1894,8 +1966,8 @@ public final class AstOptimizer {
     // <editor-fold defaultstate="collapsed" desc="InlineConditionalAssignments Step">
 
     private static final class InlineConditionalAssignmentsOptimization extends AbstractBasicBlockOptimization {
-        public InlineConditionalAssignmentsOptimization(final DecompilerContext context, final Block method) {
-            super(context, method);
+        public InlineConditionalAssignmentsOptimization(final DecompilerContext context, final Block method, final LabelIndex labels) {
+            super(context, method, labels);
         }
 
         @Override
@@ -1968,8 +2040,8 @@ public final class AstOptimizer {
     // <editor-fold defaultstate="collapsed" desc="JoinBasicBlocks Step">
 
     private final static class JoinBasicBlocksOptimization extends AbstractBasicBlockOptimization {
-        protected JoinBasicBlocksOptimization(final DecompilerContext context, final Block method) {
-            super(context, method);
+        protected JoinBasicBlocksOptimization(final DecompilerContext context, final Block method, final LabelIndex labels) {
+            super(context, method, labels);
         }
 
         @Override
@@ -2023,8 +2095,8 @@ public final class AstOptimizer {
     // <editor-fold defaultstate="collapsed" desc="SimplifyTernaryOperator Step">
 
     private final static class SimplifyTernaryOperatorOptimization extends AbstractBasicBlockOptimization {
-        protected SimplifyTernaryOperatorOptimization(final DecompilerContext context, final Block method) {
-            super(context, method);
+        protected SimplifyTernaryOperatorOptimization(final DecompilerContext context, final Block method, final LabelIndex labels) {
+            super(context, method, labels);
         }
 
         @Override
@@ -2609,7 +2681,7 @@ public final class AstOptimizer {
                 final Expression storeNew = newExpressions.get(variable.value);
 
                 if (storeNew != null &&
-                    Inlining.count(inlining.storeCounts, variable.value) == 1) {
+                    inlining.storeCounts.get(variable.value) == 1) {
 
                     final Node parent = parentLookup.get(storeNew);
 
@@ -2852,13 +2924,8 @@ public final class AstOptimizer {
                         //
 
                         final Inlining inlining = new Inlining(context, method);
-                        final MutableInteger loadCounts = inlining.loadCounts.get(ev.get());
-                        final MutableInteger storeCounts = inlining.storeCounts.get(ev.get());
-
-                        if (loadCounts != null &&
-                            loadCounts.getValue() == 2 &&
-                            storeCounts != null &&
-                            storeCounts.getValue() == 1) {
+                        if (inlining.loadCounts.get(ev.get()) == 2 &&
+                            inlining.storeCounts.get(ev.get()) == 1) {
 
                             final Expression storeExpression = (Expression) store2;
 
@@ -3542,6 +3609,9 @@ public final class AstOptimizer {
 
                 innerContext.setCurrentType(resolvedMethod.getDeclaringType());
                 innerContext.setCurrentMethod(resolvedMethod);
+                innerContext.setCanceled(context.getCanceled());
+                innerContext.setCancellationToken(context.getCancellationToken());
+                innerContext.setOptimizationProfiler(context.getOptimizationProfiler());
 
                 final MethodBody methodBody = resolvedMethod.getBody();
                 final List<ParameterDefinition> parameters = resolvedMethod.getParameters();
@@ -3679,8 +3749,8 @@ public final class AstOptimizer {
     // <editor-fold defaultstate="collapsed" desc="JoinBranchConditions Step">
 
     private static final class JoinBranchConditionsOptimization extends AbstractBranchBlockOptimization {
-        public JoinBranchConditionsOptimization(final DecompilerContext context, final Block method) {
-            super(context, method);
+        public JoinBranchConditionsOptimization(final DecompilerContext context, final Block method, final LabelIndex labels) {
+            super(context, method, labels);
         }
 
         @Override
@@ -3801,22 +3871,31 @@ public final class AstOptimizer {
     private static abstract class AbstractBasicBlockOptimization implements BasicBlockOptimization {
         protected final static BasicBlock EMPTY_BLOCK = new BasicBlock();
 
-        protected final Map<Label, MutableInteger> labelGlobalRefCount = new DefaultMap<>(MutableInteger.SUPPLIER);
-        protected final Map<Label, BasicBlock> labelToBasicBlock = new DefaultMap<>(Suppliers.forValue(EMPTY_BLOCK));
+        protected final Map<Label, MutableInteger> labelGlobalRefCount;
+        protected final Map<Label, BasicBlock> labelToBasicBlock;
 
         protected final DecompilerContext context;
         protected final IMetadataResolver resolver;
         protected final Block method;
 
-        protected AbstractBasicBlockOptimization(final DecompilerContext context, final Block method) {
+        protected AbstractBasicBlockOptimization(final DecompilerContext context, final Block method, final LabelIndex labels) {
             this.context = VerifyArgument.notNull(context, "context");
             this.resolver = context.getCurrentType().getResolver();
             this.method = VerifyArgument.notNull(method, "method");
+            this.labelGlobalRefCount = VerifyArgument.notNull(labels, "labels").refCounts;
+            this.labelToBasicBlock = labels.basicBlocks;
+        }
+    }
 
+    private final static class LabelIndex {
+        final Map<Label, MutableInteger> refCounts = new DefaultMap<>(MutableInteger.SUPPLIER);
+        final Map<Label, BasicBlock> basicBlocks = new DefaultMap<>(Suppliers.forValue(AbstractBasicBlockOptimization.EMPTY_BLOCK));
+
+        LabelIndex(final Block method) {
             for (final Expression e : method.getSelfAndChildrenRecursive(Expression.class)) {
                 if (e.isBranch()) {
                     for (final Label target : e.getBranchTargets()) {
-                        labelGlobalRefCount.get(target).increment();
+                        refCounts.get(target).increment();
                     }
                 }
             }
@@ -3824,13 +3903,66 @@ public final class AstOptimizer {
             for (final BasicBlock basicBlock : method.getSelfAndChildrenRecursive(BasicBlock.class)) {
                 for (final Node child : basicBlock.getChildren()) {
                     if (child instanceof Label) {
-                        labelToBasicBlock.put((Label) child, basicBlock);
+                        basicBlocks.put((Label) child, basicBlock);
                     }
                 }
             }
         }
     }
 
+    //
+    // Tracks which block-level steps still have work to do on the current block.  Each step is
+    // deterministic with respect to the method body, so a step which changed nothing need not
+    // run again until some other step changes the method.  Likewise, one label index may serve
+    // every basic block optimization until one of them changes the method.
+    //
+
+    private final static class BlockWorklist {
+        private final Block _method;
+        private final int[] _idleSince = new int[AstOptimizationStep.values().length];
+
+        private int _version = 1;
+        private AstOptimizationStep _currentStep;
+        private int _currentStepVersion;
+        private LabelIndex _labels;
+        private int _labelsVersion;
+
+        BlockWorklist(final Block method) {
+            _method = VerifyArgument.notNull(method, "method");
+        }
+
+        boolean enter(final AstOptimizationStep step) {
+            if (_currentStep != null && _currentStepVersion == _version) {
+                _idleSince[_currentStep.ordinal()] = _version;
+            }
+
+            if (_idleSince[step.ordinal()] == _version) {
+                _currentStep = null;
+                return false;
+            }
+
+            _currentStep = step;
+            _currentStepVersion = _version;
+
+            return true;
+        }
+
+        boolean update(final boolean modified) {
+            if (modified) {
+                ++_version;
+            }
+            return modified;
+        }
+
+        LabelIndex labels() {
+            if (_labels == null || _labelsVersion != _version) {
+                _labels = new LabelIndex(_method);
+                _labelsVersion = _version;
+            }
+            return _labels;
+        }
+    }
+
     @SuppressWarnings("ProtectedField")
     private static abstract class AbstractExpressionOptimization implements ExpressionOptimization {
         protected final DecompilerContext context;
@@ -3888,8 +4020,8 @@ public final class AstOptimizer {
         protected final StrongBox<Label> label1 = new StrongBox<>();
         protected final StrongBox<Label> label2 = new StrongBox<>();
 
-        public AbstractBranchBlockOptimization(final DecompilerContext context, final Block method) {
-            super(context, method);
+        public AbstractBranchBlockOptimization(final DecompilerContext context, final Block method, final LabelIndex labels) {
+            super(context, method, labels);
         }
 
         @Override
@@ -18,13 +18,13 @@ package com.strobel.decompiler.ast;
 
 import com.strobel.annotations.NotNull;
 import com.strobel.assembler.metadata.MetadataHelper;
-import com.strobel.core.CollectionUtilities;
 import com.strobel.core.MutableInteger;
 import com.strobel.core.Predicate;
 import com.strobel.core.StrongBox;
 import com.strobel.decompiler.DecompilerContext;
 import com.strobel.util.ContractUtils;
 
+import java.util.ArrayList;
 import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -41,9 +41,11 @@ final class Inlining {
     private final Block _method;
     private final boolean _aggressive;
 
-    final Map<Variable, MutableInteger> loadCounts;
-    final Map<Variable, MutableInteger> storeCounts;
-    final Map<Variable, List<Expression>> loads;
+    private final VariableNumbering _variables = new VariableNumbering();
+    private final List<List<Expression>> _loads = new ArrayList<>();
+
+    final VariableUseCounts loadCounts = new VariableUseCounts(_variables);
+    final VariableUseCounts storeCounts = new VariableUseCounts(_variables);
     final StrongBox<Variable> _tempVariable = new StrongBox<>();
     final StrongBox<Expression> _tempExpression = new StrongBox<>();
 
@@ -56,10 +58,6 @@ final class Inlining {
         _method = method;
         _aggressive = aggressive;
 
-        loadCounts = new DefaultMap<>(MutableInteger.SUPPLIER);
-        storeCounts = new DefaultMap<>(MutableInteger.SUPPLIER);
-        loads = new DefaultMap<>(CollectionUtilities.<Expression>listFactory());
-
         analyzeMethod();
     }
 
@@ -77,16 +75,16 @@ final class Inlining {
             final Expression e = (Expression) node;
 
             if (matchLoadOrRet(e, _tempVariable)) {
-                increment(loadCounts, _tempVariable.get());
-                loads.get(_tempVariable.get()).add(e);
+                loadCounts.increment(_tempVariable.get());
+                getLoads(_tempVariable.get()).add(e);
             }
             else if (matchStore(e, _tempVariable, _tempExpression)) {
-                increment(storeCounts, _tempVariable.get());
+                storeCounts.increment(_tempVariable.get());
             }
             else if (matchVariableIncDec(e, _tempVariable)) {
-                increment(loadCounts, _tempVariable.get());
-                increment(storeCounts, _tempVariable.get());
-                loads.get(_tempVariable.get()).add(e);
+                loadCounts.increment(_tempVariable.get());
+                storeCounts.increment(_tempVariable.get());
+                getLoads(_tempVariable.get()).add(e);
             }
             else if (e.getOperand() instanceof Variable) {
                 throw new IllegalStateException(
@@ -110,7 +108,7 @@ final class Inlining {
                 final Variable exceptionVariable = catchBlock.getExceptionVariable();
 
                 if (exceptionVariable != null) {
-                    increment(storeCounts, exceptionVariable);
+                    storeCounts.increment(exceptionVariable);
                 }
             }
 
@@ -147,8 +145,8 @@ final class Inlining {
 
             if (v != null &&
                 v.isGenerated() &&
-                count(storeCounts, v) == 1 &&
-                count(loadCounts, v) <= 1) {
+                storeCounts.get(v) == 1 &&
+                loadCounts.get(v) <= 1) {
 
                 if (matchGetArgument(body.get(0), AstCode.Store, tempVariable, tempExpression) &&
                     matchLoad(tempExpression.get(), v)) {
@@ -252,8 +250,8 @@ final class Inlining {
         //
         // Ensure the variable is accessed only a single time.
         //
-        final int storeCount = count(storeCounts, variable);
-        final int loadCount = count(loadCounts, variable);
+        final int storeCount = storeCounts.get(variable);
+        final int loadCount = loadCounts.get(variable);
 
         if (storeCount != 1 || loadCount > 1) {
             return false;
@@ -521,9 +519,9 @@ final class Inlining {
 
             if (match(e, AstCode.Store) &&
                 canInline(true, variable.value) &&
-                count(storeCounts, variable.value) == 1 &&
-                count(loadCounts, variable.value) <= 1 &&
-                count(loadCounts, (Variable) e.getOperand()) <= 1) {
+                storeCounts.get(variable.value) == 1 &&
+                loadCounts.get(variable.value) <= 1 &&
+                loadCounts.get((Variable) e.getOperand()) <= 1) {
 
                 //
                 // Check to see if we have an expression like 'x = y = <some expression>`, where both
@@ -535,14 +533,14 @@ final class Inlining {
                 final Variable nestedVariable = (Variable) e.getOperand();
 
                 if (MetadataHelper.isSameType(currentVariable.getType(), nestedVariable.getType())) {
-                    final List<Expression> currentLoads = loads.get(currentVariable);
-                    final List<Expression> nestedLoads = loads.get(nestedVariable);
+                    final List<Expression> currentLoads = getLoads(currentVariable);
+                    final List<Expression> nestedLoads = getLoads(nestedVariable);
 
                     if (nestedVariable.isGenerated()) {
                         for (final Expression load : nestedLoads) {
                             load.setOperand(currentVariable);
                             currentLoads.add(load);
-                            increment(loadCounts, currentVariable);
+                            loadCounts.increment(currentVariable);
                         }
 
                         nestedLoads.clear();
@@ -553,7 +551,7 @@ final class Inlining {
                         for (final Expression load : currentLoads) {
                             load.setOperand(nestedVariable);
                             nestedLoads.add(load);
-                            increment(loadCounts, nestedVariable);
+                            loadCounts.increment(nestedVariable);
                         }
 
                         currentLoads.clear();
@@ -583,16 +581,16 @@ final class Inlining {
 
                     current.getArguments().set(0, single(e.getArguments()));
 
-                    storeCounts.get(variable.get()).setValue(0);
-                    loadCounts.get(variable.get()).setValue(0);
+                    storeCounts.set(variable.get(), 0);
+                    loadCounts.set(variable.get(), 0);
 
-                    increment(loadCounts, v);
+                    loadCounts.increment(v);
 
                     return true;
                 }
             }
 
-            if (count(loadCounts, v) == 0 &&
+            if (loadCounts.get(v) == 0 &&
                 canInline(aggressive, v)) {
 
                 //
@@ -633,7 +631,9 @@ final class Inlining {
     // <editor-fold defaultstate="collapsed" desc="Copy Propagation">
 
     @SuppressWarnings("ConstantConditions")
-    final void copyPropagation() {
+    final boolean copyPropagation() {
+        boolean modified = false;
+
         for (final Block block : _method.getSelfAndChildrenRecursive(Block.class)) {
             final List<Node> body = block.getBody();
 
@@ -643,7 +643,7 @@ final class Inlining {
             for (int i = 0; i < body.size(); i++) {
                 if (matchGetArgument(body.get(i), AstCode.Store, variable, copiedExpression) &&
                     !variable.get().isParameter() &&
-                    count(storeCounts, variable.get()) == 1 &&
+                    storeCounts.get(variable.get()) == 1 &&
                     canPerformCopyPropagation(copiedExpression.get(), variable.get())) {
 
                     //
@@ -682,6 +682,7 @@ final class Inlining {
                     }
 
                     body.remove(i);
+                    modified = true;
 
                     if (uninlinedArgs.length > 0) {
                         //
@@ -699,6 +700,8 @@ final class Inlining {
                 }
             }
         }
+
+        return modified;
     }
 
     final boolean canPerformCopyPropagation(final Expression expr, final Variable copyVariable) {
@@ -710,7 +713,7 @@ final class Inlining {
                     //
                     // Parameters can be copied only if they aren't assigned to.
                     //
-                    return count(storeCounts, v) == 0 &&
+                    return storeCounts.get(v) == 0 &&
                            notFromMetadata(copyVariable);
                 }
 
@@ -720,7 +723,7 @@ final class Inlining {
                 //
                 return v.isGenerated() &&
                        copyVariable.isGenerated() &&
-                       count(storeCounts, v) == 1;
+                       storeCounts.get(v) == 1;
             }
 
             default: {
@@ -789,20 +792,20 @@ final class Inlining {
         }
     }
 
-    static int count(final Map<Variable, MutableInteger> map, final Variable variable) {
-        final MutableInteger count = map.get(variable);
-        return count != null ? count.getValue() : 0;
-    }
-
-    private static void increment(final Map<Variable, MutableInteger> map, final Variable variable) {
-        final MutableInteger count = map.get(variable);
+    private List<Expression> getLoads(final Variable variable) {
+        final int number = _variables.add(variable);
 
-        if (count == null) {
-            map.put(variable, new MutableInteger(1));
+        while (_loads.size() <= number) {
+            _loads.add(null);
         }
-        else {
-            count.increment();
+
+        List<Expression> loads = _loads.get(number);
+
+        if (loads == null) {
+            _loads.set(number, loads = new ArrayList<>());
         }
+
+        return loads;
     }
 
     private static Iterable<Expression> getParents(final Expression scope, final Map<Expression, Expression> parentLookup, final Expression node) {
@@ -24,6 +24,7 @@ import com.strobel.assembler.flowanalysis.ControlFlowNodeType;
 import com.strobel.assembler.flowanalysis.JumpType;
 import com.strobel.assembler.metadata.SwitchInfo;
 import com.strobel.core.ArrayUtilities;
+import com.strobel.core.BooleanBox;
 import com.strobel.core.Pair;
 import com.strobel.core.Predicate;
 import com.strobel.core.StrongBox;
@@ -37,7 +38,6 @@ import static com.strobel.decompiler.ast.PatternMatching.*;
 
 final class LoopsAndConditions {
     private final Map<Label, ControlFlowNode> labelsToNodes = new IdentityHashMap<>();
-    @SuppressWarnings({ "FieldCanBeLocal", "UnusedDeclaration" })
     private final DecompilerContext context;
 
     private int _nextLabelIndex;
@@ -55,8 +55,7 @@ final class LoopsAndConditions {
 
         final ControlFlowGraph graph = buildGraph(body, (Label) block.getEntryGoto().getOperand());
 
-        graph.computeDominance();
-        graph.computeDominanceFrontier();
+        computeDominance(graph);
 
         final Set<ControlFlowNode> cfNodes = new LinkedHashSet<>();
         final List<ControlFlowNode> graphNodes = graph.getNodes();
@@ -80,8 +79,7 @@ final class LoopsAndConditions {
 
         final ControlFlowGraph graph = buildGraph(body, (Label) block.getEntryGoto().getOperand());
 
-        graph.computeDominance();
-        graph.computeDominanceFrontier();
+        computeDominance(graph);
 
         final Set<ControlFlowNode> cfNodes = new LinkedHashSet<>();
         final List<ControlFlowNode> graphNodes = graph.getNodes();
@@ -96,6 +94,15 @@ final class LoopsAndConditions {
         block.getBody().addAll(newBody);
     }
 
+    private void computeDominance(final ControlFlowGraph graph) {
+        context.throwIfCanceled();
+
+        final BooleanBox canceled = context.getCanceled();
+
+        graph.computeDominance(canceled != null ? canceled : new BooleanBox());
+        graph.computeDominanceFrontier();
+    }
+
     private ControlFlowGraph buildGraph(final List<Node> nodes, final Label entryLabel) {
         int index = 0;
 
@@ -253,6 +260,8 @@ final class LoopsAndConditions {
         agenda.addLast(entryPoint);
 
         while (!agenda.isEmpty()) {
+            context.throwIfCanceled();
+
             final ControlFlowNode node = agenda.pollFirst();
 
             //
@@ -700,6 +709,8 @@ final class LoopsAndConditions {
         agenda.push(entryNode);
 
         while (!agenda.isEmpty()) {
+            context.throwIfCanceled();
+
             final ControlFlowNode node = agenda.pop();
 
             if (node == null) {
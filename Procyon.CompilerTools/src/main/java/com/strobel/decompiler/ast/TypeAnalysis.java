@@ -39,8 +39,9 @@ public final class TypeAnalysis {
     private final static int FLAG_BOOLEAN_PROHIBITED = 0x01;
 
     private final List<ExpressionToInfer> _allExpressions = new ArrayList<>();
-    private final Set<Variable> _singleStoreVariables = new LinkedHashSet<>();
-    private final Set<Variable> _singleLoadVariables = new LinkedHashSet<>();
+    private final VariableNumbering _variables = new VariableNumbering();
+    private final VariableSet _singleStoreVariables = new VariableSet(_variables);
+    private final VariableSet _singleLoadVariables = new VariableSet(_variables);
     private final Set<Variable> _allVariables = new LinkedHashSet<>();
 
     @SuppressWarnings("MismatchedQueryAndUpdateOfCollection")
@@ -355,6 +356,8 @@ public final class TypeAnalysis {
         };
 
         while (numberOfExpressionsAlreadyInferred < _allExpressions.size()) {
+            _context.throwIfCanceled();
+
             final int oldCount = numberOfExpressionsAlreadyInferred;
 
             for (final ExpressionToInfer e : _allExpressions) {
@@ -27,6 +27,8 @@ public final class Variable {
     private TypeReference _type;
     private VariableDefinition _originalVariable;
     private ParameterDefinition _originalParameter;
+    private VariableNumbering _numbering;
+    private int _number;
 
     public final String getName() {
         return _name;
@@ -103,6 +105,15 @@ public final class Variable {
         _isLambdaParameter = lambdaParameter;
     }
 
+    final int getNumber(final VariableNumbering numbering) {
+        return _numbering == numbering ? _number : -1;
+    }
+
+    final void setNumber(final VariableNumbering numbering, final int number) {
+        _numbering = numbering;
+        _number = number;
+    }
+
     @Override
     public final String toString() {
         return _name;
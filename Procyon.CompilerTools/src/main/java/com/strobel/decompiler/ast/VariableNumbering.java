@@ -0,0 +1,84 @@
+/*
+ * VariableNumbering.java
+ *
+ * Copyright (c) 2013 Mike Strobel
+ *
+ * This source code is subject to terms and conditions of the Apache License, Version 2.0.
+ * A copy of the license can be found in the License.html file at the root of this distribution.
+ * By using this source code in any fashion, you are agreeing to be bound by the terms of the
+ * Apache License, Version 2.0.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.strobel.decompiler.ast;
+
+import com.strobel.core.VerifyArgument;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Assigns the variables of a method dense numbers, in the order they are first seen, so that
+ * facts about them may be kept in int arrays ({@link VariableUseCounts}) and bit sets
+ * ({@link VariableSet}) instead of maps keyed by variable.  Numbers are never reassigned.
+ */
+final class VariableNumbering {
+    private final Map<Variable, Integer> _numbers = new IdentityHashMap<>();
+
+    private int _size;
+
+    final int size() {
+        return _size;
+    }
+
+    /**
+     * Gets the number of {@code variable}, or {@code -1} if it has not been numbered.
+     */
+    final int find(final Variable variable) {
+        if (variable == null) {
+            return -1;
+        }
+
+        //
+        // The variable caches the number given by the last numbering to look it up, which lets
+        // the common case skip the hash lookup.  Several numberings may cover the same variable
+        // at once, so the map stays authoritative.
+        //
+
+        final int cached = variable.getNumber(this);
+
+        if (cached >= 0) {
+            return cached;
+        }
+
+        final Integer number = _numbers.get(variable);
+
+        if (number == null) {
+            return -1;
+        }
+
+        variable.setNumber(this, number);
+        return number;
+    }
+
+    /**
+     * Gets the number of {@code variable}, numbering it first if necessary.
+     */
+    final int add(final Variable variable) {
+        VerifyArgument.notNull(variable, "variable");
+
+        final int existing = find(variable);
+
+        if (existing >= 0) {
+            return existing;
+        }
+
+        final int number = _size++;
+
+        _numbers.put(variable, number);
+        variable.setNumber(this, number);
+
+        return number;
+    }
+}
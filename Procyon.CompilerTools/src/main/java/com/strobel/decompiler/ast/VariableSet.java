@@ -0,0 +1,59 @@
+/*
+ * VariableSet.java
+ *
+ * Copyright (c) 2013 Mike Strobel
+ *
+ * This source code is subject to terms and conditions of the Apache License, Version 2.0.
+ * A copy of the license can be found in the License.html file at the root of this distribution.
+ * By using this source code in any fashion, you are agreeing to be bound by the terms of the
+ * Apache License, Version 2.0.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.strobel.decompiler.ast;
+
+import com.strobel.core.VerifyArgument;
+
+import java.util.Arrays;
+
+/**
+ * A set of variables stored as a {@code long[]} bit set over a {@link VariableNumbering}.  Sets
+ * over the same numbering may be combined word by word, as dataflow analyses do at join points.
+ */
+final class VariableSet {
+    private final VariableNumbering _numbering;
+    private long[] _words;
+
+    VariableSet(final VariableNumbering numbering) {
+        _numbering = VerifyArgument.notNull(numbering, "numbering");
+        _words = new long[Math.max(1, (numbering.size() + 63) >>> 6)];
+    }
+
+    final boolean contains(final Variable variable) {
+        final int number = _numbering.find(variable);
+
+        if (number < 0) {
+            return false;
+        }
+
+        final int word = number >>> 6;
+
+        return word < _words.length && (_words[word] & (1L << number)) != 0;
+    }
+
+    final boolean add(final Variable variable) {
+        final int number = _numbering.add(variable);
+        final int word = number >>> 6;
+
+        if (word >= _words.length) {
+            _words = Arrays.copyOf(_words, Math.max(word + 1, _words.length * 2));
+        }
+
+        final long before = _words[word];
+
+        _words[word] = before | (1L << number);
+
+        return _words[word] != before;
+    }
+}
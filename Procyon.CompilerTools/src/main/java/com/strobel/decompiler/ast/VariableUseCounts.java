@@ -0,0 +1,61 @@
+/*
+ * VariableUseCounts.java
+ *
+ * Copyright (c) 2013 Mike Strobel
+ *
+ * This source code is subject to terms and conditions of the Apache License, Version 2.0.
+ * A copy of the license can be found in the License.html file at the root of this distribution.
+ * By using this source code in any fashion, you are agreeing to be bound by the terms of the
+ * Apache License, Version 2.0.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.strobel.decompiler.ast;
+
+import com.strobel.core.VerifyArgument;
+
+import java.util.Arrays;
+
+/**
+ * Counts uses of variables (e.g., loads or stores) in an int array indexed by a
+ * {@link VariableNumbering}.  A variable which was never counted has a count of zero.
+ */
+final class VariableUseCounts {
+    private final VariableNumbering _numbering;
+    private int[] _counts;
+
+    VariableUseCounts(final VariableNumbering numbering) {
+        _numbering = VerifyArgument.notNull(numbering, "numbering");
+        _counts = new int[Math.max(16, numbering.size())];
+    }
+
+    final int get(final Variable variable) {
+        final int number = _numbering.find(variable);
+        return number >= 0 && number < _counts.length ? _counts[number] : 0;
+    }
+
+    final void set(final Variable variable, final int count) {
+        final int number = _numbering.add(variable);
+
+        ensureCapacity(number);
+        _counts[number] = count;
+    }
+
+    final void increment(final Variable variable) {
+        final int number = _numbering.add(variable);
+
+        ensureCapacity(number);
+        ++_counts[number];
+    }
+
+    final void clear() {
+        Arrays.fill(_counts, 0);
+    }
+
+    private void ensureCapacity(final int number) {
+        if (number >= _counts.length) {
+            _counts = Arrays.copyOf(_counts, Math.max(number + 1, _counts.length * 2));
+        }
+    }
+}
@@ -38,6 +38,7 @@ import javax.lang.model.element.Modifier;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
 
 public class BytecodeAstLanguage extends Language {
     private final String _name;
@@ -121,6 +122,8 @@ public class BytecodeAstLanguage extends Language {
 
         context.setCurrentMethod(method);
         context.setCurrentType(method.getDeclaringType());
+        context.setCancellationToken(options.getCanceled());
+        context.setOptimizationProfiler(options.getOptimizationProfiler());
 
         final Block methodAst = new Block();
 
@@ -167,6 +170,9 @@ public class BytecodeAstLanguage extends Language {
 
             methodAst.writeTo(output);
         }
+        catch (final CancellationException e) {
+            throw e;
+        }
         catch (final Throwable t) {
             writeError(output, t);
         }
@@ -84,6 +84,8 @@ public class JavaLanguage extends Language {
 
         context.setCurrentType(currentType);
         context.setSettings(settings);
+        context.setCancellationToken(options.getCanceled());
+        context.setOptimizationProfiler(options.getOptimizationProfiler());
 
         return new AstBuilder(context);
     }
@@ -27,6 +27,7 @@ import com.strobel.core.VerifyArgument;
 import com.strobel.decompiler.DecompilationOptions;
 import com.strobel.decompiler.DecompilerContext;
 import com.strobel.decompiler.DecompilerHelpers;
+import com.strobel.decompiler.MethodTimeoutException;
 import com.strobel.decompiler.PlainTextOutput;
 import com.strobel.decompiler.ast.*;
 import com.strobel.decompiler.ast.Label;
@@ -46,6 +47,7 @@ import java.util.Comparator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
 
 import static com.strobel.core.CollectionUtilities.*;
 
@@ -94,18 +96,95 @@ public class AstMethodBodyBuilder {
 
         context.setCurrentMethod(method);
 
+        final boolean startedTimer = context.startMethodTimer(method);
+
         try {
             final AstMethodBodyBuilder builder = new AstMethodBodyBuilder(astBuilder, method, context);
             return builder.createMethodBody(parameters);
         }
+        catch (final MethodTimeoutException e) {
+            //
+            // Only the method whose timer ran out falls back to bytecode; a lambda or local class
+            // body being built on its behalf lets the timeout through to it.
+            //
+            if (startedTimer) {
+                return createTimeoutBlock(astBuilder, context, method, e);
+            }
+            throw e;
+        }
+        catch (final CancellationException e) {
+            throw e;
+        }
         catch (Throwable t) {
             return createErrorBlock(astBuilder, context, method, t);
         }
         finally {
+            if (startedTimer) {
+                context.stopMethodTimer();
+            }
             context.setCurrentMethod(oldCurrentMethod);
         }
     }
 
+    private static BlockStatement createTimeoutBlock(
+        final AstBuilder astBuilder,
+        final DecompilerContext context,
+        final MethodDefinition method,
+        final MethodTimeoutException e) {
+
+        final BlockStatement block = new BlockStatement();
+
+        block.addChild(new Comment(" ", CommentType.SingleLine), Roles.COMMENT);
+        block.addChild(new Comment(" This method could not be decompiled within " + e.getTimeout() + " ms.", CommentType.SingleLine), Roles.COMMENT);
+        block.addChild(new Comment(" ", CommentType.SingleLine), Roles.COMMENT);
+
+        //
+        // Show the unoptimized bytecode AST, which is cheap to build; fall back to the raw
+        // bytecode if even that fails.
+        //
+
+        try {
+            final PlainTextOutput astOutput = new PlainTextOutput();
+            final DecompilationOptions astOptions = new DecompilationOptions();
+
+            astOptions.setCanceled(context.getCancellationToken());
+
+            Languages.bytecodeAstUnoptimized().decompileMethod(method, astOutput, astOptions);
+
+            final List<String> astLines = StringUtilities.split(
+                astOutput.toString(),
+                true,
+                '\r',
+                '\n'
+            );
+
+            block.addChild(new Comment(" Bytecode AST:", CommentType.SingleLine), Roles.COMMENT);
+            block.addChild(new Comment(" ", CommentType.SingleLine), Roles.COMMENT);
+
+            //
+            // Skip the method header and the braces around the body.
+            //
+
+            for (int i = 1; i < astLines.size() - 1; i++) {
+                final String line = StringUtilities.removeLeft(astLines.get(i), "    ");
+
+                block.addChild(new Comment(" " + line.replace("\t", "  "), CommentType.SingleLine), Roles.COMMENT);
+            }
+
+            block.addChild(new Comment(" ", CommentType.SingleLine), Roles.COMMENT);
+        }
+        catch (final CancellationException ce) {
+            throw ce;
+        }
+        catch (final Throwable ignored) {
+            addBytecodeComments(block, method);
+        }
+
+        addErrorThrow(block, astBuilder, "This method could not be decompiled in time.");
+
+        return block;
+    }
+
     @SuppressWarnings("ConstantConditions")
     private static BlockStatement createErrorBlock(
         final AstBuilder astBuilder,
@@ -126,6 +205,25 @@ public class AstMethodBodyBuilder {
         block.addChild(new Comment(" This method could not be decompiled.", CommentType.SingleLine), Roles.COMMENT);
         block.addChild(new Comment(" ", CommentType.SingleLine), Roles.COMMENT);
 
+        addBytecodeComments(block, method);
+
+        if (context.getSettings().getIncludeErrorDiagnostics()) {
+            block.addChild(new Comment(" The error that occurred was:", CommentType.SingleLine), Roles.COMMENT);
+            block.addChild(new Comment(" ", CommentType.SingleLine), Roles.COMMENT);
+
+            for (final String line : lines) {
+                block.addChild(new Comment(" " + line.replace("\t", "    "), CommentType.SingleLine), Roles.COMMENT);
+            }
+
+            block.addChild(new Comment(" ", CommentType.SingleLine), Roles.COMMENT);
+        }
+
+        addErrorThrow(block, astBuilder, "An error occurred while decompiling this method.");
+
+        return block;
+    }
+
+    private static void addBytecodeComments(final BlockStatement block, final MethodDefinition method) {
         try {
             final PlainTextOutput bytecodeOutput = new PlainTextOutput();
             final DecompilationOptions bytecodeOptions = new DecompilationOptions();
@@ -156,18 +254,10 @@ public class AstMethodBodyBuilder {
             block.addChild(new Comment(" Could not show original bytecode, likely due to the same error.", CommentType.SingleLine), Roles.COMMENT);
             block.addChild(new Comment(" ", CommentType.SingleLine), Roles.COMMENT);
         }
+    }
 
-        if (context.getSettings().getIncludeErrorDiagnostics()) {
-            block.addChild(new Comment(" The error that occurred was:", CommentType.SingleLine), Roles.COMMENT);
-            block.addChild(new Comment(" ", CommentType.SingleLine), Roles.COMMENT);
-
-            for (final String line : lines) {
-                block.addChild(new Comment(" " + line.replace("\t", "    "), CommentType.SingleLine), Roles.COMMENT);
-            }
-
-            block.addChild(new Comment(" ", CommentType.SingleLine), Roles.COMMENT);
-        }
-
+    @SuppressWarnings("ConstantConditions")
+    private static void addErrorThrow(final BlockStatement block, final AstBuilder astBuilder, final String message) {
         try {
             final TypeDefinition currentType = astBuilder.getContext().getCurrentType();
             final IMetadataResolver resolver = currentType != null ? currentType.getResolver() : MetadataSystem.instance();
@@ -178,7 +268,7 @@ public class AstMethodBodyBuilder {
                     new ObjectCreationExpression(
                            Expression.MYSTERY_OFFSET,
                         astBuilder.convertType(parser.parseTypeDescriptor("java/lang/IllegalStateException")),
-                        new PrimitiveExpression( Expression.MYSTERY_OFFSET, "An error occurred while decompiling this method.")
+                        new PrimitiveExpression( Expression.MYSTERY_OFFSET, message)
                     )
                 )
             );
@@ -186,8 +276,6 @@ public class AstMethodBodyBuilder {
         catch (Throwable ignored) {
             block.add(new EmptyStatement());
         }
-
-        return block;
     }
 
     private AstMethodBodyBuilder(final AstBuilder astBuilder, final MethodDefinition method, final DecompilerContext context) {
@@ -205,6 +293,8 @@ public class AstMethodBodyBuilder {
             return null;
         }
 
+        _context.throwIfCanceled();
+
         final Block method = new Block();
 
         method.getBody().addAll(
@@ -0,0 +1,84 @@
+package com.strobel.assembler.flowanalysis;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.junit.Assert.*;
+
+public class ControlFlowGraphTests {
+    @Test
+    public void testDominanceOfBranchesAndLoops() throws Throwable {
+        final ControlFlowNode[] n = createNodes(9);
+
+        //
+        // entry -> 3 -> (4 | 5) -> 6 <-> 7 -> exit, with 8 unreachable.
+        //
+
+        link(n[0], n[3]);
+        link(n[3], n[4]);
+        link(n[3], n[5]);
+        link(n[4], n[6]);
+        link(n[5], n[6]);
+        link(n[6], n[7]);
+        link(n[7], n[6]);
+        link(n[7], n[1]);
+        link(n[8], n[6]);
+
+        final ControlFlowGraph graph = new ControlFlowGraph(n);
+
+        graph.computeDominance();
+        graph.computeDominanceFrontier();
+
+        assertNull(n[0].getImmediateDominator());
+        assertSame(n[0], n[3].getImmediateDominator());
+        assertSame(n[3], n[4].getImmediateDominator());
+        assertSame(n[3], n[5].getImmediateDominator());
+        assertSame(n[3], n[6].getImmediateDominator());
+        assertSame(n[6], n[7].getImmediateDominator());
+        assertSame(n[7], n[1].getImmediateDominator());
+        assertNull(n[2].getImmediateDominator());
+        assertNull(n[8].getImmediateDominator());
+
+        assertEquals(Arrays.asList(n[4], n[5], n[6]), n[3].getDominatorTreeChildren());
+        assertEquals(Collections.singletonList(n[1]), n[7].getDominatorTreeChildren());
+
+        assertEquals(Collections.singleton(n[6]), new HashSet<>(n[4].getDominanceFrontier()));
+        assertEquals(Collections.singleton(n[6]), new HashSet<>(n[5].getDominanceFrontier()));
+        assertEquals(Collections.singleton(n[6]), new HashSet<>(n[6].getDominanceFrontier()));
+        assertEquals(Collections.singleton(n[6]), new HashSet<>(n[7].getDominanceFrontier()));
+        assertTrue(n[3].getDominanceFrontier().isEmpty());
+        assertTrue(n[8].getDominanceFrontier().isEmpty());
+        assertTrue(n[6].getDominanceFrontier().contains(n[6]));
+        assertFalse(n[6].getDominanceFrontier().contains(n[7]));
+
+        assertSame(n[3], ControlFlowGraph.findCommonDominator(n[4], n[5]));
+        assertSame(n[3], ControlFlowGraph.findCommonDominator(n[1], n[4]));
+        assertSame(n[6], ControlFlowGraph.findCommonDominator(n[1], n[6]));
+        assertTrue(n[3].dominates(n[1]));
+        assertFalse(n[4].dominates(n[6]));
+    }
+
+    private static ControlFlowNode[] createNodes(final int count) {
+        final ControlFlowNode[] nodes = new ControlFlowNode[count];
+
+        nodes[0] = new ControlFlowNode(0, 0, ControlFlowNodeType.EntryPoint);
+        nodes[1] = new ControlFlowNode(1, -1, ControlFlowNodeType.RegularExit);
+        nodes[2] = new ControlFlowNode(2, -1, ControlFlowNodeType.ExceptionalExit);
+
+        for (int i = 3; i < count; i++) {
+            nodes[i] = new ControlFlowNode(i, i, ControlFlowNodeType.Normal);
+        }
+
+        return nodes;
+    }
+
+    private static void link(final ControlFlowNode source, final ControlFlowNode target) {
+        final ControlFlowEdge edge = new ControlFlowEdge(source, target, JumpType.Normal);
+
+        source.getOutgoing().add(edge);
+        target.getIncoming().add(edge);
+    }
+}
@@ -0,0 +1,164 @@
+package com.strobel.assembler.ir;
+
+import com.strobel.assembler.metadata.Buffer;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class ConstantPoolTests {
+    @Test
+    public void testLongAndDoubleEntriesSkipSlot() throws Throwable {
+        final ConstantPool original = new ConstantPool();
+
+        final int before = original.getUtf8StringConstant("before").index;
+        final int longIndex = original.getLongConstant(42L).index;
+        final int middle = original.getUtf8StringConstant("middle").index;
+        final int doubleIndex = original.getDoubleConstant(2.5).index;
+        final int after = original.getIntegerConstant(7).index;
+
+        assertEquals(middle, longIndex + 2);
+        assertEquals(after, doubleIndex + 2);
+
+        final ConstantPool pool = reread(original);
+
+        //
+        // Decode out of order, starting with the entry after each wide constant.
+        //
+
+        assertEquals(7, pool.lookupIntegerConstant(after));
+        assertEquals("middle", pool.lookupUtf8Constant(middle));
+        assertEquals(2.5, pool.lookupDoubleConstant(doubleIndex), 0d);
+        assertEquals(42L, pool.lookupLongConstant(longIndex));
+        assertEquals("before", pool.lookupUtf8Constant(before));
+
+        assertSame(pool.get(longIndex), pool.get(longIndex));
+        assertEquals(longIndex, pool.get(longIndex).index);
+
+        try {
+            pool.get(longIndex + 1);
+            fail("Expected the second slot of a long constant to be unusable.");
+        }
+        catch (final IndexOutOfBoundsException ignored) {
+        }
+    }
+
+    @Test
+    public void testIteratorAndLookupsDecodeAllEntries() throws Throwable {
+        final ConstantPool original = new ConstantPool();
+
+        original.getLongConstant(1L);
+        original.getStringConstant("text");
+        original.getFloatConstant(0.5f);
+
+        final ConstantPool pool = reread(original);
+        final List<ConstantPool.Entry> entries = new ArrayList<>();
+
+        for (final ConstantPool.Entry entry : pool) {
+            entries.add(entry);
+        }
+
+        //
+        // Long (plus its unused slot), UTF-8, string, float.
+        //
+
+        assertEquals(5, entries.size());
+        assertNull(entries.get(1));
+
+        for (int i = 0; i < entries.size(); i++) {
+            final ConstantPool.Entry entry = entries.get(i);
+
+            if (entry != null) {
+                assertEquals(i + 1, entry.index);
+                assertSame(entry, pool.get(entry.index));
+            }
+        }
+
+        //
+        // Lookups by value must find the decoded entries rather than append new ones.
+        //
+
+        final ConstantPool lookupPool = reread(original);
+        final ConstantPool.StringConstantEntry text = lookupPool.getStringConstant("text");
+
+        assertEquals(4, text.index);
+        assertEquals("text", text.getValue());
+        assertEquals(1, lookupPool.getLongConstant(1L).index);
+        assertEquals(5, lookupPool.getFloatConstant(0.5f).index);
+        assertSame(text, lookupPool.get(4));
+    }
+
+    @Test
+    public void testConcurrentGetSeesFullyDecodedEntries() throws Throwable {
+        final ConstantPool original = new ConstantPool();
+        final int count = 500;
+
+        for (int i = 0; i < count; i++) {
+            original.getStringConstant("value" + i);
+            original.getLongConstant(i);
+        }
+
+        final int threadCount = 8;
+
+        for (int round = 0; round < 20; round++) {
+            final ConstantPool pool = reread(original);
+            final CountDownLatch start = new CountDownLatch(1);
+            final AtomicReference<Throwable> failure = new AtomicReference<>();
+            final Thread[] threads = new Thread[threadCount];
+
+            for (int t = 0; t < threadCount; t++) {
+                final int offset = t;
+
+                threads[t] = new Thread() {
+                    @Override
+                    public void run() {
+                        try {
+                            start.await();
+
+                            for (int i = 0; i < count; i++) {
+                                //
+                                // Each value takes 4 slots: UTF-8, string, and a 2-slot long.
+                                //
+                                final int j = (i + offset * 61) % count;
+                                final int base = j * 4 + 1;
+
+                                assertEquals("value" + j, pool.lookupUtf8Constant(base));
+                                assertEquals("value" + j, pool.lookupStringConstant(base + 1));
+                                assertEquals((long) j, pool.lookupLongConstant(base + 2));
+                                assertEquals(base + 2, pool.get(base + 2).index);
+                            }
+                        }
+                        catch (final Throwable t) {
+                            failure.compareAndSet(null, t);
+                        }
+                    }
+                };
+
+                threads[t].start();
+            }
+
+            start.countDown();
+
+            for (final Thread thread : threads) {
+                thread.join();
+            }
+
+            if (failure.get() != null) {
+                throw failure.get();
+            }
+        }
+    }
+
+    private static ConstantPool reread(final ConstantPool pool) {
+        final Buffer b = new Buffer();
+
+        pool.write(b);
+        b.position(0);
+
+        return ConstantPool.read(b);
+    }
+}
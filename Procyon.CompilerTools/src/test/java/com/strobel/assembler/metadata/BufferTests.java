@@ -0,0 +1,87 @@
+package com.strobel.assembler.metadata;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class BufferTests {
+    @Test
+    public void testClassFileParsesInPlaceFromDirectBuffer() throws Throwable {
+        final Buffer heapBuffer = new Buffer();
+
+        assertTrue(new ClasspathTypeLoader().tryLoadType("java/util/ArrayList", heapBuffer));
+
+        final ByteBuffer direct = ByteBuffer.allocateDirect(heapBuffer.size());
+
+        direct.put(heapBuffer.array(), 0, heapBuffer.size());
+        direct.flip();
+
+        final Buffer directBuffer = new Buffer(direct);
+
+        assertTrue(directBuffer.isWrapped());
+
+        final TypeDefinition type = ClassFileReader.readClass(
+            ClassFileReader.OPTIONS_DEFAULT,
+            new MetadataSystem(new ClasspathTypeLoader()),
+            directBuffer
+        );
+
+        assertEquals("java/util/ArrayList", type.getInternalName());
+        assertTrue(directBuffer.isWrapped());
+    }
+
+    @Test
+    public void testWritingToWrappedBufferCopiesContents() throws Throwable {
+        final ByteBuffer source = ByteBuffer.allocateDirect(8);
+
+        source.putInt(0, 0xCAFEBABE);
+
+        final Buffer buffer = new Buffer(source);
+
+        assertEquals(0xCAFEBABE, buffer.readInt());
+
+        buffer.position(0);
+        buffer.writeInt(0x12345678);
+
+        assertFalse(buffer.isWrapped());
+        assertEquals(0xCAFEBABE, source.getInt(0));
+
+        buffer.position(0);
+
+        assertEquals(0x12345678, buffer.readInt());
+        assertEquals(8, buffer.size());
+    }
+
+    @Test
+    public void testPooledBuffersAreReused() throws Throwable {
+        final Buffer buffer = BufferPool.acquire();
+
+        assertTrue(new ClasspathTypeLoader().tryLoadType("java/util/ArrayList", buffer));
+
+        final byte[] array = buffer.array();
+
+        BufferPool.release(buffer);
+
+        //
+        // A smaller class file is read into the same array rather than a new one.
+        //
+
+        final Buffer reused = BufferPool.acquire();
+
+        assertSame(buffer, reused);
+        assertEquals(0, reused.size());
+        assertTrue(new ClasspathTypeLoader().tryLoadType("java/lang/Void", reused));
+        assertSame(array, reused.array());
+
+        //
+        // A buffer which has wrapped storage it does not own is not pooled again.
+        //
+
+        reused.wrap(ByteBuffer.wrap(new byte[4096]));
+        BufferPool.release(reused);
+
+        assertNotSame(reused, BufferPool.acquire());
+    }
+}
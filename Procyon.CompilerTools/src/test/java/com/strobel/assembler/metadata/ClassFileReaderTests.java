@@ -0,0 +1,46 @@
+package com.strobel.assembler.metadata;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ClassFileReaderTests {
+    @Test
+    public void testHeaderOnlyTypeReadsMembersOnDemand() throws Throwable {
+        final ITypeLoader typeLoader = new ClasspathTypeLoader();
+        final Buffer fullBuffer = new Buffer(0);
+        final Buffer headerBuffer = new Buffer(0);
+
+        assertTrue(typeLoader.tryLoadType("java/util/ArrayList", fullBuffer));
+        assertTrue(typeLoader.tryLoadType("java/util/ArrayList", headerBuffer));
+
+        final TypeDefinition full = ClassFileReader.readClass(
+            ClassFileReader.OPTIONS_DEFAULT,
+            new MetadataSystem(typeLoader),
+            fullBuffer
+        );
+
+        final TypeDefinition header = ClassFileReader.readClass(
+            ClassFileReader.OPTIONS_DEFAULT | ClassFileReader.OPTION_HEADER_ONLY,
+            new MetadataSystem(typeLoader),
+            headerBuffer
+        );
+
+        assertFalse(full.hasDeferredMembers());
+        assertTrue(header.hasDeferredMembers());
+
+        assertEquals("java/util/AbstractList", header.getBaseType().getInternalName());
+        assertEquals(full.getExplicitInterfaces().size(), header.getExplicitInterfaces().size());
+        assertEquals(1, header.getGenericParameters().size());
+
+        //
+        // The header alone does not read the members; the first member accessor does.
+        //
+
+        assertTrue(header.hasDeferredMembers());
+        assertEquals(full.getDeclaredFields().size(), header.getDeclaredFields().size());
+        assertFalse(header.hasDeferredMembers());
+        assertEquals(full.getDeclaredMethods().size(), header.getDeclaredMethods().size());
+        assertEquals(full.getDeclaredTypes().size(), header.getDeclaredTypes().size());
+    }
+}
@@ -0,0 +1,83 @@
+package com.strobel.assembler.metadata;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.*;
+
+public class ClasspathIndexTypeLoaderTests {
+    @Test
+    public void testLoadsTypesFromDirectoriesAndArchives() throws Throwable {
+        final byte[] listClass = readClassFile("java/util/ArrayList");
+        final byte[] mapClass = readClassFile("java/util/HashMap");
+
+        final File root = Files.createTempDirectory("procyon-classpath").toFile();
+        final File directory = new File(root, "classes");
+        final File jar = new File(root, "lib.jar");
+
+        final File classFile = new File(directory, "java/util/ArrayList.class");
+
+        assertTrue(classFile.getParentFile().mkdirs());
+        Files.write(classFile.toPath(), listClass);
+
+        try (final ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar))) {
+            out.putNextEntry(new ZipEntry("java/util/HashMap.class"));
+            out.write(mapClass);
+            out.closeEntry();
+            out.putNextEntry(new ZipEntry("java/util/ArrayList.class"));
+            out.write(mapClass);
+            out.closeEntry();
+            out.putNextEntry(new ZipEntry("META-INF/versions/11/java/util/LinkedList.class"));
+            out.write(mapClass);
+            out.closeEntry();
+        }
+
+        final ClasspathIndexTypeLoader loader = new ClasspathIndexTypeLoader(
+            Arrays.asList(directory, jar, new File(root, "missing.jar"))
+        );
+
+        assertEquals(2, loader.getTypeCount());
+        assertFalse(loader.containsType("java/util/LinkedList"));
+
+        final Buffer buffer = new Buffer(0);
+
+        //
+        // The directory comes first, so its copy of ArrayList shadows the jar's.
+        //
+
+        assertTrue(loader.tryLoadType("java/util/ArrayList", buffer));
+        assertArrayEquals(listClass, Arrays.copyOf(buffer.array(), buffer.size()));
+
+        buffer.reset(0);
+
+        assertTrue(loader.tryLoadType("java/util/HashMap", buffer));
+        assertArrayEquals(mapClass, Arrays.copyOf(buffer.array(), buffer.size()));
+
+        buffer.reset(0);
+
+        assertFalse(loader.tryLoadType("java/util/LinkedList", buffer));
+        assertFalse(loader.tryLoadType("java/util/HashSet", buffer));
+
+        //
+        // Once closed, the loader releases the jar and loads nothing more.
+        //
+
+        loader.close();
+        loader.close();
+
+        assertFalse(loader.tryLoadType("java/util/HashMap", buffer));
+        assertFalse(loader.tryLoadType("java/util/ArrayList", buffer));
+    }
+
+    private static byte[] readClassFile(final String internalName) {
+        final Buffer buffer = new Buffer(0);
+        assertTrue(new ClasspathTypeLoader().tryLoadType(internalName, buffer));
+        return Arrays.copyOf(buffer.array(), buffer.size());
+    }
+}
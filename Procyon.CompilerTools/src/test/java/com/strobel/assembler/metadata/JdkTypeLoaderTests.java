@@ -0,0 +1,86 @@
+package com.strobel.assembler.metadata;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import static org.junit.Assert.*;
+
+public class JdkTypeLoaderTests {
+    @Test
+    public void testLoadsRuntimeTypes() throws Throwable {
+        final JdkTypeLoader typeLoader = new JdkTypeLoader();
+
+        for (final String internalName : new String[] { "java/lang/String", "java/util/Map$Entry", "javax/swing/JTable" }) {
+            final Buffer expected = new Buffer(0);
+            final Buffer actual = new Buffer(0);
+
+            assertTrue(new ClasspathTypeLoader().tryLoadType(internalName, expected));
+            assertTrue(typeLoader.tryLoadType(internalName, actual));
+
+            assertArrayEquals(
+                Arrays.copyOf(expected.array(), expected.size()),
+                Arrays.copyOf(actual.array(), actual.size())
+            );
+        }
+
+        final Buffer buffer = new Buffer(0);
+
+        assertFalse(typeLoader.tryLoadType("java/lang/NoSuchType", buffer));
+        assertFalse(typeLoader.tryLoadType("com/example/NoSuchType", buffer));
+        assertFalse(typeLoader.tryLoadType("NoSuchType", buffer));
+    }
+
+    @Test
+    public void testLoadsTypesFromJava8JdkHome() throws Throwable {
+        //
+        // A Java 8 JDK keeps tools.jar and friends in 'lib', and the runtime itself in 'jre/lib'.
+        //
+
+        final File jdkHome = Files.createTempDirectory("procyon-jdk8").toFile();
+        final File toolsJar = new File(jdkHome, "lib" + File.separator + "tools.jar");
+        final File runtimeJar = new File(jdkHome, "jre" + File.separator + "lib" + File.separator + "rt.jar");
+
+        try {
+            final Buffer object = new Buffer(0);
+            final Buffer string = new Buffer(0);
+
+            assertTrue(new ClasspathTypeLoader().tryLoadType("java/lang/Object", object));
+            assertTrue(new ClasspathTypeLoader().tryLoadType("java/lang/String", string));
+
+            writeJar(toolsJar, "com/sun/tools/javac/Main", string);
+            writeJar(runtimeJar, "java/lang/Object", object);
+
+            final JdkTypeLoader typeLoader = new JdkTypeLoader(jdkHome);
+            final Buffer actual = new Buffer(0);
+
+            assertTrue(typeLoader.tryLoadType("java/lang/Object", actual));
+            assertArrayEquals(Arrays.copyOf(object.array(), object.size()), Arrays.copyOf(actual.array(), actual.size()));
+            assertTrue(typeLoader.tryLoadType("com/sun/tools/javac/Main", actual));
+            assertFalse(typeLoader.tryLoadType("java/lang/NoSuchType", actual));
+        }
+        finally {
+            toolsJar.delete();
+            runtimeJar.delete();
+            runtimeJar.getParentFile().delete();
+            runtimeJar.getParentFile().getParentFile().delete();
+            toolsJar.getParentFile().delete();
+            jdkHome.delete();
+        }
+    }
+
+    private static void writeJar(final File jarFile, final String internalName, final Buffer classFile) throws Throwable {
+        assertTrue(jarFile.getParentFile().mkdirs());
+
+        try (final JarOutputStream out = new JarOutputStream(new FileOutputStream(jarFile))) {
+            out.putNextEntry(new JarEntry(internalName + ".class"));
+            out.write(classFile.array(), 0, classFile.size());
+            out.closeEntry();
+        }
+    }
+}
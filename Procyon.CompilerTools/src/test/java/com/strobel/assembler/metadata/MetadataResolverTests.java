@@ -4,10 +4,17 @@ import com.strobel.assembler.ir.Instruction;
 import com.strobel.assembler.ir.OpCode;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 public class MetadataResolverTests {
     @Test
@@ -37,6 +44,45 @@ public class MetadataResolverTests {
         }
     }
 
+    @Test
+    public void testConcurrentResolutionSharesDefinitions() throws Throwable {
+        final MetadataSystem metadataSystem = new MetadataSystem(new ClasspathTypeLoader(), true);
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        assertTrue(metadataSystem.isThreadSafe());
+
+        try {
+            final List<Future<TypeDefinition>> results = new ArrayList<>();
+
+            for (int i = 0; i < 16; i++) {
+                results.add(
+                    executor.submit(
+                        new Callable<TypeDefinition>() {
+                            @Override
+                            public TypeDefinition call() {
+                                final TypeDefinition arrayList = metadataSystem.lookupType("java/util/ArrayList").resolve();
+
+                                assertNotNull(arrayList);
+                                assertNotNull(arrayList.getBaseType().resolve());
+
+                                return arrayList;
+                            }
+                        }
+                    )
+                );
+            }
+
+            final TypeDefinition expected = results.get(0).get();
+
+            for (final Future<TypeDefinition> result : results) {
+                assertSame(expected, result.get());
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
     // <editor-fold defaultstate="collapsed" desc="Helper Classes">
 
     @SuppressWarnings("unused")
@@ -0,0 +1,89 @@
+package com.strobel.assembler.metadata;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MetadataSystemTests {
+    private final static class CountingTypeLoader implements ITypeLoader {
+        private final ITypeLoader _typeLoader = new ClasspathTypeLoader();
+
+        int loadCount;
+
+        @Override
+        public boolean tryLoadType(final String internalName, final Buffer buffer) {
+            ++loadCount;
+            return _typeLoader.tryLoadType(internalName, buffer);
+        }
+    }
+
+    @Test
+    public void testMissingTypesAreSearchedAgainByDefault() throws Throwable {
+        final CountingTypeLoader typeLoader = new CountingTypeLoader();
+        final MetadataSystem metadataSystem = new MetadataSystem(typeLoader);
+
+        assertEquals(0, metadataSystem.getMissingTypeCacheCapacity());
+
+        assertNull(metadataSystem.resolveType("com/example/Missing", false));
+        assertNull(metadataSystem.resolveType("com/example/Missing", false));
+        assertEquals(2, typeLoader.loadCount);
+        assertEquals(0, metadataSystem.getStatistics().getMissingTypeHits());
+    }
+
+    @Test
+    public void testMissingTypesAreNotSearchedAgain() throws Throwable {
+        final CountingTypeLoader typeLoader = new CountingTypeLoader();
+        final MetadataSystem metadataSystem = new MetadataSystem(typeLoader);
+
+        metadataSystem.setMissingTypeCacheCapacity(MetadataSystem.DEFAULT_MISSING_TYPE_CACHE_CAPACITY);
+
+        assertNull(metadataSystem.resolveType("com/example/Missing", false));
+        assertNull(metadataSystem.resolveType("com/example/Missing", false));
+        assertEquals(1, typeLoader.loadCount);
+
+        assertNotNull(metadataSystem.resolveType("java/lang/String", false));
+        assertNotNull(metadataSystem.resolveType("java/lang/String", false));
+
+        final MetadataStatistics statistics = metadataSystem.getStatistics();
+
+        assertEquals(1, statistics.getMissingTypeHits());
+        assertEquals(1, statistics.getTypesNotFound());
+        assertTrue(statistics.getTypesLoaded() >= 1);
+        assertTrue(statistics.getBytesRead() > 0);
+        assertTrue(statistics.getCacheHits() >= 1);
+
+        //
+        // Without the cache, every lookup searches the type loader again.
+        //
+
+        metadataSystem.setMissingTypeCacheCapacity(0);
+
+        final int loadCount = typeLoader.loadCount;
+
+        assertNull(metadataSystem.resolveType("com/example/Missing", false));
+        assertNull(metadataSystem.resolveType("com/example/Missing", false));
+        assertEquals(loadCount + 2, typeLoader.loadCount);
+    }
+
+    @Test
+    public void testMissingTypeCacheIsBounded() throws Throwable {
+        final CountingTypeLoader typeLoader = new CountingTypeLoader();
+        final MetadataSystem metadataSystem = new MetadataSystem(typeLoader);
+
+        metadataSystem.setMissingTypeCacheCapacity(2);
+
+        assertNull(metadataSystem.resolveType("com/example/A", false));
+        assertNull(metadataSystem.resolveType("com/example/B", false));
+        assertNull(metadataSystem.resolveType("com/example/C", false));
+        assertEquals(3, typeLoader.loadCount);
+
+        //
+        // The eldest missing type was forgotten, so it is searched for again.
+        //
+
+        assertNull(metadataSystem.resolveType("com/example/C", false));
+        assertEquals(3, typeLoader.loadCount);
+        assertNull(metadataSystem.resolveType("com/example/A", false));
+        assertEquals(4, typeLoader.loadCount);
+    }
+}
@@ -0,0 +1,72 @@
+package com.strobel.assembler.metadata;
+
+import com.strobel.assembler.ir.Instruction;
+import com.strobel.assembler.ir.InstructionCollection;
+import com.strobel.assembler.ir.OperandType;
+import com.strobel.assembler.ir.PackedInstructions;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MethodReaderTests {
+    @Test
+    public void testPackedInstructionsMatchMethodBody() throws Throwable {
+        final MetadataSystem metadataSystem = new MetadataSystem(new ClasspathTypeLoader());
+        final TypeDefinition type = metadataSystem.lookupType("java/util/regex/Pattern").resolve();
+
+        int switchCount = 0;
+
+        for (final MethodDefinition method : type.getDeclaredMethods()) {
+            final MethodBody body = method.getBody();
+
+            if (body == null) {
+                assertNull(method.getPackedInstructions());
+                continue;
+            }
+
+            final InstructionCollection instructions = body.getInstructions();
+            final PackedInstructions packed = method.getPackedInstructions();
+            final PackedInstructions.View view = packed.view();
+
+            assertEquals(instructions.size(), packed.size());
+            assertEquals(body.getCodeSize(), packed.getCodeSize());
+
+            for (int i = 0; i < instructions.size(); i++, view.moveNext()) {
+                final Instruction instruction = instructions.get(i);
+
+                assertEquals(i, view.getIndex());
+                assertEquals(instruction.getOffset(), view.getOffset());
+                assertSame(instruction.getOpCode(), view.getOpCode());
+                assertEquals(i, packed.indexOfOffset(instruction.getOffset()));
+
+                final OperandType operandType = instruction.getOpCode().getOperandType();
+
+                if (operandType == OperandType.BranchTarget || operandType == OperandType.BranchTargetWide) {
+                    final Instruction target = instruction.getOperand(0);
+                    assertEquals(target.getOffset(), packed.getOffset(view.getBranchTarget()));
+                }
+                else if (operandType == OperandType.Switch) {
+                    final SwitchInfo switchInfo = instruction.getOperand(0);
+                    final Instruction[] targets = switchInfo.getTargets();
+
+                    assertEquals(switchInfo.getDefaultTarget().getOffset(), packed.getOffset(packed.getSwitchDefaultTarget(i)));
+                    assertEquals(targets.length, packed.getSwitchTargetCount(i));
+
+                    for (int j = 0; j < targets.length; j++) {
+                        assertEquals(targets[j].getOffset(), packed.getOffset(packed.getSwitchTarget(i, j)));
+                    }
+
+                    ++switchCount;
+                }
+                else if (operandType == OperandType.MethodReference) {
+                    final MethodReference expected = instruction.getOperand(0);
+                    assertEquals(expected.getFullName(), view.getMethodOperand().getFullName());
+                }
+            }
+
+            assertFalse(view.isValid());
+        }
+
+        assertTrue(switchCount > 0);
+    }
+}
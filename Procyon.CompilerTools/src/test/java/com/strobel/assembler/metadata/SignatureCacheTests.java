@@ -0,0 +1,105 @@
+package com.strobel.assembler.metadata;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SignatureCacheTests {
+    @Test
+    public void testParsersShareScopeIndependentResults() throws Throwable {
+        final MetadataSystem metadataSystem = new MetadataSystem(new ClasspathTypeLoader());
+        final MetadataParser first = new MetadataParser(metadataSystem);
+        final MetadataParser second = new MetadataParser(metadataSystem);
+
+        assertSame(first.parseTypeSignature("Ljava/lang/String;"), second.parseTypeSignature("Ljava/lang/String;"));
+        assertSame(first.parseTypeDescriptor("java/util/List"), second.parseTypeDescriptor("java/util/List"));
+
+        final IMethodSignature s1 = first.parseMethodSignature("(Ljava/lang/String;J)V");
+        final IMethodSignature s2 = second.parseMethodSignature("(Ljava/lang/String;J)V");
+
+        //
+        // Parameter definitions belong to a single method, so they must never be shared.
+        //
+
+        assertNotSame(s1, s2);
+        assertNotSame(s1.getParameters().get(0), s2.getParameters().get(0));
+        assertSame(s1.getParameters().get(0).getParameterType(), s2.getParameters().get(0).getParameterType());
+        assertEquals(1, s2.getParameters().get(1).getSlot());
+        assertEquals("(Ljava/lang/String;J)V", s2.getErasedSignature());
+    }
+
+    @Test
+    public void testTypeVariablesFollowGenericScope() throws Throwable {
+        final MetadataSystem metadataSystem = new MetadataSystem(new ClasspathTypeLoader());
+        final MetadataParser parser = new MetadataParser(metadataSystem);
+        final GenericParameter outer = new GenericParameter("T");
+        final GenericParameter inner = new GenericParameter("T");
+
+        parser.pushGenericContext(contextOf(outer));
+
+        assertSame(outer, parser.parseTypeSignature("TT;"));
+        assertSame(outer, parser.parseMethodSignature("(TT;)V").getParameters().get(0).getParameterType());
+
+        parser.pushGenericContext(contextOf(inner));
+
+        assertSame(inner, parser.parseTypeSignature("TT;"));
+        assertSame(inner, parser.parseMethodSignature("(TT;)V").getParameters().get(0).getParameterType());
+
+        parser.popGenericContext();
+
+        assertSame(outer, parser.parseTypeSignature("TT;"));
+
+        //
+        // Results which depended on one parser's scope are never seen by another parser.
+        //
+
+        final MetadataParser unscoped = new MetadataParser(metadataSystem);
+        final TypeReference unboundVariable = unscoped.parseTypeSignature("TT;");
+
+        assertNotSame(outer, unboundVariable);
+        assertNotSame(inner, unboundVariable);
+    }
+
+    @Test
+    public void testOwnersWithInnerClassesBypassSharedCache() throws Throwable {
+        final MetadataSystem metadataSystem = new MetadataSystem(new ClasspathTypeLoader());
+        final TypeDefinition map = metadataSystem.lookupType("java/util/Map").resolve();
+
+        assertNotNull(map);
+
+        //
+        // An ownerless parser cannot tell that 'Map$Entry' is nested; an owner with an inner
+        // class entry for it can, and must not be handed the flat type cached by the former.
+        //
+
+        final TypeReference flatEntry = new MetadataParser(metadataSystem).parseTypeSignature("Ljava/util/Map$Entry;");
+        final TypeReference flatDescriptor = new MetadataParser(metadataSystem).parseTypeDescriptor("java/util/Map$Entry");
+
+        assertFalse(flatEntry.isNested());
+        assertFalse(flatDescriptor.isNested());
+
+        final MetadataParser owned = new MetadataParser(map);
+        final TypeReference nestedEntry = owned.parseTypeSignature("Ljava/util/Map$Entry;");
+
+        assertTrue(nestedEntry.isNested());
+        assertEquals("java/util/Map", nestedEntry.getDeclaringType().getInternalName());
+        assertTrue(owned.parseTypeDescriptor("java/util/Map$Entry").isNested());
+        assertTrue(owned.parseMethodSignature("()Ljava/util/Map$Entry;").getReturnType().isNested());
+        assertSame(nestedEntry, owned.parseTypeSignature("Ljava/util/Map$Entry;"));
+
+        //
+        // Nor may the owner's nested type leak back into the shared cache.
+        //
+
+        assertFalse(new MetadataParser(metadataSystem).parseTypeSignature("Ljava/util/Map$Entry;").isNested());
+    }
+
+    private static IGenericContext contextOf(final GenericParameter genericParameter) {
+        return new IGenericContext() {
+            @Override
+            public GenericParameter findTypeVariable(final String name) {
+                return genericParameter.getName().equals(name) ? genericParameter : null;
+            }
+        };
+    }
+}
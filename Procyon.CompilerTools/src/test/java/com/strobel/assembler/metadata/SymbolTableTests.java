@@ -0,0 +1,96 @@
+package com.strobel.assembler.metadata;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class SymbolTableTests {
+    @Test
+    public void testEqualBytesYieldSameString() throws Throwable {
+        final SymbolTable symbols = new SymbolTable();
+        final byte[] first = "xx()Vxx".getBytes(StandardCharsets.UTF_8);
+        final byte[] second = "()V".getBytes(StandardCharsets.UTF_8);
+
+        final String symbol = symbols.lookup(first, 2, 3);
+
+        assertEquals("()V", symbol);
+        assertSame(symbol, symbols.lookup(second, 0, second.length));
+        assertEquals("", symbols.lookup(first, 0, 0));
+        assertEquals("été", symbols.lookup("été".getBytes(StandardCharsets.UTF_8), 0, 5));
+        assertEquals(3, symbols.size());
+
+        //
+        // Force the table to grow, and make sure earlier symbols survive.
+        //
+
+        for (int i = 0; i < 10000; i++) {
+            final byte[] bytes = ("symbol" + i).getBytes(StandardCharsets.UTF_8);
+            assertEquals("symbol" + i, symbols.lookup(bytes, 0, bytes.length));
+        }
+
+        assertEquals(10003, symbols.size());
+        assertSame(symbol, symbols.lookup(second, 0, second.length));
+    }
+
+    @Test
+    public void testNonAsciiSymbolsMatchTheirOwnBytesOnly() throws Throwable {
+        final SymbolTable symbols = new SymbolTable();
+        final byte[] cjk = { (byte) 0xE4, (byte) 0xB8, (byte) 0xAD, 'x' };
+        final byte[] nul = { 'a', (byte) 0xC0, (byte) 0x80 };
+
+        final String first = symbols.lookup(cjk, 0, cjk.length);
+
+        assertEquals("\u4e2dx", first);
+        assertSame(first, symbols.lookup(cjk.clone(), 0, cjk.length));
+        assertEquals("\u4e2d", symbols.lookup(cjk, 0, 3));
+        assertEquals("a\u0000", symbols.lookup(nul, 0, nul.length));
+        assertEquals("a", symbols.lookup(nul, 0, 1));
+        assertEquals(4, symbols.size());
+    }
+
+    @Test
+    public void testTableStartsOverAtMaximumSize() throws Throwable {
+        final SymbolTable symbols = new SymbolTable(100);
+        final byte[] first = "first".getBytes(StandardCharsets.UTF_8);
+        final String symbol = symbols.lookup(first, 0, first.length);
+
+        for (int i = 0; i < 1000; i++) {
+            final byte[] bytes = ("symbol" + i).getBytes(StandardCharsets.UTF_8);
+            assertEquals("symbol" + i, symbols.lookup(bytes, 0, bytes.length));
+            assertTrue(symbols.size() <= 100);
+        }
+
+        //
+        // The first symbol was dropped, so an equal string is decoded again.
+        //
+
+        final String again = symbols.lookup(first, 0, first.length);
+
+        assertEquals(symbol, again);
+        assertNotSame(symbol, again);
+    }
+
+    @Test
+    public void testTypesShareSymbols() throws Throwable {
+        final MetadataSystem metadataSystem = new MetadataSystem(new ClasspathTypeLoader());
+        final TypeDefinition string = metadataSystem.resolveType("java/lang/String", false);
+        final TypeDefinition integer = metadataSystem.resolveType("java/lang/Integer", false);
+
+        assertNotNull(string);
+        assertNotNull(integer);
+        assertSame(findMethod(string, "toString").getName(), findMethod(integer, "toString").getName());
+        assertTrue(metadataSystem.getSymbolTable().size() > 0);
+    }
+
+    private static MethodDefinition findMethod(final TypeDefinition type, final String name) {
+        for (final MethodDefinition method : type.getDeclaredMethods()) {
+            if (name.equals(method.getName())) {
+                return method;
+            }
+        }
+        fail("Method not found: " + name);
+        return null;
+    }
+}
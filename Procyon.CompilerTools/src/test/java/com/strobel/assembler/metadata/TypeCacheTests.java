@@ -0,0 +1,49 @@
+package com.strobel.assembler.metadata;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TypeCacheTests {
+    private static TypeDefinition lookup(final String descriptor) {
+        return MetadataSystem.instance().lookupType(descriptor).resolve();
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEvictionKeepsTypesInUse() throws Throwable {
+        final TypeCache cache = TypeCache.createLeastRecentlyUsed(2);
+
+        final TypeDefinition string = lookup("java/lang/String");
+        final TypeDefinition integer = lookup("java/lang/Integer");
+        final TypeDefinition list = lookup("java/util/List");
+
+        assertSame(string, cache.cache("java/lang/String", string, 0));
+        assertSame(integer, cache.cache("java/lang/Integer", integer, 0));
+        assertSame(list, cache.cache("java/util/List", list, 0));
+
+        //
+        // The eldest entry has been evicted, but it is still strongly reachable from this
+        // test, so the cache must hand out the same definition rather than a new one.
+        //
+
+        assertSame(string, cache.get("java/lang/String"));
+        assertSame(string, cache.cache("java/lang/String", new TypeDefinition(), 0));
+    }
+
+    @Test
+    public void testPinnedTypesAreNeverEvicted() throws Throwable {
+        final TypeCache cache = TypeCache.createSizeBounded(1);
+
+        final TypeDefinition object = lookup("java/lang/Object");
+        final TypeDefinition string = lookup("java/lang/String");
+
+        cache.pin("java/lang/Object");
+
+        assertTrue(cache.isPinned("java/lang/Object"));
+        assertSame(object, cache.cache("java/lang/Object", object, 4096));
+        assertSame(string, cache.cache("java/lang/String", string, 4096));
+
+        assertSame(object, cache.get("java/lang/Object"));
+        assertEquals(2, cache.size());
+    }
+}
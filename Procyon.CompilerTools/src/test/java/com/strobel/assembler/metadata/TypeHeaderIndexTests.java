@@ -0,0 +1,113 @@
+package com.strobel.assembler.metadata;
+
+import com.strobel.assembler.ir.Instruction;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TypeHeaderIndexTests {
+    @Test
+    public void testIndexedTypesLoadBodiesFromSource() throws Throwable {
+        final File directory = Files.createTempDirectory("procyon-index").toFile();
+        final File container = new File(directory, "container.bin");
+
+        try {
+            assertTrue(container.createNewFile());
+
+            final TypeHeaderIndex first = TypeHeaderIndex.open(directory, container, new ClasspathTypeLoader());
+            final MetadataSystem firstSystem = new MetadataSystem(first);
+
+            firstSystem.setTypeHeaderIndex(first);
+
+            final TypeDefinition firstArrayList = firstSystem.lookupType("java/util/ArrayList").resolve();
+
+            assertNotNull(firstArrayList);
+            assertTrue(first.size() > 0);
+
+            //
+            // Types indexed by this run still read their bodies from the full class file.
+            //
+
+            final MetadataSystem plainSystem = new MetadataSystem(new ClasspathTypeLoader());
+            final TypeDefinition plainArrayList = plainSystem.lookupType("java/util/ArrayList").resolve();
+
+            assertEquals(
+                describeBody(plainArrayList, "indexOf"),
+                describeBody(firstArrayList, "indexOf")
+            );
+
+            first.save();
+
+            //
+            // Nothing but the index itself should be left in the directory.
+            //
+
+            assertEquals(2, directory.listFiles().length);
+
+            final TypeHeaderIndex second = TypeHeaderIndex.open(directory, container, new ClasspathTypeLoader());
+
+            assertEquals(first.size(), second.size());
+
+            final MetadataSystem secondSystem = new MetadataSystem(second);
+
+            secondSystem.setTypeHeaderIndex(second);
+
+            final TypeDefinition arrayList = secondSystem.lookupType("java/util/ArrayList").resolve();
+            final List<MethodReference> methods = MetadataHelper.findMethods(arrayList, MetadataFilters.matchName("size"));
+
+            assertEquals(1, methods.size());
+
+            final MethodDefinition size = methods.get(0).resolve();
+
+            assertTrue(Flags.testAny(size.getFlags(), Flags.STRIPPED_CODE));
+
+            final List<Instruction> instructions = size.getBody().getInstructions();
+
+            assertFalse(instructions.isEmpty());
+
+            //
+            // A loader ahead of the index in the chain wins over the index.
+            //
+
+            final MetadataSystem thirdSystem = new MetadataSystem(new CompositeTypeLoader(new ClasspathTypeLoader(), second));
+
+            thirdSystem.setTypeHeaderIndex(second);
+
+            final TypeDefinition unstrippedArrayList = thirdSystem.lookupType("java/util/ArrayList").resolve();
+            final MethodDefinition unstrippedSize = MetadataHelper.findMethods(unstrippedArrayList, MetadataFilters.matchName("size")).get(0).resolve();
+
+            assertFalse(Flags.testAny(unstrippedSize.getFlags(), Flags.STRIPPED_CODE));
+        }
+        finally {
+            final File[] files = directory.listFiles();
+
+            if (files != null) {
+                for (final File file : files) {
+                    file.delete();
+                }
+            }
+
+            directory.delete();
+        }
+    }
+
+    private static List<String> describeBody(final TypeDefinition type, final String methodName) {
+        final MethodDefinition method = MetadataHelper.findMethods(type, MetadataFilters.matchName(methodName)).get(0).resolve();
+
+        assertFalse(Flags.testAny(method.getFlags(), Flags.STRIPPED_CODE));
+
+        final List<String> instructions = new ArrayList<>();
+
+        for (final Instruction instruction : method.getBody().getInstructions()) {
+            instructions.add(instruction.toString());
+        }
+
+        assertFalse(instructions.isEmpty());
+        return instructions;
+    }
+}
@@ -0,0 +1,66 @@
+package com.strobel.decompiler;
+
+import com.strobel.assembler.metadata.ClasspathTypeLoader;
+import com.strobel.assembler.metadata.MetadataSystem;
+import com.strobel.assembler.metadata.MethodDefinition;
+import com.strobel.assembler.metadata.TypeDefinition;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MethodTimeoutTests {
+    @Test
+    public void testTimerStopsDecompilationAfterTimeout() throws Throwable {
+        final MethodDefinition method = findMethod("toString");
+        final DecompilerSettings settings = new DecompilerSettings();
+        final DecompilerContext context = new DecompilerContext(settings);
+
+        settings.setMethodTimeout(1L);
+
+        assertTrue(context.startMethodTimer(method));
+
+        //
+        // A nested method body shares the timer of the method which started it.
+        //
+
+        assertFalse(context.startMethodTimer(findMethod("hashCode")));
+
+        Thread.sleep(10L);
+
+        try {
+            context.throwIfCanceled();
+            fail("Expected the method to time out.");
+        }
+        catch (final MethodTimeoutException e) {
+            assertSame(method, e.getMethod());
+            assertEquals(1L, e.getTimeout());
+        }
+
+        context.stopMethodTimer();
+        context.throwIfCanceled();
+    }
+
+    @Test
+    public void testNoTimerWithoutTimeout() throws Throwable {
+        final DecompilerContext context = new DecompilerContext(new DecompilerSettings());
+
+        assertFalse(context.startMethodTimer(findMethod("toString")));
+        context.throwIfCanceled();
+    }
+
+    private static MethodDefinition findMethod(final String name) {
+        final MetadataSystem metadataSystem = new MetadataSystem(new ClasspathTypeLoader());
+        final TypeDefinition type = metadataSystem.lookupType("java/lang/Object").resolve();
+
+        assertNotNull(type);
+
+        for (final MethodDefinition method : type.getDeclaredMethods()) {
+            if (name.equals(method.getName())) {
+                return method;
+            }
+        }
+
+        fail("Method not found: " + name);
+        return null;
+    }
+}
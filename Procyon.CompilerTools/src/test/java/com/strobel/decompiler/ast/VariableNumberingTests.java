@@ -0,0 +1,64 @@
+package com.strobel.decompiler.ast;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class VariableNumberingTests {
+    @Test
+    public void testNumberingIsDenseAndStable() throws Throwable {
+        final VariableNumbering first = new VariableNumbering();
+        final VariableNumbering second = new VariableNumbering();
+        final Variable a = new Variable();
+        final Variable b = new Variable();
+
+        assertEquals(-1, first.find(a));
+        assertEquals(0, first.add(a));
+        assertEquals(1, first.add(b));
+        assertEquals(0, first.add(a));
+
+        //
+        // A variable may be numbered by several numberings at once.
+        //
+
+        assertEquals(0, second.add(b));
+        assertEquals(1, first.find(b));
+        assertEquals(0, second.find(b));
+        assertEquals(-1, second.find(a));
+
+        assertEquals(2, first.size());
+        assertEquals(1, second.size());
+    }
+
+    @Test
+    public void testUseCountsAndSetsGrow() throws Throwable {
+        final VariableNumbering numbering = new VariableNumbering();
+        final VariableUseCounts counts = new VariableUseCounts(numbering);
+        final VariableSet evens = new VariableSet(numbering);
+        final Variable[] variables = new Variable[200];
+
+        for (int i = 0; i < variables.length; i++) {
+            variables[i] = new Variable();
+
+            for (int j = 0; j <= i % 3; j++) {
+                counts.increment(variables[i]);
+            }
+
+            if (i % 2 == 0) {
+                assertTrue(evens.add(variables[i]));
+                assertFalse(evens.add(variables[i]));
+            }
+        }
+
+        for (int i = 0; i < variables.length; i++) {
+            assertEquals(i % 3 + 1, counts.get(variables[i]));
+            assertEquals(i % 2 == 0, evens.contains(variables[i]));
+        }
+
+        counts.set(variables[5], 0);
+
+        assertEquals(0, counts.get(variables[5]));
+        assertEquals(0, counts.get(new Variable()));
+        assertFalse(evens.contains(new Variable()));
+    }
+}
@@ -114,6 +114,12 @@ public class CommandLineOptions {
         description = "Write decompiled results to specified directory instead of the console.")
     private String _outputDirectory;
 
+    @Parameter(
+        names = { "-oz", "--output-zip" },
+        description = "Write decompiled results into the specified zip or sources jar file instead of the console " +
+                      "or an output directory.")
+    private String _outputZipFile;
+
     @Parameter(
         names = { "-jar", "--jar-file" },
         description = "[DEPRECATED] Decompile all classes in the specified jar file (disables -ent and -s).")
@@ -160,6 +166,99 @@ public class CommandLineOptions {
         description = "Enable eager loading of method bodies (may speed up decompilation of larger archives).")
     private boolean _isEagerMethodLoadingEnabled;
 
+    @Parameter(
+        names = { "-th", "--threads" },
+        description = "Number of threads to use.  Decompiles the types of a jar file in parallel when combined " +
+                      "with -o or -oz, sets how many --server requests run at once, and sets how many class " +
+                      "files -pf reads at once.",
+        arity = 1)
+    private int _threadCount = 1;
+
+    @Parameter(
+        names = { "-tc", "--type-cache-size" },
+        description = "Maximum number of types to keep in memory while decompiling a jar file.  " +
+                      "By default, types are evicted only when memory runs low.",
+        arity = 1)
+    private int _typeCacheSize;
+
+    @Parameter(
+        names = { "-inc", "--incremental" },
+        description = "When decompiling a jar file, skip types whose class files have not changed since the " +
+                      "last run into the same output directory, and delete the output of types removed from " +
+                      "the jar (only in combination with -o).")
+    private boolean _incremental;
+
+    @Parameter(
+        names = { "-mc", "--metadata-cache" },
+        description = "Directory in which to keep an index of runtime library types between runs.  " +
+                      "Library types found in the index are not re-read from the runtime image.",
+        arity = 1)
+    private String _metadataCacheDirectory;
+
+    @Parameter(
+        names = { "-cp", "--class-path" },
+        description = "Jar files, jmod files, and class file directories in which to look up referenced library " +
+                      "types before searching the runtime class path.",
+        arity = 1)
+    private String _classPath;
+
+    @Parameter(
+        names = { "--jdk" },
+        description = "Home directory of the JDK whose runtime library types are used to resolve references, " +
+                      "instead of the runtime running the decompiler.",
+        arity = 1)
+    private String _jdkHome;
+
+    @Parameter(
+        names = { "-pf", "--prefetch" },
+        description = "Load the headers of all types in a jar file up front, reading class files in parallel " +
+                      "(uses the number of threads given by -th, or one per processor).")
+    private boolean _isPrefetchEnabled;
+
+    @Parameter(
+        names = { "--stats" },
+        description = "Print type resolution statistics (cache hits and misses, class file bytes read, and load " +
+                      "time) after decompiling.")
+    private boolean _isStatisticsEnabled;
+
+    @Parameter(
+        names = { "--profile" },
+        description = "Profile the bytecode AST optimization steps of every decompiled method, and write the " +
+                      "results to the specified file (as JSON if the file name ends in .json, otherwise as CSV).",
+        arity = 1)
+    private String _profileFile;
+
+    @Parameter(
+        names = { "--profile-top" },
+        description = "Profile the bytecode AST optimization steps, and print the specified number of methods " +
+                      "which took the longest to optimize.",
+        arity = 1)
+    private int _profileTopCount;
+
+    @Parameter(
+        names = { "--profile-allocations" },
+        description = "When profiling, also measure the bytes allocated by each optimization step.")
+    private boolean _isAllocationProfilingEnabled;
+
+    @Parameter(
+        names = { "--server" },
+        description = "Run as a long-lived decompiler server, reading requests from standard input and " +
+                      "writing results to standard output.")
+    private boolean _serverMode;
+
+    @Parameter(
+        names = { "--server-port" },
+        description = "Run as a long-lived decompiler server, accepting connections on the specified local port.",
+        arity = 1)
+    private int _serverPort;
+
+    @Parameter(
+        names = { "-mt", "--method-timeout" },
+        description = "Maximum number of milliseconds to spend decompiling a single method.  A method which takes " +
+                      "longer is written as commented bytecode instead.",
+        arity = 1)
+    private int _methodTimeout;
+
     @Parameter(
         names = { "-sm", "--simplify-member-references" },
         description = "Simplify type-qualified member references in Java output [EXPERIMENTAL].")
@@ -295,6 +394,14 @@ public class CommandLineOptions {
         _outputDirectory = outputDirectory;
     }
 
+    public final String getOutputZipFile() {
+        return _outputZipFile;
+    }
+
+    public final void setOutputZipFile(final String outputZipFile) {
+        _outputZipFile = outputZipFile;
+    }
+
     public final String getJarFile() {
         return _jarFile;
     }
@@ -375,6 +482,118 @@ public class CommandLineOptions {
         _isEagerMethodLoadingEnabled = isEagerMethodLoadingEnabled;
     }
 
+    public final int getThreadCount() {
+        return _threadCount;
+    }
+
+    public final void setThreadCount(final int threadCount) {
+        _threadCount = threadCount;
+    }
+
+    public final int getTypeCacheSize() {
+        return _typeCacheSize;
+    }
+
+    public final void setTypeCacheSize(final int typeCacheSize) {
+        _typeCacheSize = typeCacheSize;
+    }
+
+    public final boolean isIncremental() {
+        return _incremental;
+    }
+
+    public final void setIncremental(final boolean incremental) {
+        _incremental = incremental;
+    }
+
+    public final String getMetadataCacheDirectory() {
+        return _metadataCacheDirectory;
+    }
+
+    public final void setMetadataCacheDirectory(final String metadataCacheDirectory) {
+        _metadataCacheDirectory = metadataCacheDirectory;
+    }
+
+    public final String getClassPath() {
+        return _classPath;
+    }
+
+    public final void setClassPath(final String classPath) {
+        _classPath = classPath;
+    }
+
+    public final String getJdkHome() {
+        return _jdkHome;
+    }
+
+    public final void setJdkHome(final String jdkHome) {
+        _jdkHome = jdkHome;
+    }
+
+    public final boolean isPrefetchEnabled() {
+        return _isPrefetchEnabled;
+    }
+
+    public final void setPrefetchEnabled(final boolean prefetchEnabled) {
+        _isPrefetchEnabled = prefetchEnabled;
+    }
+
+    public final boolean isStatisticsEnabled() {
+        return _isStatisticsEnabled;
+    }
+
+    public final void setStatisticsEnabled(final boolean statisticsEnabled) {
+        _isStatisticsEnabled = statisticsEnabled;
+    }
+
+    public final String getProfileFile() {
+        return _profileFile;
+    }
+
+    public final void setProfileFile(final String profileFile) {
+        _profileFile = profileFile;
+    }
+
+    public final int getProfileTopCount() {
+        return _profileTopCount;
+    }
+
+    public final void setProfileTopCount(final int profileTopCount) {
+        _profileTopCount = profileTopCount;
+    }
+
+    public final boolean isAllocationProfilingEnabled() {
+        return _isAllocationProfilingEnabled;
+    }
+
+    public final void setAllocationProfilingEnabled(final boolean allocationProfilingEnabled) {
+        _isAllocationProfilingEnabled = allocationProfilingEnabled;
+    }
+
+    public final boolean isServerMode() {
+        return _serverMode;
+    }
+
+    public final void setServerMode(final boolean serverMode) {
+        _serverMode = serverMode;
+    }
+
+    public final int getServerPort() {
+        return _serverPort;
+    }
+
+    public final void setServerPort(final int serverPort) {
+        _serverPort = serverPort;
+    }
+
+    public final int getMethodTimeout() {
+        return _methodTimeout;
+    }
+
+    public final void setMethodTimeout(final int methodTimeout) {
+        _methodTimeout = methodTimeout;
+    }
+
     public final boolean getSimplifyMemberReferences() {
         return _simplifyMemberReferences;
     }
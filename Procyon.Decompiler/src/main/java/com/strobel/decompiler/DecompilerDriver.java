@@ -8,29 +8,37 @@ import com.strobel.assembler.metadata.*;
 import com.strobel.core.ExceptionUtilities;
 import com.strobel.core.StringUtilities;
 import com.strobel.decompiler.LineNumberFormatter.LineNumberOption;
+import com.strobel.decompiler.ast.AstOptimizationProfiler;
+import com.strobel.decompiler.ast.AstOptimizationStep;
 import com.strobel.decompiler.languages.BytecodeOutputOptions;
 import com.strobel.decompiler.languages.BytecodeLanguage;
 import com.strobel.decompiler.languages.Languages;
-import com.strobel.decompiler.languages.LineNumberPosition;
 import com.strobel.decompiler.languages.TypeDecompilationResults;
 import com.strobel.decompiler.languages.java.JavaFormattingOptions;
 import com.strobel.io.PathHelper;
 
+import java.io.BufferedWriter;
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.io.Writer;
 import java.nio.charset.Charset;
+import java.nio.file.Files;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.EnumSet;
 import java.util.Enumeration;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.logging.ConsoleHandler;
@@ -71,13 +79,16 @@ public class DecompilerDriver {
             return;
         }
 
+        final boolean serverMode = options.isServerMode() || options.getServerPort() > 0;
+
         if (options.getPrintUsage() ||
-            typeNames.isEmpty() && !decompileJar) {
+            typeNames.isEmpty() && !decompileJar && !serverMode) {
 
             jCommander.usage();
             return;
         }
 
+        final TypeHeaderIndex typeHeaderIndex = openTypeHeaderIndex(options);
         final DecompilerSettings settings = new DecompilerSettings();
 
         settings.setFlattenSwitchBlocks(options.getFlattenSwitchBlocks());
@@ -95,7 +106,8 @@ public class DecompilerDriver {
         settings.setSimplifyMemberReferences(options.getSimplifyMemberReferences());
         settings.setForceFullyQualifiedReferences(options.getForceFullyQualifiedReferences());
         settings.setDisableForEachTransforms(options.getDisableForEachTransforms());
-        settings.setTypeLoader(new InputTypeLoader());
+        settings.setMethodTimeout(options.getMethodTimeout());
+        settings.setTypeLoader(createInputTypeLoader(options, typeHeaderIndex));
 
         if (!options.getSuppressBanner()) {
             settings.setOutputFileHeaderText("\nDecompiled by Procyon v" + Procyon.version() + "\n");
@@ -116,14 +128,47 @@ public class DecompilerDriver {
 
         decompilationOptions.setSettings(settings);
         decompilationOptions.setFullDecompilation(true);
+        decompilationOptions.setOptimizationProfiler(createOptimizationProfiler(options));
+
+        final Writer profileWriter = startOptimizationProfile(options, decompilationOptions.getOptimizationProfiler());
 
         if (settings.getJavaFormattingOptions() == null) {
             settings.setJavaFormattingOptions(JavaFormattingOptions.createDefault());
         }
 
-        if (decompileJar) {
+        final ZipOutputSink outputSink;
+
+        try {
+            outputSink = openOutputSink(options);
+        }
+        catch (final IOException e) {
+            System.err.println(ExceptionUtilities.getMessage(e));
+            System.exit(-1);
+            return;
+        }
+
+        if (serverMode) {
+            final DecompilerServer server = new DecompilerServer(options, settings, typeHeaderIndex);
+
+            try {
+                if (options.getServerPort() > 0) {
+                    server.listen(options.getServerPort());
+                }
+                else {
+                    server.serve(System.in, System.out);
+                }
+            }
+            catch (final Throwable t) {
+                System.err.println(ExceptionUtilities.getMessage(t));
+                System.exit(-1);
+            }
+            finally {
+                server.shutdown();
+            }
+        }
+        else if (decompileJar) {
             try {
-                decompileJar(jarFile, options, decompilationOptions);
+                decompileJar(jarFile, options, decompilationOptions, typeHeaderIndex, outputSink);
             }
             catch (final Throwable t) {
                 System.err.println(ExceptionUtilities.getMessage(t));
@@ -131,23 +176,187 @@ public class DecompilerDriver {
             }
         }
         else {
-            final MetadataSystem metadataSystem = new NoRetryMetadataSystem(settings.getTypeLoader());
+            final MetadataSystem metadataSystem = new MetadataSystem(settings.getTypeLoader());
 
+            metadataSystem.setMissingTypeCacheCapacity(MetadataSystem.DEFAULT_MISSING_TYPE_CACHE_CAPACITY);
             metadataSystem.setEagerMethodLoadingEnabled(options.isEagerMethodLoadingEnabled());
+            metadataSystem.setTypeHeaderIndex(typeHeaderIndex);
 
             for (final String typeName : typeNames) {
                 try {
                     if (typeName.endsWith(".jar")) {
-                        decompileJar(typeName, options, decompilationOptions);
+                        decompileJar(typeName, options, decompilationOptions, typeHeaderIndex, outputSink);
                     }
                     else {
-                        decompileType(metadataSystem, typeName, options, decompilationOptions, true);
+                        decompileType(metadataSystem, typeName, options, decompilationOptions, outputSink, true);
                     }
                 }
                 catch (final Throwable t) {
                     t.printStackTrace();
                 }
             }
+
+            printStatistics(options, metadataSystem);
+        }
+
+        finishOptimizationProfile(options, decompilationOptions.getOptimizationProfiler(), profileWriter);
+        saveTypeHeaderIndex(typeHeaderIndex);
+        closeOutputSink(outputSink);
+
+        if (!serverMode) {
+            //
+            // The server closes its own type loaders.
+            //
+            closeTypeLoader(settings.getTypeLoader());
+        }
+    }
+
+    private static AstOptimizationProfiler createOptimizationProfiler(final CommandLineOptions options) {
+        if (StringUtilities.isNullOrWhitespace(options.getProfileFile()) && options.getProfileTopCount() <= 0) {
+            return null;
+        }
+
+        return new AstOptimizationProfiler(options.isAllocationProfilingEnabled(), options.getProfileTopCount());
+    }
+
+    private static Writer startOptimizationProfile(final CommandLineOptions options, final AstOptimizationProfiler profiler) {
+        final String profileFile = options.getProfileFile();
+
+        if (profiler == null || StringUtilities.isNullOrWhitespace(profileFile)) {
+            return null;
+        }
+
+        //
+        // Methods are written out as they finish, so the profiler need not hold on to them.
+        //
+
+        Writer writer = null;
+
+        try {
+            writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(profileFile), "UTF-8"));
+
+            if (StringUtilities.endsWithIgnoreCase(profileFile, ".json")) {
+                profiler.startJson(writer);
+            }
+            else {
+                profiler.startCsv(writer);
+            }
+
+            return writer;
+        }
+        catch (final IOException e) {
+            System.err.println("Could not write optimization profile: " + ExceptionUtilities.getMessage(e));
+            closeProfileWriter(writer);
+            return null;
+        }
+    }
+
+    private static void closeProfileWriter(final Writer writer) {
+        if (writer == null) {
+            return;
+        }
+
+        try {
+            writer.close();
+        }
+        catch (final IOException e) {
+            System.err.println("Could not write optimization profile: " + ExceptionUtilities.getMessage(e));
+        }
+    }
+
+    private static void finishOptimizationProfile(
+        final CommandLineOptions options,
+        final AstOptimizationProfiler profiler,
+        final Writer profileWriter) {
+
+        if (profiler == null) {
+            return;
+        }
+
+        final int topCount = options.getProfileTopCount();
+
+        if (topCount > 0) {
+            System.err.printf("Slowest %d methods to optimize:\n", topCount);
+
+            for (final AstOptimizationProfiler.MethodProfile method : profiler.getSlowestMethods(topCount)) {
+                AstOptimizationStep slowestStep = null;
+
+                for (final AstOptimizationStep step : AstOptimizationStep.values()) {
+                    if (slowestStep == null || method.getStepTime(step) > method.getStepTime(slowestStep)) {
+                        slowestStep = step;
+                    }
+                }
+
+                System.err.printf(
+                    "%10.3f ms  %4d rounds  %s (slowest step: %s, %.3f ms)\n",
+                    method.getElapsedTime() / 1e6,
+                    method.getBlockRounds(),
+                    method,
+                    slowestStep,
+                    method.getStepTime(slowestStep) / 1e6
+                );
+            }
+        }
+
+        if (profileWriter == null) {
+            return;
+        }
+
+        try {
+            profiler.finishOutput();
+        }
+        catch (final IOException e) {
+            System.err.println("Could not write optimization profile: " + ExceptionUtilities.getMessage(e));
+        }
+        finally {
+            closeProfileWriter(profileWriter);
+        }
+    }
+
+    private static ZipOutputSink openOutputSink(final CommandLineOptions options) throws IOException {
+        final String outputZipFile = options.getOutputZipFile();
+
+        if (StringUtilities.isNullOrWhitespace(outputZipFile)) {
+            return null;
+        }
+
+        return new ZipOutputSink(new File(outputZipFile));
+    }
+
+    private static void closeOutputSink(final ZipOutputSink outputSink) {
+        if (outputSink == null) {
+            return;
+        }
+
+        try {
+            outputSink.close();
+        }
+        catch (final IOException e) {
+            System.err.println("Could not write output archive: " + ExceptionUtilities.getMessage(e));
+            System.exit(-1);
+        }
+    }
+
+    private static TypeHeaderIndex openTypeHeaderIndex(final CommandLineOptions options) {
+        final String directory = options.getMetadataCacheDirectory();
+
+        if (StringUtilities.isNullOrWhitespace(directory)) {
+            return null;
+        }
+
+        return TypeHeaderIndex.openRuntimeIndex(new File(directory));
+    }
+
+    private static void saveTypeHeaderIndex(final TypeHeaderIndex typeHeaderIndex) {
+        if (typeHeaderIndex == null) {
+            return;
+        }
+
+        try {
+            typeHeaderIndex.save();
+        }
+        catch (final IOException e) {
+            System.err.println("Could not save metadata cache: " + ExceptionUtilities.getMessage(e));
         }
     }
 
@@ -212,7 +421,9 @@ public class DecompilerDriver {
     private static void decompileJar(
         final String jarFilePath,
         final CommandLineOptions options,
-        final DecompilationOptions decompilationOptions) throws IOException {
+        final DecompilationOptions decompilationOptions,
+        final TypeHeaderIndex typeHeaderIndex,
+        final ZipOutputSink outputSink) throws IOException {
 
         final File jarFile = new File(jarFilePath);
 
@@ -222,7 +433,6 @@ public class DecompilerDriver {
 
         final DecompilerSettings settings = decompilationOptions.getSettings();
         final JarFile jar = new JarFile(jarFile);
-        final Enumeration<JarEntry> entries = jar.entries();
 
         final boolean oldShowSyntheticMembers = settings.getShowSyntheticMembers();
         final ITypeLoader oldTypeLoader = settings.getTypeLoader();
@@ -231,82 +441,441 @@ public class DecompilerDriver {
         settings.setTypeLoader(new CompositeTypeLoader(new JarTypeLoader(jar), oldTypeLoader));
 
         try {
-            MetadataSystem metadataSystem = new NoRetryMetadataSystem(settings.getTypeLoader());
+            //
+            // In incremental mode, only decompile types whose own class files or those of their
+            // nested types have changed; the output files of all other types are left alone,
+            // except those of types which have been removed from the jar, which are deleted.
+            //
 
-            metadataSystem.setEagerMethodLoadingEnabled(options.isEagerMethodLoadingEnabled());
+            final String outputDirectory = settings.getOutputDirectory();
+            final boolean incremental = options.isIncremental() &&
+                                        outputSink == null &&
+                                        !StringUtilities.isNullOrWhitespace(outputDirectory);
+            final File manifestFile = incremental ? IncrementalJarManifest.getManifestFile(outputDirectory, jarFile) : null;
+            final IncrementalJarManifest previousManifest = incremental ? IncrementalJarManifest.read(manifestFile) : null;
+            final IncrementalJarManifest manifest = incremental ? IncrementalJarManifest.compute(jar, createSettingsKey(options))
+                                                                : null;
+
+            if (manifest != null) {
+                deleteRemovedTypeOutputs(manifest.getRemovedTypes(previousManifest), outputDirectory, settings);
+            }
 
-            int classesDecompiled = 0;
+            final int threadCount = options.getThreadCount();
+
+            if (threadCount > 1 && (outputSink != null || !StringUtilities.isNullOrWhitespace(outputDirectory))) {
+                decompileJarInParallel(
+                    jar,
+                    threadCount,
+                    options,
+                    decompilationOptions,
+                    typeHeaderIndex,
+                    outputSink,
+                    manifest,
+                    previousManifest
+                );
+            }
+            else {
+                decompileJarSequentially(
+                    jar,
+                    options,
+                    decompilationOptions,
+                    typeHeaderIndex,
+                    outputSink,
+                    manifest,
+                    previousManifest
+                );
+            }
 
-            while (entries.hasMoreElements()) {
-                final JarEntry entry = entries.nextElement();
-                final String name = entry.getName();
+            if (manifest != null) {
+                manifest.write(manifestFile);
+            }
+        }
+        finally {
+            settings.setShowSyntheticMembers(oldShowSyntheticMembers);
+            settings.setTypeLoader(oldTypeLoader);
+        }
+    }
+
+    private static void deleteRemovedTypeOutputs(
+        final List<String> removedTypes,
+        final String outputDirectory,
+        final DecompilerSettings settings) {
+
+        final File root = new File(outputDirectory);
+        final String fileExtension = settings.getLanguage().getFileExtension();
+
+        for (final String internalName : removedTypes) {
+            final File file = new File(root, internalName.replace('/', File.separatorChar) + fileExtension);
+
+            if (!file.exists()) {
+                continue;
+            }
 
-                if (!name.endsWith(".class")) {
-                    continue;
+            System.out.printf("Removing output of deleted type %s...\n", internalName);
+
+            if (!file.delete()) {
+                System.err.printf("!!! WARNING: Could not delete %s.\n", file.getPath());
+                continue;
+            }
+
+            //
+            // Remove package directories left empty, as a full run would not have created them.
+            //
+
+            File directory = file.getParentFile();
+
+            while (directory != null && !directory.equals(root) && directory.delete()) {
+                directory = directory.getParentFile();
+            }
+        }
+    }
+
+    private static void decompileJarSequentially(
+        final JarFile jar,
+        final CommandLineOptions options,
+        final DecompilationOptions decompilationOptions,
+        final TypeHeaderIndex typeHeaderIndex,
+        final ZipOutputSink outputSink,
+        final IncrementalJarManifest manifest,
+        final IncrementalJarManifest previousManifest) {
+
+        final DecompilerSettings settings = decompilationOptions.getSettings();
+        final Enumeration<JarEntry> entries = jar.entries();
+
+        final MetadataSystem metadataSystem = createJarMetadataSystem(settings.getTypeLoader(), options, typeHeaderIndex, false);
+
+        prefetchJarTypes(jar, options, settings, metadataSystem);
+
+        while (entries.hasMoreElements()) {
+            final JarEntry entry = entries.nextElement();
+            final String name = entry.getName();
+
+            if (!name.endsWith(".class")) {
+                continue;
+            }
+
+            final String internalName = StringUtilities.removeRight(name, ".class");
+
+            if (manifest != null && !manifest.isChangedSince(previousManifest, internalName)) {
+                continue;
+            }
+
+            try {
+                decompileType(metadataSystem, internalName, options, decompilationOptions, outputSink, false);
+            }
+            catch (final Throwable t) {
+                t.printStackTrace();
+
+                if (manifest != null) {
+                    manifest.invalidate(internalName);
                 }
+            }
+        }
 
-                final String internalName = StringUtilities.removeRight(name, ".class");
+        printStatistics(options, metadataSystem);
+    }
 
-                try {
-                    decompileType(metadataSystem, internalName, options, decompilationOptions, false);
+    private static void decompileJarInParallel(
+        final JarFile jar,
+        final int threadCount,
+        final CommandLineOptions options,
+        final DecompilationOptions decompilationOptions,
+        final TypeHeaderIndex typeHeaderIndex,
+        final ZipOutputSink outputSink,
+        final IncrementalJarManifest manifest,
+        final IncrementalJarManifest previousManifest) {
+
+        //
+        // All workers share one thread-safe metadata system, so each library type is only
+        // read and parsed once rather than once per thread.
+        //
+
+        final MetadataSystem metadataSystem = createJarMetadataSystem(
+            decompilationOptions.getSettings().getTypeLoader(),
+            options,
+            typeHeaderIndex,
+            true
+        );
+
+        prefetchJarTypes(jar, options, decompilationOptions.getSettings(), metadataSystem);
+
+        final List<Callable<Void>> tasks = new ArrayList<>();
+        final Enumeration<JarEntry> entries = jar.entries();
+
+        while (entries.hasMoreElements()) {
+            final String name = entries.nextElement().getName();
+
+            if (!name.endsWith(".class")) {
+                continue;
+            }
+
+            final String internalName = StringUtilities.removeRight(name, ".class");
+
+            if (manifest != null && !manifest.isChangedSince(previousManifest, internalName)) {
+                continue;
+            }
 
-                    if (++classesDecompiled % 100 == 0) {
-                        metadataSystem = new NoRetryMetadataSystem(settings.getTypeLoader());
+            tasks.add(
+                new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        try {
+                            decompileType(metadataSystem, internalName, options, decompilationOptions, outputSink, false);
+                        }
+                        catch (final Throwable t) {
+                            //
+                            // Print the whole stack trace at once, so it is not interleaved with
+                            // the output of other workers.
+                            //
+                            final StringWriter stackTrace = new StringWriter();
+
+                            t.printStackTrace(new PrintWriter(stackTrace));
+                            System.err.print(stackTrace);
+
+                            if (manifest != null) {
+                                manifest.invalidate(internalName);
+                            }
+                        }
+                        return null;
                     }
                 }
-                catch (final Throwable t) {
-                    t.printStackTrace();
-                }
-            }
+            );
+        }
+
+        final ForkJoinPool pool = new ForkJoinPool(threadCount);
+
+        try {
+            pool.invokeAll(tasks);
         }
         finally {
-            settings.setShowSyntheticMembers(oldShowSyntheticMembers);
-            settings.setTypeLoader(oldTypeLoader);
+            pool.shutdown();
+        }
+
+        printStatistics(options, metadataSystem);
+    }
+
+    private static void printStatistics(final CommandLineOptions options, final MetadataSystem metadataSystem) {
+        if (options.isStatisticsEnabled()) {
+            System.err.println(metadataSystem.getStatistics());
         }
     }
 
+    private static String createSettingsKey(final CommandLineOptions options) {
+        //
+        // Any option which affects the decompiled output belongs here, so that changing it
+        // invalidates the output of an incremental decompilation.
+        //
+
+        return StringUtilities.join(
+            ",",
+            Procyon.version(),
+            String.valueOf(options.isRawBytecode()),
+            String.valueOf(options.isBytecodeAst()),
+            String.valueOf(options.isUnoptimized()),
+            String.valueOf(options.isVerbose()),
+            String.valueOf(options.getShowConstantPool()),
+            String.valueOf(options.getShowLocalVariableDetails()),
+            String.valueOf(options.getShowTypeAttributes()),
+            String.valueOf(options.getFlattenSwitchBlocks()),
+            String.valueOf(options.getExcludeNestedTypes()),
+            String.valueOf(options.getCollapseImports()),
+            String.valueOf(options.getForceExplicitTypeArguments()),
+            String.valueOf(options.getRetainRedundantCasts()),
+            String.valueOf(options.getShowSyntheticMembers()),
+            String.valueOf(options.getIncludeLineNumbers()),
+            String.valueOf(options.getStretchLines()),
+            String.valueOf(options.getShowDebugLineNumbers()),
+            String.valueOf(options.getRetainPointlessSwitches()),
+            String.valueOf(options.isUnicodeOutputEnabled()),
+            String.valueOf(options.getMergeVariables()),
+            String.valueOf(options.getSimplifyMemberReferences()),
+            String.valueOf(options.getForceFullyQualifiedReferences()),
+            String.valueOf(options.getDisableForEachTransforms()),
+            String.valueOf(options.getSuppressBanner()),
+            String.valueOf(options.getMethodTimeout()),
+            StringUtilities.isNullOrEmpty(options.getClassPath()) ? "" : options.getClassPath(),
+            StringUtilities.isNullOrEmpty(options.getJdkHome()) ? "" : options.getJdkHome()
+        );
+    }
+
+    /**
+     * Closes the jar files and other resources held by a type loader created by
+     * {@link #createInputTypeLoader}.
+     */
+    static void closeTypeLoader(final ITypeLoader typeLoader) {
+        if (!(typeLoader instanceof Closeable)) {
+            return;
+        }
+
+        try {
+            ((Closeable) typeLoader).close();
+        }
+        catch (final IOException e) {
+            System.err.println("Could not close type loader: " + ExceptionUtilities.getMessage(e));
+        }
+    }
+
+    static ITypeLoader createInputTypeLoader(final CommandLineOptions options, final TypeHeaderIndex typeHeaderIndex) {
+        final String classPath = options.getClassPath();
+        final String jdkHome = options.getJdkHome();
+
+        if (StringUtilities.isNullOrWhitespace(classPath) &&
+            StringUtilities.isNullOrWhitespace(jdkHome) &&
+            typeHeaderIndex == null) {
+
+            return new InputTypeLoader();
+        }
+
+        final List<ITypeLoader> typeLoaders = new ArrayList<>();
+
+        if (!StringUtilities.isNullOrWhitespace(classPath)) {
+            final ClasspathIndexTypeLoader indexLoader = new ClasspathIndexTypeLoader(classPath);
+
+            if (options.isVerbose()) {
+                System.err.printf("Indexed %d types on the class path.\n", indexLoader.getTypeCount());
+            }
+
+            typeLoaders.add(indexLoader);
+        }
+
+        if (!StringUtilities.isNullOrWhitespace(jdkHome)) {
+            typeLoaders.add(new JdkTypeLoader(new File(jdkHome)));
+        }
+
+        //
+        // The runtime index reads the runtime's own types, so it goes where the runtime would be
+        // searched:  after every other library, but ahead of the decompiler's own class path.
+        //
+
+        if (typeHeaderIndex != null) {
+            typeLoaders.add(typeHeaderIndex);
+        }
+
+        typeLoaders.add(new ClasspathTypeLoader());
+
+        return new InputTypeLoader(new CompositeTypeLoader(typeLoaders.toArray(new ITypeLoader[typeLoaders.size()])));
+    }
+
+    private static void prefetchJarTypes(
+        final JarFile jar,
+        final CommandLineOptions options,
+        final DecompilerSettings settings,
+        final MetadataSystem metadataSystem) {
+
+        if (!options.isPrefetchEnabled()) {
+            return;
+        }
+
+        final int threadCount = options.getThreadCount() > 1 ? options.getThreadCount()
+                                                             : Runtime.getRuntime().availableProcessors();
+
+        final long startTime = System.nanoTime();
+        final int typeCount = JarTypePrefetcher.prefetch(jar, settings.getTypeLoader(), metadataSystem, threadCount);
+        final long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+
+        System.err.printf("Prefetched %d types in %d ms.\n", typeCount, elapsed);
+    }
+
+    static MetadataSystem createJarMetadataSystem(
+        final ITypeLoader typeLoader,
+        final CommandLineOptions options,
+        final TypeHeaderIndex typeHeaderIndex,
+        final boolean isThreadSafe) {
+
+        //
+        // Keep one metadata system for the whole jar, and let the type cache bound its memory
+        // use.  Unless a size is given, cached types are softly held and evicted under memory
+        // pressure.  The most commonly referenced types are pinned so they are never re-read.
+        //
+
+        final int typeCacheSize = options.getTypeCacheSize();
+
+        final TypeCache typeCache = typeCacheSize > 0 ? TypeCache.createLeastRecentlyUsed(typeCacheSize)
+                                                      : TypeCache.createSoft();
+
+        final MetadataSystem metadataSystem = new MetadataSystem(typeLoader, typeCache, isThreadSafe);
+
+        //
+        // The input's type loaders never gain classes during a run, so a failed lookup need
+        // not search them again.
+        //
+        metadataSystem.setMissingTypeCacheCapacity(MetadataSystem.DEFAULT_MISSING_TYPE_CACHE_CAPACITY);
+        metadataSystem.setEagerMethodLoadingEnabled(options.isEagerMethodLoadingEnabled());
+        metadataSystem.setTypeHeaderIndex(typeHeaderIndex);
+
+        for (final String pinnedType : PINNED_TYPES) {
+            metadataSystem.pinType(pinnedType);
+        }
+
+        return metadataSystem;
+    }
+
+    private final static String[] PINNED_TYPES = {
+        "java/lang/Object",
+        "java/lang/String",
+        "java/lang/Class",
+        "java/lang/Enum",
+        "java/lang/Throwable",
+        "java/lang/Exception",
+        "java/lang/RuntimeException",
+        "java/lang/Iterable",
+        "java/util/Collection",
+        "java/util/List",
+        "java/util/Map"
+    };
+
     private static void decompileType(
         final MetadataSystem metadataSystem,
         final String typeName,
         final CommandLineOptions commandLineOptions,
         final DecompilationOptions options,
+        final ZipOutputSink outputSink,
         final boolean includeNested) throws IOException {
 
-        final TypeReference type;
         final DecompilerSettings settings = options.getSettings();
+        final TypeDefinition resolvedType = resolveType(metadataSystem, typeName);
 
-        if (typeName.length() == 1) {
-            //
-            // Hack to get around classes whose descriptors clash with primitive types.
-            //
-
-            final MetadataParser parser = new MetadataParser(IMetadataResolver.EMPTY);
-            final TypeReference reference = parser.parseTypeDescriptor(typeName);
-
-            type = metadataSystem.resolve(reference);
-        }
-        else {
-            type = metadataSystem.lookupType(typeName);
-        }
-
-        final TypeDefinition resolvedType;
-
-        if (type == null || (resolvedType = type.resolve()) == null) {
+        if (resolvedType == null) {
             System.err.printf("!!! ERROR: Failed to load class %s.\n", typeName);
             return;
         }
 
-        DeobfuscationUtilities.processType(resolvedType);
-
         if (!includeNested && (resolvedType.isNested() || resolvedType.isAnonymous() || resolvedType.isSynthetic())) {
             return;
         }
 
-        final Writer writer = createWriter(resolvedType, settings);
+        //
+        // When writing to an archive, decompile into memory; the sink streams the whole unit
+        // into the archive at once, so several threads can share it.
+        //
+
+        final Writer writer = outputSink != null ? new StringWriter() : createWriter(resolvedType, settings);
         final boolean writeToFile = writer instanceof FileOutputWriter;
+        final boolean writeToArchive = outputSink != null;
         final PlainTextOutput output;
 
-        if (writeToFile) {
+        //
+        // If we're writing to a file and we were asked to include line numbers in any way,
+        // then apply that line number information as the output is written.
+        //
+
+        final boolean reformatLines = (writeToFile || writeToArchive) &&
+                                      (commandLineOptions.getIncludeLineNumbers() || commandLineOptions.getStretchLines());
+
+        final EnumSet<LineNumberOption> lineNumberOptions = EnumSet.noneOf(LineNumberOption.class);
+
+        if (commandLineOptions.getIncludeLineNumbers()) {
+            lineNumberOptions.add(LineNumberOption.LEADING_COMMENTS);
+        }
+
+        if (commandLineOptions.getStretchLines()) {
+            lineNumberOptions.add(LineNumberOption.STRETCHED);
+        }
+
+        if (reformatLines) {
+            output = new LineNumberTextOutput(writer, lineNumberOptions);
+        }
+        else if (writeToFile || writeToArchive) {
             output = new PlainTextOutput(writer);
         }
         else {
@@ -323,41 +892,76 @@ public class DecompilerDriver {
             output.setIndentToken("  ");
         }
 
-        if (writeToFile) {
+        if (writeToFile || writeToArchive) {
             System.out.printf("Decompiling %s...\n", typeName);
         }
 
         final TypeDecompilationResults results = settings.getLanguage().decompileType(resolvedType, output, options);
 
+        if (reformatLines) {
+            ((LineNumberTextOutput) output).finish(results.getLineNumberPositions());
+        }
+
         writer.flush();
 
         if (writeToFile) {
             writer.close();
         }
 
-        // If we're writing to a file and we were asked to include line numbers in any way,
-        // then reformat the file to include that line number information.
-        final List<LineNumberPosition> lineNumberPositions = results.getLineNumberPositions();
-
-        if ((commandLineOptions.getIncludeLineNumbers() || commandLineOptions.getStretchLines()) && (writer instanceof FileOutputWriter)) {
-            final EnumSet<LineNumberOption> lineNumberOptions = EnumSet.noneOf(LineNumberOption.class);
+        if (writeToArchive) {
+            final String entryName = getRelativeOutputPath(resolvedType, settings, '/');
 
-            if (commandLineOptions.getIncludeLineNumbers()) {
-                lineNumberOptions.add(LineNumberOption.LEADING_COMMENTS);
+            if (!outputSink.write(entryName, writer.toString(), getOutputCharset(settings))) {
+                System.err.printf("!!! WARNING: Skipping duplicate output entry %s.\n", entryName);
             }
+        }
+    }
 
-            if (commandLineOptions.getStretchLines()) {
-                lineNumberOptions.add(LineNumberOption.STRETCHED);
-            }
+    /**
+     * Looks up and resolves a type by internal name or class file path, preparing it for
+     * decompilation.  Returns {@code null} if the type cannot be found.
+     */
+    static TypeDefinition resolveType(final MetadataSystem metadataSystem, final String typeName) {
+        final TypeReference type;
 
-            final LineNumberFormatter lineFormatter = new LineNumberFormatter(
-                ((FileOutputWriter) writer).getFile(),
-                lineNumberPositions,
-                lineNumberOptions
-            );
+        if (typeName.length() == 1) {
+            //
+            // Hack to get around classes whose descriptors clash with primitive types.
+            //
+
+            final MetadataParser parser = new MetadataParser(IMetadataResolver.EMPTY);
+            final TypeReference reference = parser.parseTypeDescriptor(typeName);
 
-            lineFormatter.reformatFile();
+            type = metadataSystem.resolve(reference);
+        }
+        else {
+            type = metadataSystem.lookupType(typeName);
+        }
+
+        final TypeDefinition resolvedType;
+
+        if (type == null || (resolvedType = type.resolve()) == null) {
+            return null;
         }
+
+        DeobfuscationUtilities.processType(resolvedType);
+        return resolvedType;
+    }
+
+    private static Charset getOutputCharset(final DecompilerSettings settings) {
+        return settings.isUnicodeOutputEnabled() ? Charset.forName("UTF-8")
+                                                 : Charset.defaultCharset();
+    }
+
+    private static String getRelativeOutputPath(final TypeDefinition type, final DecompilerSettings settings, final char separator) {
+        final String fileName = type.getName() + settings.getLanguage().getFileExtension();
+        final String packageName = type.getPackageName();
+
+        if (StringUtilities.isNullOrWhitespace(packageName)) {
+            return fileName;
+        }
+
+        return packageName.replace('.', separator) + separator + fileName;
     }
 
     private static Writer createWriter(final TypeDefinition type, final DecompilerSettings settings) throws IOException {
@@ -371,31 +975,20 @@ public class DecompilerDriver {
             );
         }
 
-        final String outputPath;
-        final String fileName = type.getName() + settings.getLanguage().getFileExtension();
-        final String packageName = type.getPackageName();
-
-        if (StringUtilities.isNullOrWhitespace(packageName)) {
-            outputPath = PathHelper.combine(outputDirectory, fileName);
-        }
-        else {
-            outputPath = PathHelper.combine(
-                outputDirectory,
-                packageName.replace('.', PathHelper.DirectorySeparator),
-                fileName
-            );
-        }
+        final String outputPath = PathHelper.combine(
+            outputDirectory,
+            getRelativeOutputPath(type, settings, File.separatorChar)
+        );
 
         final File outputFile = new File(outputPath);
         final File parentFile = outputFile.getParentFile();
 
-        if (parentFile != null && !parentFile.exists() && !parentFile.mkdirs()) {
-            throw new IllegalStateException(
-                String.format(
-                    "Could not create output directory for file \"%s\".",
-                    outputPath
-                )
-            );
+        if (parentFile != null) {
+            //
+            // Parallel workers may race to create the same package directory; unlike mkdirs(),
+            // createDirectories() succeeds if another thread gets there first.
+            //
+            Files.createDirectories(parentFile.toPath());
         }
 
         if (!outputFile.exists() && !outputFile.createNewFile()) {
@@ -452,33 +1045,3 @@ final class BriefLogFormatter extends Formatter {
                loggerName + ": " + record.getMessage() + ' ' + lineSep;
     }
 }
-
-final class NoRetryMetadataSystem extends MetadataSystem {
-    private final Set<String> _failedTypes = new HashSet<>();
-
-    NoRetryMetadataSystem() {
-    }
-
-//    NoRetryMetadataSystem(final String classPath) {
-//        super(classPath);
-//    }
-
-    NoRetryMetadataSystem(final ITypeLoader typeLoader) {
-        super(typeLoader);
-    }
-
-    @Override
-    protected TypeDefinition resolveType(final String descriptor, final boolean mightBePrimitive) {
-        if (_failedTypes.contains(descriptor)) {
-            return null;
-        }
-
-        final TypeDefinition result = super.resolveType(descriptor, mightBePrimitive);
-
-        if (result == null) {
-            _failedTypes.add(descriptor);
-        }
-
-        return result;
-    }
-}
\ No newline at end of file
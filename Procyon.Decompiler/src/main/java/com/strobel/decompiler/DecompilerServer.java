@@ -0,0 +1,476 @@
+/*
+ * DecompilerServer.java
+ *
+ * Copyright (c) 2013 Mike Strobel
+ *
+ * This source code is subject to terms and conditions of the Apache License, Version 2.0.
+ * A copy of the license can be found in the License.html file at the root of this distribution.
+ * By using this source code in any fashion, you are agreeing to be bound by the terms of the
+ * Apache License, Version 2.0.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.strobel.decompiler;
+
+import com.strobel.assembler.metadata.ITypeLoader;
+import com.strobel.assembler.metadata.MetadataSystem;
+import com.strobel.assembler.metadata.TypeDefinition;
+import com.strobel.assembler.metadata.TypeHeaderIndex;
+import com.strobel.core.ExceptionUtilities;
+import com.strobel.core.StringUtilities;
+import com.strobel.core.VerifyArgument;
+import com.strobel.decompiler.languages.BytecodeLanguage;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A long-lived decompiler which keeps its metadata system, type loaders, and languages warm
+ * between requests, so that tools which decompile one type at a time do not pay for JVM startup
+ * and a cold type cache on every call.
+ * <p>
+ * Requests are read one per line, either from standard input or from connections to a local
+ * port, and are served concurrently:
+ * <pre>
+ *     decompile &lt;id&gt; &lt;type name or class file path&gt;
+ *     cancel &lt;id&gt;
+ *     reset
+ *     quit
+ * </pre>
+ * The result of a {@code decompile} request is written as a single block, so the results of
+ * concurrent requests never interleave:
+ * <pre>
+ *     OK &lt;id&gt;
+ *     | &lt;line of output&gt;
+ *     ...
+ *     END &lt;id&gt;
+ * </pre>
+ * A request which fails is answered with {@code ERROR <id> <message>} instead, and one which was
+ * canceled with {@code CANCELED <id>}.  The {@code reset} command discards all cached metadata
+ * and indexed class path archives, e.g., after the class files being decompiled have changed, and
+ * is answered with {@code RESET}.
+ * <p>
+ * The server takes ownership of the type loader in its settings, and closes it on {@code reset}
+ * or {@link #shutdown()} once the requests still using it are done.
+ */
+public final class DecompilerServer {
+    private final CommandLineOptions _options;
+    private final DecompilerSettings _settings;
+    private final TypeHeaderIndex _typeHeaderIndex;
+    private final ExecutorService _executor;
+
+    private volatile Workspace _workspace;
+
+    public DecompilerServer(
+        final CommandLineOptions options,
+        final DecompilerSettings settings,
+        final TypeHeaderIndex typeHeaderIndex) {
+
+        _options = VerifyArgument.notNull(options, "options");
+        _settings = VerifyArgument.notNull(settings, "settings");
+        _typeHeaderIndex = typeHeaderIndex;
+        _executor = Executors.newFixedThreadPool(Math.max(1, options.getThreadCount()), new WorkerThreadFactory());
+        _workspace = new Workspace(settings.getTypeLoader());
+    }
+
+    /**
+     * Serves requests read from {@code input} until the end of the stream or a {@code quit}
+     * command, waiting for all outstanding requests to complete before returning.
+     */
+    public void serve(final InputStream input, final OutputStream output) throws IOException {
+        VerifyArgument.notNull(input, "input");
+        VerifyArgument.notNull(output, "output");
+
+        final Session session = new Session(output);
+
+        try {
+            session.run(new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8)));
+        }
+        finally {
+            session.awaitPendingRequests();
+        }
+    }
+
+    /**
+     * Accepts connections on a port of the loopback interface, serving each on its own thread.
+     * This method does not return unless the server socket fails.
+     */
+    public void listen(final int port) throws IOException {
+        try (final ServerSocket serverSocket = new ServerSocket(port, 0, InetAddress.getLoopbackAddress())) {
+            System.err.printf("Listening on %s...\n", serverSocket.getLocalSocketAddress());
+
+            while (true) {
+                final Socket socket = serverSocket.accept();
+
+                final Thread thread = new Thread(
+                    new Runnable() {
+                        @Override
+                        public void run() {
+                            try (final Socket s = socket) {
+                                serve(s.getInputStream(), s.getOutputStream());
+                            }
+                            catch (final IOException ignored) {
+                                //
+                                // The client went away; its outstanding requests were canceled.
+                                //
+                            }
+                        }
+                    },
+                    "procyon-connection-" + socket.getPort()
+                );
+
+                thread.setDaemon(true);
+                thread.start();
+            }
+        }
+    }
+
+    public void shutdown() {
+        _executor.shutdownNow();
+        _workspace.release();
+    }
+
+    private synchronized void reset() {
+        //
+        // Requests already running finish against the old workspace, which closes its type
+        // loader once the last of them is done.
+        //
+
+        final Workspace oldWorkspace = _workspace;
+
+        _workspace = new Workspace(DecompilerDriver.createInputTypeLoader(_options, _typeHeaderIndex));
+
+        oldWorkspace.release();
+    }
+
+    private Workspace acquireWorkspace() {
+        Workspace workspace = _workspace;
+
+        while (!workspace.acquire()) {
+            final Workspace current = _workspace;
+
+            if (current == workspace) {
+                //
+                // Released without a replacement, so the server has been shut down.
+                //
+                throw new CancellationException();
+            }
+
+            workspace = current;
+        }
+
+        return workspace;
+    }
+
+    private String decompile(final String typeName, final AtomicBoolean canceled) {
+        final Workspace workspace = acquireWorkspace();
+
+        try {
+            return decompile(workspace.metadataSystem, typeName, canceled);
+        }
+        finally {
+            workspace.release();
+        }
+    }
+
+    private String decompile(final MetadataSystem metadataSystem, final String typeName, final AtomicBoolean canceled) {
+        final TypeDefinition type = DecompilerDriver.resolveType(metadataSystem, typeName);
+
+        if (type == null) {
+            throw new IllegalArgumentException("Failed to load class " + typeName + ".");
+        }
+
+        final DecompilationOptions options = new DecompilationOptions();
+
+        options.setSettings(_settings);
+        options.setFullDecompilation(true);
+        options.setCanceled(canceled);
+
+        final StringWriter writer = new StringWriter();
+        final PlainTextOutput output = new PlainTextOutput(writer);
+
+        output.setUnicodeOutputEnabled(_settings.isUnicodeOutputEnabled());
+
+        if (_settings.getLanguage() instanceof BytecodeLanguage) {
+            output.setIndentToken("  ");
+        }
+
+        _settings.getLanguage().decompileType(type, output, options);
+
+        //
+        // Not every language checks for cancellation, so check once more before answering.
+        //
+
+        if (canceled.get()) {
+            throw new CancellationException();
+        }
+
+        return writer.toString();
+    }
+
+    private static String toSingleLine(final String message) {
+        if (StringUtilities.isNullOrWhitespace(message)) {
+            return "Decompilation failed.";
+        }
+
+        return message.replace('\r', ' ').replace('\n', ' ');
+    }
+
+    // <editor-fold defaultstate="collapsed" desc="Session Class">
+
+    private final class Session {
+        private final Writer _writer;
+        private final Map<String, AtomicBoolean> _requests;
+        private final List<Future<?>> _futures;
+
+        private volatile boolean _isClosed;
+
+        Session(final OutputStream output) {
+            _writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+            _requests = new ConcurrentHashMap<>();
+            _futures = new ArrayList<>();
+        }
+
+        void run(final BufferedReader reader) throws IOException {
+            String line;
+
+            while (!_isClosed && (line = reader.readLine()) != null) {
+                line = line.trim();
+
+                if (line.isEmpty()) {
+                    continue;
+                }
+
+                final String[] parts = line.split("\\s+", 3);
+                final String command = parts[0];
+
+                switch (command) {
+                    case "decompile":
+                        if (parts.length < 3) {
+                            send("ERROR - Usage: decompile <id> <type>");
+                        }
+                        else {
+                            submit(parts[1], parts[2]);
+                        }
+                        break;
+
+                    case "cancel":
+                        if (parts.length < 2) {
+                            send("ERROR - Usage: cancel <id>");
+                        }
+                        else {
+                            cancel(parts[1]);
+                        }
+                        break;
+
+                    case "reset":
+                        reset();
+                        send("RESET");
+                        break;
+
+                    case "quit":
+                        return;
+
+                    default:
+                        send("ERROR - Unknown command: " + command);
+                        break;
+                }
+            }
+        }
+
+        private void submit(final String id, final String typeName) {
+            final AtomicBoolean canceled = new AtomicBoolean();
+
+            if (_requests.putIfAbsent(id, canceled) != null) {
+                send("ERROR " + id + " A request with this id is already running.");
+                return;
+            }
+
+            for (final Iterator<Future<?>> iterator = _futures.iterator(); iterator.hasNext(); ) {
+                if (iterator.next().isDone()) {
+                    iterator.remove();
+                }
+            }
+
+            _futures.add(
+                _executor.submit(
+                    new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                sendResult(id, decompile(typeName, canceled));
+                            }
+                            catch (final CancellationException e) {
+                                send("CANCELED " + id);
+                            }
+                            catch (final Throwable t) {
+                                send("ERROR " + id + " " + toSingleLine(ExceptionUtilities.getMessage(t)));
+                            }
+                            finally {
+                                _requests.remove(id);
+                            }
+                        }
+                    }
+                )
+            );
+        }
+
+        private void cancel(final String id) {
+            final AtomicBoolean canceled = _requests.get(id);
+
+            if (canceled == null) {
+                send("ERROR " + id + " No such request.");
+                return;
+            }
+
+            //
+            // The request answers for itself once the decompiler notices the flag.
+            //
+            canceled.set(true);
+        }
+
+        void awaitPendingRequests() {
+            if (_isClosed) {
+                for (final AtomicBoolean canceled : _requests.values()) {
+                    canceled.set(true);
+                }
+            }
+
+            for (final Future<?> future : _futures) {
+                try {
+                    future.get();
+                }
+                catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                catch (final ExecutionException | CancellationException ignored) {
+                }
+            }
+        }
+
+        private void sendResult(final String id, final String text) throws IOException {
+            final BufferedReader reader = new BufferedReader(new StringReader(text));
+            final StringBuilder block = new StringBuilder(text.length() + 64);
+
+            block.append("OK ").append(id).append('\n');
+
+            String line;
+
+            while ((line = reader.readLine()) != null) {
+                block.append("| ").append(line).append('\n');
+            }
+
+            block.append("END ").append(id);
+
+            send(block.toString());
+        }
+
+        private void send(final String response) {
+            synchronized (_writer) {
+                if (_isClosed) {
+                    return;
+                }
+
+                try {
+                    _writer.write(response);
+                    _writer.write('\n');
+                    _writer.flush();
+                }
+                catch (final IOException e) {
+                    //
+                    // Nobody is listening anymore; stop reading requests and abandon the rest.
+                    //
+                    _isClosed = true;
+
+                    for (final AtomicBoolean canceled : _requests.values()) {
+                        canceled.set(true);
+                    }
+                }
+            }
+        }
+    }
+
+    // </editor-fold>
+
+    // <editor-fold defaultstate="collapsed" desc="Workspace Class">
+
+    /**
+     * A type loader and the metadata system built on it, shared by every request started before
+     * the next {@code reset}.  The server holds one reference, and each running request another;
+     * the type loader is closed when the last reference is released.
+     */
+    private final class Workspace {
+        final ITypeLoader typeLoader;
+        final MetadataSystem metadataSystem;
+
+        private int _referenceCount = 1;
+
+        Workspace(final ITypeLoader typeLoader) {
+            this.typeLoader = typeLoader;
+            this.metadataSystem = DecompilerDriver.createJarMetadataSystem(typeLoader, _options, _typeHeaderIndex, true);
+        }
+
+        synchronized boolean acquire() {
+            if (_referenceCount == 0) {
+                return false;
+            }
+
+            ++_referenceCount;
+            return true;
+        }
+
+        void release() {
+            synchronized (this) {
+                if (_referenceCount == 0 || --_referenceCount > 0) {
+                    return;
+                }
+            }
+
+            DecompilerDriver.closeTypeLoader(typeLoader);
+        }
+    }
+
+    // </editor-fold>
+
+    // <editor-fold defaultstate="collapsed" desc="WorkerThreadFactory Class">
+
+    private final static class WorkerThreadFactory implements ThreadFactory {
+        private final AtomicInteger _threadCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable r) {
+            final Thread thread = new Thread(r, "procyon-server-" + _threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    // </editor-fold>
+}
@@ -0,0 +1,264 @@
+/*
+ * IncrementalJarManifest.java
+ *
+ * Copyright (c) 2013 Mike Strobel
+ *
+ * This source code is subject to terms and conditions of the Apache License, Version 2.0.
+ * A copy of the license can be found in the License.html file at the root of this distribution.
+ * By using this source code in any fashion, you are agreeing to be bound by the terms of the
+ * Apache License, Version 2.0.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.strobel.decompiler;
+
+import com.strobel.core.StringUtilities;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * Records a content hash for each top-level type in a jar file so that later decompilations of
+ * the same jar into the same output directory can skip types which have not changed.  The hash
+ * of a top-level type covers the class files of the type itself and all of its nested types, as
+ * those are decompiled into the same output file.  The manifest also records a key describing the
+ * decompiler settings; if the settings change, every type is considered out of date.  Top-level
+ * types recorded by an earlier run but no longer in the jar are reported as removed, so that
+ * their output files can be deleted.
+ */
+final class IncrementalJarManifest {
+    private final static String HEADER = "# Procyon incremental jar manifest v1";
+    private final static char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final String _settingsKey;
+    private final Map<String, String> _hashes;
+
+    private IncrementalJarManifest(final String settingsKey, final Map<String, String> hashes) {
+        _settingsKey = settingsKey;
+        _hashes = hashes;
+    }
+
+    /**
+     * Gets the file in which the manifest for a jar file is stored within an output directory.
+     */
+    static File getManifestFile(final String outputDirectory, final File jarFile) {
+        return new File(outputDirectory, ".procyon-" + jarFile.getName() + ".manifest");
+    }
+
+    /**
+     * Computes the hashes of all top-level types in a jar file.
+     */
+    static IncrementalJarManifest compute(final JarFile jar, final String settingsKey) throws IOException {
+        final Map<String, TreeMap<String, byte[]>> entryHashes = new TreeMap<>();
+        final MessageDigest digest = createDigest();
+        final byte[] buffer = new byte[8192];
+        final Enumeration<JarEntry> entries = jar.entries();
+
+        while (entries.hasMoreElements()) {
+            final JarEntry entry = entries.nextElement();
+            final String name = entry.getName();
+
+            if (!name.endsWith(".class")) {
+                continue;
+            }
+
+            final String internalName = StringUtilities.removeRight(name, ".class");
+
+            digest.reset();
+
+            try (final InputStream in = jar.getInputStream(entry)) {
+                int bytesRead;
+
+                while ((bytesRead = in.read(buffer)) > 0) {
+                    digest.update(buffer, 0, bytesRead);
+                }
+            }
+
+            TreeMap<String, byte[]> group = entryHashes.get(getTopLevelName(internalName));
+
+            if (group == null) {
+                entryHashes.put(getTopLevelName(internalName), group = new TreeMap<>());
+            }
+
+            group.put(internalName, digest.digest());
+        }
+
+        final Map<String, String> hashes = new ConcurrentHashMap<>();
+
+        for (final Map.Entry<String, TreeMap<String, byte[]>> group : entryHashes.entrySet()) {
+            digest.reset();
+
+            for (final Map.Entry<String, byte[]> entry : group.getValue().entrySet()) {
+                digest.update(entry.getKey().getBytes(StandardCharsets.UTF_8));
+                digest.update(entry.getValue());
+            }
+
+            hashes.put(group.getKey(), toHexString(digest.digest()));
+        }
+
+        return new IncrementalJarManifest(settingsKey, hashes);
+    }
+
+    /**
+     * Reads a previously saved manifest, returning {@code null} if none exists or it cannot be read.
+     */
+    static IncrementalJarManifest read(final File file) {
+        if (!file.exists()) {
+            return null;
+        }
+
+        final Map<String, String> hashes = new ConcurrentHashMap<>();
+
+        try (final BufferedReader reader = new BufferedReader(createReader(file))) {
+            if (!HEADER.equals(reader.readLine())) {
+                return null;
+            }
+
+            final String settingsKey = reader.readLine();
+
+            if (settingsKey == null) {
+                return null;
+            }
+
+            String line;
+
+            while ((line = reader.readLine()) != null) {
+                final int separator = line.indexOf(' ');
+
+                if (separator > 0) {
+                    hashes.put(line.substring(separator + 1), line.substring(0, separator));
+                }
+            }
+
+            return new IncrementalJarManifest(settingsKey, hashes);
+        }
+        catch (final IOException ignored) {
+            return null;
+        }
+    }
+
+    /**
+     * Gets the name of the top-level type into whose output file a type is decompiled.
+     */
+    static String getTopLevelName(final String internalName) {
+        final int packageEnd = internalName.lastIndexOf('/');
+        final int nestedStart = internalName.indexOf('$', packageEnd + 1);
+
+        //
+        // A leading '$' is part of the type name rather than a nesting separator.
+        //
+
+        return nestedStart > packageEnd + 1 ? internalName.substring(0, nestedStart) : internalName;
+    }
+
+    /**
+     * Determines whether the output for a type must be regenerated, i.e., whether the class files
+     * of its top-level type differ from those recorded in {@code previous}.
+     */
+    boolean isChangedSince(final IncrementalJarManifest previous, final String internalName) {
+        if (previous == null || !StringUtilities.equals(_settingsKey, previous._settingsKey)) {
+            return true;
+        }
+
+        final String topLevelName = getTopLevelName(internalName);
+        final String hash = _hashes.get(topLevelName);
+
+        return hash == null || !hash.equals(previous._hashes.get(topLevelName));
+    }
+
+    /**
+     * Gets the top-level types recorded in {@code previous} which are no longer in the jar, and
+     * whose output files are therefore out of date.  This must be called before any type is
+     * {@linkplain #invalidate invalidated}.
+     */
+    List<String> getRemovedTypes(final IncrementalJarManifest previous) {
+        final List<String> removedTypes = new ArrayList<>();
+
+        if (previous == null) {
+            return removedTypes;
+        }
+
+        for (final String topLevelName : new TreeMap<>(previous._hashes).keySet()) {
+            if (!_hashes.containsKey(topLevelName)) {
+                removedTypes.add(topLevelName);
+            }
+        }
+
+        return removedTypes;
+    }
+
+    /**
+     * Forgets the hash of a type whose output could not be generated, so that it will be retried
+     * on the next run.
+     */
+    void invalidate(final String internalName) {
+        _hashes.remove(getTopLevelName(internalName));
+    }
+
+    void write(final File file) throws IOException {
+        final File tempFile = new File(file.getPath() + ".tmp");
+
+        try (final Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tempFile), StandardCharsets.UTF_8))) {
+            writer.write(HEADER);
+            writer.write('\n');
+            writer.write(_settingsKey);
+            writer.write('\n');
+
+            for (final Map.Entry<String, String> entry : new TreeMap<>(_hashes).entrySet()) {
+                writer.write(entry.getValue());
+                writer.write(' ');
+                writer.write(entry.getKey());
+                writer.write('\n');
+            }
+        }
+
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static Reader createReader(final File file) throws IOException {
+        return new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8);
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        }
+        catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHexString(final byte[] bytes) {
+        final char[] chars = new char[bytes.length * 2];
+
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 0xF];
+            chars[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0xF];
+        }
+
+        return new String(chars);
+    }
+}
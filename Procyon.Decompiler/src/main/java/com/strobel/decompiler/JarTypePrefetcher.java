@@ -0,0 +1,147 @@
+/*
+ * JarTypePrefetcher.java
+ *
+ * Copyright (c) 2013 Mike Strobel
+ *
+ * This source code is subject to terms and conditions of the Apache License, Version 2.0.
+ * A copy of the license can be found in the License.html file at the root of this distribution.
+ * By using this source code in any fashion, you are agreeing to be bound by the terms of the
+ * Apache License, Version 2.0.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.strobel.decompiler;
+
+import com.strobel.assembler.metadata.Buffer;
+import com.strobel.assembler.metadata.ITypeLoader;
+import com.strobel.assembler.metadata.MetadataSystem;
+import com.strobel.core.StringUtilities;
+import com.strobel.util.ContractUtils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Loads the headers of all types in a jar file into a {@link MetadataSystem} before decompilation
+ * begins, so that type hierarchy lookups made while decompiling find their types already cached.
+ * Class files are read and inflated by a pool of threads; their headers are parsed on the calling
+ * thread, in entry order, so the metadata system need not be thread-safe.
+ */
+final class JarTypePrefetcher {
+    private final static Logger LOG = Logger.getLogger(JarTypePrefetcher.class.getSimpleName());
+
+    //
+    // The number of class files each reading thread may run ahead of the parser.  This bounds
+    // the memory held by class files which have been read but not yet parsed.
+    //
+    private final static int READ_AHEAD_PER_THREAD = 16;
+
+    private JarTypePrefetcher() {
+        throw ContractUtils.unreachable();
+    }
+
+    /**
+     * Prefetches the headers of all types in {@code jar}.
+     *
+     * @param jar the jar file whose types are prefetched
+     * @param typeLoader the type loader from which class files are read
+     * @param metadataSystem the metadata system into which types are loaded
+     * @param threadCount the number of threads reading class files
+     *
+     * @return the number of types loaded
+     */
+    static int prefetch(
+        final JarFile jar,
+        final ITypeLoader typeLoader,
+        final MetadataSystem metadataSystem,
+        final int threadCount) {
+
+        final List<String> internalNames = new ArrayList<>();
+        final Enumeration<JarEntry> entries = jar.entries();
+
+        while (entries.hasMoreElements()) {
+            final String name = entries.nextElement().getName();
+
+            if (name.endsWith(".class")) {
+                internalNames.add(StringUtilities.removeRight(name, ".class"));
+            }
+        }
+
+        final ForkJoinPool pool = new ForkJoinPool(Math.max(1, threadCount));
+        final ArrayDeque<Future<Buffer>> pending = new ArrayDeque<>();
+        final int readAhead = Math.max(1, threadCount) * READ_AHEAD_PER_THREAD;
+
+        int nextToRead = 0;
+        int loadedCount = 0;
+
+        try {
+            for (final String internalName : internalNames) {
+                while (nextToRead < internalNames.size() && pending.size() < readAhead) {
+                    pending.add(pool.submit(createReadTask(typeLoader, internalNames.get(nextToRead++))));
+                }
+
+                final Buffer classFile = getResult(internalName, pending.remove());
+
+                if (classFile == null) {
+                    continue;
+                }
+
+                try {
+                    metadataSystem.prefetchType(internalName, classFile);
+                    ++loadedCount;
+                }
+                catch (final Throwable t) {
+                    //
+                    // Prefetching is best-effort; the type will be loaded (and any error reported)
+                    // if and when it is needed.
+                    //
+                    if (LOG.isLoggable(Level.FINE)) {
+                        LOG.fine("Could not prefetch type " + internalName + ": " + t.getMessage());
+                    }
+                }
+            }
+        }
+        finally {
+            pool.shutdownNow();
+        }
+
+        return loadedCount;
+    }
+
+    private static Callable<Buffer> createReadTask(final ITypeLoader typeLoader, final String internalName) {
+        return new Callable<Buffer>() {
+            @Override
+            public Buffer call() {
+                final Buffer buffer = new Buffer(0);
+                return typeLoader.tryLoadType(internalName, buffer) ? buffer : null;
+            }
+        };
+    }
+
+    private static Buffer getResult(final String internalName, final Future<Buffer> future) {
+        try {
+            return future.get();
+        }
+        catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        catch (final ExecutionException e) {
+            if (LOG.isLoggable(Level.FINE)) {
+                LOG.fine("Could not read type " + internalName + ": " + e.getCause());
+            }
+            return null;
+        }
+    }
+}
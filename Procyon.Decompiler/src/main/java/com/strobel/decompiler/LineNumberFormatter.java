@@ -2,10 +2,11 @@ package com.strobel.decompiler;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.EnumSet;
@@ -15,7 +16,7 @@ import java.util.List;
 import com.strobel.decompiler.languages.LineNumberPosition;
 
 /**
- * A <code>LineNumberFormatter</code> is used to rewrite an existing .java file, introducing
+ * A <code>LineNumberFormatter</code> is used to rewrite decompiled text, introducing
  * line number information.  It can handle either, or both, of the following jobs:
  * 
  * <ul>
@@ -25,7 +26,6 @@ import com.strobel.decompiler.languages.LineNumberPosition;
  */
 public class LineNumberFormatter {
     private final List<LineNumberPosition> _positions;
-    private final File _file;
     private final EnumSet<LineNumberOption> _options;
     
     public enum LineNumberOption
@@ -35,42 +35,46 @@ public class LineNumberFormatter {
     }
     
     /**
-     * Constructs an instance.
+     * Constructs an instance for reformatting text held in memory; see {@link #reformat(String)}.
      * 
-     * @param file the file whose line numbers should be fixed
-     * @param lineNumberPositions a recipe for how to fix the line numbers in 'file'.
-     * @param options controls how 'this' represents line numbers in the resulting file
+     * @param lineNumberPositions a recipe for how to fix the line numbers in the text
+     * @param options controls how 'this' represents line numbers in the resulting text
      */
-    public LineNumberFormatter(File file,
-            List<LineNumberPosition> lineNumberPositions,
+    public LineNumberFormatter(List<LineNumberPosition> lineNumberPositions,
             EnumSet<LineNumberOption> options) {
-        _file = file;
         _positions = lineNumberPositions;
         _options = (options == null ? EnumSet.noneOf( LineNumberOption.class) : options);
     }
 
     /**
-     * Rewrites the file passed to 'this' constructor so that the actual line numbers match
-     * the recipe passed to 'this' constructor.
+     * Reformats text so that the actual line numbers match the recipe passed to 'this'
+     * constructor, e.g., before the text is written to an archive.
+     * 
+     * @param text the text whose line numbers should be fixed
+     * @return the reformatted text
      */
-    public void reformatFile() throws IOException {
+    public String reformat( String text) throws IOException {
         List<LineNumberPosition> lineBrokenPositions = new ArrayList<LineNumberPosition>();
-        List<String> brokenLines = breakLines( lineBrokenPositions);
-        emitFormatted( brokenLines, lineBrokenPositions);
+        List<String> brokenLines = breakLines( new StringReader( text), lineBrokenPositions);
+        StringWriter writer = new StringWriter( text.length() + text.length() / 4);
+
+        emitFormatted( brokenLines, lineBrokenPositions, writer);
+
+        return writer.toString();
     }
     
     /**
-     * Processes {@link #_file}, breaking apart any lines on which multiple line-number markers
+     * Processes the input text, breaking apart any lines on which multiple line-number markers
      * appear in different columns.
      * 
      * @return the list of broken lines
      */
-    private List<String> breakLines( List<LineNumberPosition> o_LineBrokenPositions) throws IOException {
+    private List<String> breakLines( Reader input, List<LineNumberPosition> o_LineBrokenPositions) throws IOException {
         int numLinesRead = 0;
         int lineOffset = 0;
         List<String> brokenLines = new ArrayList<>();
 
-        try( BufferedReader r = new BufferedReader( new FileReader( _file))) {
+        try( BufferedReader r = new BufferedReader( input)) {
             for ( int posIndex=0; posIndex<_positions.size(); posIndex++) {
                 LineNumberPosition pos = _positions.get( posIndex);
                 o_LineBrokenPositions.add( new LineNumberPosition(
@@ -126,15 +130,14 @@ public class LineNumberFormatter {
         return brokenLines;
     }
     
-    private void emitFormatted( List<String> brokenLines, List<LineNumberPosition> lineBrokenPositions) throws IOException {
-        File tempFile = new File( _file.getAbsolutePath() + ".fixed");
+    private void emitFormatted( List<String> brokenLines, List<LineNumberPosition> lineBrokenPositions, Writer output) throws IOException {
         int globalOffset = 0;
         int numLinesRead = 0;
         Iterator<String> lines = brokenLines.iterator();
         
         int maxLineNo = LineNumberPosition.computeMaxLineNumber( lineBrokenPositions);
         try( LineNumberPrintWriter w = new LineNumberPrintWriter( 
-                maxLineNo, new BufferedWriter( new FileWriter( tempFile)))) {
+                maxLineNo, new BufferedWriter( output))) {
             
             // Suppress all line numbers if we weren't asked to show them.
             if ( ! _options.contains( LineNumberOption.LEADING_COMMENTS)) {
@@ -218,10 +221,6 @@ public class LineNumberFormatter {
                 w.println( line);
             }
         }
-        
-        // Delete the original file and rename the formatted temp file over the original.
-        _file.delete();
-        tempFile.renameTo( _file);
     }
 
 }
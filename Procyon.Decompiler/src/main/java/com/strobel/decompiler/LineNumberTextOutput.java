@@ -0,0 +1,64 @@
+/*
+ * LineNumberTextOutput.java
+ *
+ * Copyright (c) 2013 Mike Strobel
+ *
+ * This source code is subject to terms and conditions of the Apache License, Version 2.0.
+ * A copy of the license can be found in the License.html file at the root of this distribution.
+ * By using this source code in any fashion, you are agreeing to be bound by the terms of the
+ * Apache License, Version 2.0.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.strobel.decompiler;
+
+import com.strobel.core.VerifyArgument;
+import com.strobel.decompiler.LineNumberFormatter.LineNumberOption;
+import com.strobel.decompiler.languages.LineNumberPosition;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.EnumSet;
+import java.util.List;
+
+/**
+ * A {@link PlainTextOutput} which applies line number comments and/or line stretching to the
+ * decompiled text before it reaches the underlying writer, so that output files are written once
+ * rather than written, read back, and rewritten.
+ * <p>
+ * The line number positions of a type are only complete once the whole type has been emitted,
+ * so the text is held in memory until {@link #finish(List)} is called.
+ */
+public class LineNumberTextOutput extends PlainTextOutput {
+    private final StringWriter _buffer;
+    private final Writer _writer;
+    private final EnumSet<LineNumberOption> _options;
+
+    public LineNumberTextOutput(final Writer writer, final EnumSet<LineNumberOption> options) {
+        this(new StringWriter(), writer, options);
+    }
+
+    private LineNumberTextOutput(final StringWriter buffer, final Writer writer, final EnumSet<LineNumberOption> options) {
+        super(buffer);
+        _buffer = buffer;
+        _writer = VerifyArgument.notNull(writer, "writer");
+        _options = VerifyArgument.notNull(options, "options");
+    }
+
+    /**
+     * Reformats the text written so far according to the line number positions recorded while
+     * it was being emitted, and writes the result to the underlying writer.
+     *
+     * @param lineNumberPositions the positions returned with the decompilation results
+     */
+    public void finish(final List<LineNumberPosition> lineNumberPositions) throws IOException {
+        VerifyArgument.notNull(lineNumberPositions, "lineNumberPositions");
+
+        final LineNumberFormatter formatter = new LineNumberFormatter(lineNumberPositions, _options);
+
+        _writer.write(formatter.reformat(_buffer.toString()));
+        _buffer.getBuffer().setLength(0);
+    }
+}
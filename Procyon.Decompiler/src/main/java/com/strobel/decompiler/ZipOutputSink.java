@@ -0,0 +1,112 @@
+/*
+ * ZipOutputSink.java
+ *
+ * Copyright (c) 2013 Mike Strobel
+ *
+ * This source code is subject to terms and conditions of the Apache License, Version 2.0.
+ * A copy of the license can be found in the License.html file at the root of this distribution.
+ * By using this source code in any fashion, you are agreeing to be bound by the terms of the
+ * Apache License, Version 2.0.
+ *
+ * You must not remove this notice, or any other, from this software.
+ */
+
+package com.strobel.decompiler;
+
+import com.strobel.core.VerifyArgument;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes decompiled compilation units into a single zip or sources jar, in place of one output
+ * file per type.  Each unit is decompiled into memory and then streamed into the archive as one
+ * entry, so a sink may be shared by several decompiling threads.
+ */
+public final class ZipOutputSink implements Closeable {
+    private final static int OUTPUT_BUFFER_SIZE = 64 * 1024;
+
+    private final File _file;
+    private final ZipOutputStream _output;
+    private final Set<String> _entryNames;
+
+    private boolean _isClosed;
+
+    public ZipOutputSink(final File file) throws IOException {
+        _file = VerifyArgument.notNull(file, "file");
+
+        final File parentFile = file.getAbsoluteFile().getParentFile();
+
+        if (parentFile != null && !parentFile.exists() && !parentFile.mkdirs()) {
+            throw new IOException(
+                String.format(
+                    "Could not create output directory for file \"%s\".",
+                    file
+                )
+            );
+        }
+
+        _output = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(file), OUTPUT_BUFFER_SIZE));
+        _entryNames = new HashSet<>();
+    }
+
+    public final File getFile() {
+        return _file;
+    }
+
+    /**
+     * Adds a compilation unit to the archive.
+     *
+     * @param entryName the path of the unit within the archive, using '/' as a separator
+     * @param content the text of the unit
+     * @param charset the encoding in which to write {@code content}
+     *
+     * @return {@code true} if the unit was written, or {@code false} if the archive already
+     *         contains an entry with the same name
+     */
+    public boolean write(final String entryName, final String content, final Charset charset) throws IOException {
+        VerifyArgument.notNull(entryName, "entryName");
+        VerifyArgument.notNull(content, "content");
+        VerifyArgument.notNull(charset, "charset");
+
+        //
+        // Encode outside the lock; only the archive stream itself needs to be serialized.
+        //
+
+        final byte[] bytes = content.getBytes(charset);
+
+        synchronized (this) {
+            if (_isClosed) {
+                throw new IllegalStateException("The output archive has already been closed.");
+            }
+
+            if (!_entryNames.add(entryName)) {
+                return false;
+            }
+
+            _output.putNextEntry(new ZipEntry(entryName));
+            _output.write(bytes);
+            _output.closeEntry();
+        }
+
+        return true;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (_isClosed) {
+            return;
+        }
+
+        _isClosed = true;
+        _output.close();
+    }
+}